@@ -0,0 +1,105 @@
+package benchmark;
+
+import imagemodel.IImage;
+import imagemodel.IPixel;
+import imagemodel.Image;
+import imagemodel.Pixel;
+import imagemodel.RasterImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import layermodel.IBlendEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full blend of 2, 8 and 32 visible layers of random colors on a 1024x768 image. The
+ * pixel loop is how blend used to work, reading every channel through {@link IPixel}, and the
+ * engine benchmark sums every layer and averages them on the scalar or the Vector API
+ * {@link IBlendEngine}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "--add-modules=jdk.incubator.vector"})
+public class BlendBenchmark {
+
+  @Param({"2", "8", "32"})
+  public int layers;
+
+  @Param({"scalar", "vector"})
+  public String engine;
+
+  @Param({"1024"})
+  public int width;
+
+  @Param({"768"})
+  public int height;
+
+  private List<IImage> images;
+  private IBlendEngine blendEngine;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    this.images = new ArrayList<>();
+    for (int l = 0; l < layers; l++) {
+      int[] raster = new int[width * height];
+      for (int i = 0; i < raster.length; i++) {
+        raster[i] = random.nextInt(1 << 24);
+      }
+      this.images.add(new RasterImage(raster, width, height, 255));
+    }
+    this.blendEngine = engine.equals("vector") ? IBlendEngine.vector() : IBlendEngine.scalar();
+  }
+
+  @Benchmark
+  public int[] engine() {
+    int[] sumR = new int[width * height];
+    int[] sumG = new int[width * height];
+    int[] sumB = new int[width * height];
+    int[] row = null;
+    for (IImage image : images) {
+      for (int y = 0; y < height; y++) {
+        row = image.getRow(y, row);
+        blendEngine.accumulate(row, width, sumR, sumG, sumB, y * width, true);
+      }
+    }
+    int[] blended = new int[width * height];
+    blendEngine.average(sumR, sumG, sumB, images.size(), blended);
+    return blended;
+  }
+
+  @Benchmark
+  public IImage pixelLoop() {
+    List<IPixel> pixels = new ArrayList<>();
+    for (int j = 0; j < height; j++) {
+      for (int i = 0; i < width; i++) {
+        double avgR = 0.0;
+        double avgG = 0.0;
+        double avgB = 0.0;
+        for (IImage layer : images) {
+          IPixel p = layer.getPixel(i, j);
+          avgR += p.getColor().get(0);
+          avgG += p.getColor().get(1);
+          avgB += p.getColor().get(2);
+        }
+        pixels.add(new Pixel(i, j, avgR / images.size(), avgG / images.size(),
+                avgB / images.size()));
+      }
+    }
+    return new Image(pixels, width, height, 255);
+  }
+}
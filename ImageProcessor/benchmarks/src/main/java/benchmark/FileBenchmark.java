@@ -0,0 +1,83 @@
+package benchmark;
+
+import filecontroller.FileController;
+import filecontroller.PnmEncoding;
+import imagemodel.IImage;
+import imagemodel.RasterImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of loading and saving an image through {@link FileController} as a
+ * plain ppm, a binary ppm and a png. The files are written to a temporary directory that is
+ * deleted afterwards, and the file that is loaded is written once before measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FileBenchmark {
+
+  @Param({"ppm-plain", "ppm-binary", "png"})
+  public String format;
+
+  @Param({"256x256", "1920x1080", "3840x2160", "7680x4320"})
+  public String size;
+
+  private Path directory;
+  private FileController controller;
+  private String extension;
+  private String loaded;
+  private String saved;
+  private IImage image;
+
+  @Setup
+  public void setUp() throws IOException {
+    int[] dimensions = Images.parseSize(size);
+    this.image = new RasterImage(Images.randomRaster(dimensions[0], dimensions[1], 42L),
+            dimensions[0], dimensions[1], 255);
+    this.controller = new FileController();
+    this.controller.setEncoding(format.equals("ppm-binary") ? PnmEncoding.BINARY
+            : PnmEncoding.PLAIN);
+    this.extension = format.startsWith("ppm") ? "ppm" : "png";
+    this.directory = Files.createTempDirectory("imageprocessor-bench");
+    this.loaded = this.directory.resolve("loaded").toString();
+    this.saved = this.directory.resolve("saved").toString();
+    this.controller.writeImage(loaded, extension, image);
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (File file : this.directory.toFile().listFiles()) {
+      file.delete();
+    }
+    this.directory.toFile().delete();
+  }
+
+  @Benchmark
+  public IImage load() throws IOException {
+    return controller.readImage(loaded + "." + extension);
+  }
+
+  @Benchmark
+  public void save() throws IOException {
+    controller.writeImage(saved, extension, image);
+  }
+}
@@ -0,0 +1,51 @@
+package benchmark;
+
+import java.util.Random;
+
+/**
+ * Builds the images the benchmarks run on. Sizes are given as {@code WIDTHxHEIGHT} strings so
+ * they can be passed to JMH with {@code -p size=...}, and every image is filled with random colors
+ * from a fixed seed so every run does the same work.
+ */
+final class Images {
+
+  private Images() {
+  }
+
+  /**
+   * Parses a size such as {@code 1920x1080}.
+   *
+   * @param size the size
+   * @return the width and height
+   * @throws IllegalArgumentException if the size is not two positive ints separated by an x
+   */
+  static int[] parseSize(String size) {
+    String[] parts = size.split("x");
+    if (parts.length != 2) {
+      throw new IllegalArgumentException("Size must look like 1920x1080: " + size);
+    }
+    int width = Integer.parseInt(parts[0]);
+    int height = Integer.parseInt(parts[1]);
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Size must be positive: " + size);
+    }
+    return new int[]{width, height};
+  }
+
+  /**
+   * Creates a packed raster of random colors.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param seed   the seed of the colors
+   * @return the packed 0xRRGGBB pixels
+   */
+  static int[] randomRaster(int width, int height, long seed) {
+    Random random = new Random(seed);
+    int[] raster = new int[width * height];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = random.nextInt(1 << 24);
+    }
+    return raster;
+  }
+}
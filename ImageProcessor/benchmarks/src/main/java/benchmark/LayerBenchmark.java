@@ -0,0 +1,70 @@
+package benchmark;
+
+import imagemodel.IImage;
+import imagemodel.RasterImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import layermodel.ILayer;
+import layermodel.Layer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link Layer#blend()} for different image sizes and numbers of
+ * layers. A fresh blend builds a new Layer and so sums every layer, while a toggle blend hides or
+ * shows the top layer of a Layer that is kept around, which only adds or removes that layer from
+ * the running sums.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "--add-modules=jdk.incubator.vector"})
+public class LayerBenchmark {
+
+  @Param({"2", "8", "32"})
+  public int layers;
+
+  @Param({"256x256", "1920x1080", "3840x2160", "7680x4320"})
+  public String size;
+
+  private int width;
+  private int height;
+  private List<IImage> images;
+  private ILayer kept;
+
+  @Setup
+  public void setUp() {
+    int[] dimensions = Images.parseSize(size);
+    this.width = dimensions[0];
+    this.height = dimensions[1];
+    this.images = new ArrayList<>();
+    for (int l = 0; l < layers; l++) {
+      this.images.add(new RasterImage(Images.randomRaster(width, height, l), width, height, 255));
+    }
+    this.kept = new Layer(new ArrayList<>(images), width, height, 255);
+    this.kept.blend();
+  }
+
+  @Benchmark
+  public IImage freshBlend() {
+    return new Layer(new ArrayList<>(images), width, height, 255).blend();
+  }
+
+  @Benchmark
+  public IImage toggleBlend() {
+    kept.toggleVisibility(layers);
+    return kept.blend();
+  }
+}
@@ -0,0 +1,80 @@
+package benchmark;
+
+import filter.Blur;
+import filter.DownScale;
+import filter.Greyscale;
+import filter.IModifier;
+import filter.Mosaic;
+import filter.Sepia;
+import filter.Sharpen;
+import imagemodel.RasterImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of every modifier on images from 256x256 up to 8K: the {@link Blur}
+ * and {@link Sharpen} filters, the {@link Sepia} and {@link Greyscale} transforms, a
+ * {@link DownScale} to half the size and a {@link Mosaic} with 1,000 seeds. Each call wraps the
+ * same random raster in a new {@link RasterImage}, which does not copy it, because a downscale
+ * shrinks the image it is applied to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ModifierBenchmark {
+
+  @Param({"blur", "sharpen", "sepia", "greyscale", "downscale", "mosaic"})
+  public String modifier;
+
+  @Param({"256x256", "1920x1080", "3840x2160", "7680x4320"})
+  public String size;
+
+  private int width;
+  private int height;
+  private int[] raster;
+
+  @Setup
+  public void setUp() {
+    int[] dimensions = Images.parseSize(size);
+    this.width = dimensions[0];
+    this.height = dimensions[1];
+    this.raster = Images.randomRaster(width, height, 42L);
+  }
+
+  private IModifier create() {
+    switch (modifier) {
+      case "blur":
+        return new Blur();
+      case "sharpen":
+        return new Sharpen();
+      case "sepia":
+        return new Sepia();
+      case "greyscale":
+        return new Greyscale();
+      case "downscale":
+        return new DownScale(width / 2, height / 2);
+      case "mosaic":
+        return new Mosaic(1000, 42L);
+      default:
+        throw new IllegalArgumentException("Unknown modifier: " + modifier);
+    }
+  }
+
+  @Benchmark
+  public int[] modifyRaster() {
+    return create().modifyRaster(new RasterImage(raster, width, height, 255));
+  }
+}
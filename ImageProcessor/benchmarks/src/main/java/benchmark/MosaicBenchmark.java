@@ -0,0 +1,61 @@
+package benchmark;
+
+import filter.Mosaic;
+import imagemodel.IImage;
+import imagemodel.RasterImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Mosaic} on a 1920x1080 image of random colors for different numbers of seeds
+ * and both engines.
+ * The centroids come from a fixed random seed so every run does the same work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MosaicBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int seeds;
+
+  @Param({"GRID", "JUMP_FLOOD"})
+  public Mosaic.Engine engine;
+
+  @Param({"1920"})
+  public int width;
+
+  @Param({"1080"})
+  public int height;
+
+  private IImage image;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    int[] raster = new int[width * height];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = random.nextInt(1 << 24);
+    }
+    this.image = new RasterImage(raster, width, height, 255);
+  }
+
+  @Benchmark
+  public int[] mosaic() {
+    return new Mosaic(seeds, 42L, engine).modifyRaster(image);
+  }
+}
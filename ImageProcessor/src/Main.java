@@ -1,5 +1,8 @@
+import controller.BatchController;
 import controller.GraphicalController;
 import controller.IController;
+import controller.ScriptCompiler;
+import controller.ScriptPlan;
 import controller.TextController;
 import layermodel.ILayer;
 import layermodel.Layer;
@@ -12,9 +15,13 @@ import view.TextView;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import javax.swing.plaf.nimbus.NimbusLookAndFeel;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 
 /**
  * This class allows a user to create, modify,and save images or print images to the console.
@@ -33,20 +40,40 @@ public class Main {
     if (args.length < 1) {
       throw new IllegalArgumentException("Please enter \n'-script' followed by the txt file name "
               + "for file-based scripting or \n '-text' for user input or \n '-interactive' for "
-              + "GUI image editor.");
+              + "GUI image editor or \n '-batch' followed by a script, a directory or glob of "
+              + "images and optionally the number of workers, 'sessions' or 'pipeline' for "
+              + "batch processing.");
     }
     if (args[0].equalsIgnoreCase("-script")) {
       if (args.length < 2) {
         throw new IllegalArgumentException("Please enter txt file name after '-script' "
                 + "for file-based scripting");
       }
-      view = new TextView(new FileReader(args[1]), new StringBuffer());
-      controller = new TextController(view, model);
-      controller.start();
+      //the whole script is checked before any of it runs
+      ScriptPlan plan = ScriptCompiler.compile(Files.readAllLines(Paths.get(args[1])));
+      view = new TextView(new StringReader(""), new StringBuffer());
+      new TextController(view, model).run(plan);
     } else if (args[0].equalsIgnoreCase("-text")) {
       view = new TextView(new InputStreamReader(System.in), System.out);
       controller = new TextController(view, model);
       controller.start();
+    } else if (args[0].equalsIgnoreCase("-batch")) {
+      if (args.length < 3) {
+        throw new IllegalArgumentException("Please enter a script and a directory or glob of "
+                + "images after '-batch'");
+      }
+      List<String> script = Files.readAllLines(Paths.get(args[1]));
+      List<Path> inputs = BatchController.findInputs(args[2]);
+      if (args.length > 3 && args[3].equalsIgnoreCase("sessions")) {
+        controller = new BatchController(script, inputs, System.out);
+      } else if (args.length > 3 && args[3].equalsIgnoreCase("pipeline")) {
+        controller = BatchController.pipelined(script, inputs, System.out);
+      } else {
+        int workers = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        controller = new BatchController(script, inputs, workers, System.out);
+      }
+      controller.start();
     } else if (args[0].equalsIgnoreCase("-interactive")) {
       UIManager.setLookAndFeel(new NimbusLookAndFeel());
       view2 = new GraphicalView("Image manipulator!", model);
@@ -55,7 +82,9 @@ public class Main {
     } else {
       throw new IllegalArgumentException("Please enter \n'-script' followed by the txt file name "
               + "for file-based scripting or \n '-text' for user input or \n '-interactive' for "
-              + "GUI image editor.");
+              + "GUI image editor or \n '-batch' followed by a script, a directory or glob of "
+              + "images and optionally the number of workers, 'sessions' or 'pipeline' for "
+              + "batch processing.");
     }
   }
 }
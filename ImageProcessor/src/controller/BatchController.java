@@ -0,0 +1,523 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import filecontroller.FileController;
+import filecontroller.IFileController;
+import filecontroller.PipelinedFileController;
+import layermodel.Layer;
+import view.ITextView;
+
+/**
+ * This class represents an implementation of IController that runs the same script over many
+ * image files. The script is a template of {@link TextController} commands in which
+ * {@code {input}} is replaced by the path of each file and {@code {name}} by its file name
+ * without the extension. Every file is run by its own TextController on its own {@link Layer} on
+ * a fixed number of worker threads, on a session thread per file that shares a compute pool
+ * with the others, or one after another on a pipeline that decodes and encodes images while the
+ * modifiers run, so a file that fails does not affect any other file. A line is written as each
+ * file finishes, followed by a summary of how many files succeeded and how long they took.
+ */
+public class BatchController implements IController {
+
+  private static final int PIPELINE_CAPACITY = 2;
+
+  private static final String[] IMAGE_EXTENSIONS = {"ppm", "pgm", "pnm", "png", "jpg", "jpeg"};
+
+  private final List<String> script;
+  private final List<Path> inputs;
+  private final int workers;
+  private final Mode mode;
+  private final Appendable out;
+  private int done;
+  private int failed;
+
+  /**
+   * The ways the files of a batch can be run.
+   */
+  private enum Mode { WORKERS, SESSIONS, PIPELINE }
+
+  /**
+   * Creates a batch controller.
+   *
+   * @param script  the lines of the script template
+   * @param inputs  the files to run the script over
+   * @param workers the number of files run at the same time
+   * @param out     where the progress and the summary are written
+   * @throws IllegalArgumentException if any argument is null or workers is less than 1
+   */
+  public BatchController(List<String> script, List<Path> inputs, int workers, Appendable out) {
+    if (script == null || inputs == null || out == null) {
+      throw new IllegalArgumentException("Arguments are null.");
+    }
+    if (workers < 1) {
+      throw new IllegalArgumentException("Workers must be at least 1.");
+    }
+    this.script = new ArrayList<>(script);
+    this.inputs = new ArrayList<>(inputs);
+    this.workers = workers;
+    this.mode = Mode.WORKERS;
+    this.out = out;
+  }
+
+  /**
+   * Creates a batch controller that runs up to {@link Sessions#getSessionLimit()} files at once,
+   * each on a thread of its own from {@link Sessions#newSessionExecutor()}, and applies their
+   * modifiers on the shared {@link Sessions#getComputePool()}. Files that are being read or
+   * written then overlap with the modifiers of other files without running more modifiers at once
+   * than there are processors.
+   *
+   * @param script the lines of the script template
+   * @param inputs the files to run the script over
+   * @param out    where the progress and the summary are written
+   * @throws IllegalArgumentException if any argument is null
+   */
+  public BatchController(List<String> script, List<Path> inputs, Appendable out) {
+    this(script, inputs, out, Mode.SESSIONS);
+  }
+
+  private BatchController(List<String> script, List<Path> inputs, Appendable out, Mode mode) {
+    if (script == null || inputs == null || out == null) {
+      throw new IllegalArgumentException("Arguments are null.");
+    }
+    this.script = new ArrayList<>(script);
+    this.inputs = new ArrayList<>(inputs);
+    this.workers = 0;
+    this.mode = mode;
+    this.out = out;
+  }
+
+  /**
+   * Creates a batch controller that runs the files one after another on a
+   * {@link PipelinedFileController}, so the images the next file loads are decoded and the images
+   * the previous file exported are encoded while the modifiers of the current file run. Each
+   * stage holds at most {@value #PIPELINE_CAPACITY} images.
+   *
+   * @param script the lines of the script template
+   * @param inputs the files to run the script over
+   * @param out    where the progress and the summary are written
+   * @return the batch controller
+   * @throws IllegalArgumentException if any argument is null
+   */
+  public static BatchController pipelined(List<String> script, List<Path> inputs,
+                                          Appendable out) {
+    return new BatchController(script, inputs, out, Mode.PIPELINE);
+  }
+
+  /**
+   * Finds the files a batch should run over. A directory gives every image file directly inside
+   * it, anything else is a glob such as {@code photos/*.ppm} or {@code photos/**.png} that is
+   * matched against the files below the part of it without wildcards. The files are sorted by
+   * path.
+   *
+   * @param inputs the directory or glob
+   * @return the matching files
+   * @throws IOException if the directory cannot be listed
+   */
+  public static List<Path> findInputs(String inputs) throws IOException {
+    Path directory = Paths.get(inputs);
+    if (Files.isDirectory(directory)) {
+      try (Stream<Path> files = Files.list(directory)) {
+        return files.filter(Files::isRegularFile).filter(BatchController::isImage).sorted()
+                .collect(Collectors.toList());
+      }
+    }
+
+    //walk from the deepest directory that comes before the first wildcard
+    int wildcard = inputs.length();
+    for (char c : new char[]{'*', '?', '[', '{'}) {
+      int at = inputs.indexOf(c);
+      if (at >= 0) {
+        wildcard = Math.min(wildcard, at);
+      }
+    }
+    int slash = inputs.lastIndexOf('/', wildcard);
+    Path base = slash < 0 ? Paths.get("") : Paths.get(inputs.substring(0, slash + 1));
+    if (!Files.isDirectory(base)) {
+      return new ArrayList<>();
+    }
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + inputs);
+    try (Stream<Path> files = Files.walk(base)) {
+      return files.filter(Files::isRegularFile).filter(matcher::matches).sorted()
+              .collect(Collectors.toList());
+    }
+  }
+
+  private static boolean isImage(Path file) {
+    String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    for (String extension : IMAGE_EXTENSIONS) {
+      if (name.endsWith("." + extension)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Fills in the placeholders of a line of the script for the given file.
+   *
+   * @param line  the line of the script template
+   * @param input the file the script is run over
+   * @return the line with {@code {input}} and {@code {name}} replaced
+   */
+  static String expand(String line, Path input) {
+    String name = input.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return line.replace("{input}", input.toString())
+            .replace("{name}", dot > 0 ? name.substring(0, dot) : name);
+  }
+
+  @Override
+  public void start() throws IOException {
+    this.done = 0;
+    this.failed = 0;
+    long startTime = System.nanoTime();
+    List<Long> times;
+    try {
+      times = this.mode == Mode.PIPELINE ? this.runPipelined() : this.runPooled();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("The batch was interrupted.", e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+    Path slowest = null;
+    long slowestTime = -1;
+    for (int i = 0; i < times.size(); i++) {
+      if (times.get(i) > slowestTime) {
+        slowestTime = times.get(i);
+        slowest = this.inputs.get(i);
+      }
+    }
+
+    long wall = System.nanoTime() - startTime;
+    long total = times.stream().mapToLong(Long::longValue).sum();
+    StringBuilder summary = new StringBuilder();
+    summary.append(String.format(Locale.ROOT, "Processed %d files: %d succeeded, %d failed.%n",
+            this.inputs.size(), this.inputs.size() - this.failed, this.failed));
+    summary.append(String.format(Locale.ROOT, "Wall time %d ms on %s, %d ms of work",
+            millis(wall), this.describeThreads(), millis(total)));
+    if (!times.isEmpty()) {
+      summary.append(String.format(Locale.ROOT, ", %d ms per file, slowest %s (%d ms)",
+              millis(total / times.size()), slowest, millis(slowestTime)));
+    }
+    this.write(summary.append(".").append(System.lineSeparator()).toString());
+  }
+
+  /**
+   * Runs every file on a thread of the pool for the mode. A session is only started once there
+   * are fewer than {@link Sessions#getSessionLimit()} running, as the session executor has no
+   * limit of its own.
+   *
+   * @return how long each file took in nanoseconds, in the order of the inputs
+   */
+  private List<Long> runPooled() throws InterruptedException, ExecutionException {
+    ExecutorService pool = this.mode == Mode.SESSIONS ? Sessions.newSessionExecutor()
+            : Executors.newFixedThreadPool(this.workers);
+    Semaphore running = this.mode == Mode.SESSIONS ? new Semaphore(Sessions.getSessionLimit())
+            : null;
+    try {
+      List<Future<Long>> results = new ArrayList<>();
+      for (Path input : this.inputs) {
+        if (running == null) {
+          results.add(pool.submit(() -> this.run(input)));
+          continue;
+        }
+        running.acquire();
+        try {
+          results.add(pool.submit(() -> {
+            try {
+              return this.run(input);
+            } finally {
+              running.release();
+            }
+          }));
+        } catch (RuntimeException e) {
+          running.release();
+          throw e;
+        }
+      }
+      List<Long> times = new ArrayList<>();
+      for (Future<Long> result : results) {
+        times.add(result.get());
+      }
+      return times;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs the files one after another on this thread, which is the process stage of the pipeline.
+   * Before each file the images the next file loads are handed to the decode stage, except the
+   * ones either file writes, and after it the exports of the file before are waited for, as they
+   * were being encoded in the meantime.
+   * A file is reported once its exports are done.
+   *
+   * @return how long each file took in nanoseconds, in the order of the inputs
+   */
+  private List<Long> runPipelined() throws IOException {
+    List<Long> times = new ArrayList<>();
+    try (PipelinedFileController pipeline =
+                 new PipelinedFileController(new FileController(), PIPELINE_CAPACITY)) {
+      List<String> next = this.inputs.isEmpty() ? null : this.expandAll(this.inputs.get(0));
+      PipelinedFileController previousFiles = null;
+      String previousError = null;
+      long previousTime = 0;
+      for (int i = 0; i < this.inputs.size(); i++) {
+        List<String> lines = next;
+        next = i + 1 < this.inputs.size() ? this.expandAll(this.inputs.get(i + 1)) : null;
+        List<String> loaded = new ArrayList<>(loadedImages(lines));
+        Set<String> written = writtenImages(lines);
+        if (next != null) {
+          loaded.addAll(loadedImages(next));
+          written.addAll(writtenImages(next));
+        }
+        for (String image : loaded) {
+          //an image a script writes is read once it is written, not decoded ahead of time
+          if (!written.contains(normalize(image))) {
+            pipeline.prefetch(image);
+          }
+        }
+
+        long startTime = System.nanoTime();
+        PipelinedFileController files = pipeline.withDelegate(new FileController());
+        String error = this.runScript(lines, files, null);
+        for (String image : loadedImages(lines)) {
+          pipeline.discard(image);
+        }
+        long time = System.nanoTime() - startTime;
+
+        if (previousFiles != null) {
+          times.add(this.finish(this.inputs.get(i - 1), previousFiles, previousError,
+                  previousTime));
+        }
+        previousFiles = files;
+        previousError = error;
+        previousTime = time;
+      }
+      if (previousFiles != null) {
+        times.add(this.finish(this.inputs.get(this.inputs.size() - 1), previousFiles,
+                previousError, previousTime));
+      }
+    }
+    return times;
+  }
+
+  /**
+   * Waits for the exports of a file that ran on the pipeline and reports it.
+   *
+   * @return how long the file took in nanoseconds, including the wait
+   */
+  private long finish(Path input, PipelinedFileController files, String error, long time)
+          throws IOException {
+    long startTime = System.nanoTime();
+    try {
+      files.flush();
+    } catch (IOException | RuntimeException e) {
+      error = error == null ? "export: " + e : error;
+    }
+    time += System.nanoTime() - startTime;
+    this.report(input, error, time);
+    return time;
+  }
+
+  /**
+   * Finds the images a script loads, so they can be decoded before it runs.
+   *
+   * @param lines the lines of the script
+   * @return the files given to every load image command
+   */
+  static List<String> loadedImages(List<String> lines) {
+    List<String> images = new ArrayList<>();
+    for (String line : lines) {
+      String[] args = line.trim().split(" ");
+      if (args.length >= 3 && args[0].equals("load") && args[1].equals("image")) {
+        images.add(args[2]);
+      }
+    }
+    return images;
+  }
+
+  /**
+   * Finds the images a script writes, so they are not decoded before the script writes them.
+   *
+   * @param lines the lines of the script
+   * @return the normalized paths given to every export and save image command
+   */
+  static Set<String> writtenImages(List<String> lines) {
+    Set<String> images = new HashSet<>();
+    for (String line : lines) {
+      String[] args = line.trim().split(" ");
+      if (args.length >= 2 && args[0].equals("export")) {
+        images.add(normalize(args[1]));
+      } else if (args.length >= 4 && args[0].equals("save") && args[1].equals("image")) {
+        images.add(normalize(args[3]));
+      }
+    }
+    return images;
+  }
+
+  private static String normalize(String filename) {
+    try {
+      return Paths.get(filename).toAbsolutePath().normalize().toString();
+    } catch (InvalidPathException e) {
+      return filename;
+    }
+  }
+
+  /**
+   * Finds whether a script undoes or redoes anything.
+   *
+   * @param lines the lines of the script
+   * @return true if any line is an undo or redo command
+   */
+  static boolean undoes(List<String> lines) {
+    for (String line : lines) {
+      String command = line.trim();
+      if (command.equals("undo") || command.equals("redo")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String describeThreads() {
+    if (this.mode == Mode.WORKERS) {
+      return this.workers + " workers";
+    }
+    if (this.mode == Mode.PIPELINE) {
+      return "a decode, process and encode pipeline";
+    }
+    return "up to " + Sessions.getSessionLimit() + " "
+            + (Sessions.hasVirtualThreads() ? "virtual threads" : "session threads")
+            + " with " + Runtime.getRuntime().availableProcessors() + " compute threads";
+  }
+
+  /**
+   * Returns the number of files that failed in the latest run.
+   *
+   * @return the number of failed files
+   */
+  public int getFailed() {
+    return this.failed;
+  }
+
+  /**
+   * Runs the script over one file and reports how it went.
+   *
+   * @return how long the file took in nanoseconds
+   */
+  private long run(Path input) throws IOException {
+    long startTime = System.nanoTime();
+    String error = this.runScript(this.expandAll(input), new FileController(),
+            this.mode == Mode.SESSIONS ? Sessions.getComputePool() : null);
+    long time = System.nanoTime() - startTime;
+    this.report(input, error, time);
+    return time;
+  }
+
+  private List<String> expandAll(Path input) {
+    List<String> lines = new ArrayList<>();
+    for (String line : this.script) {
+      lines.add(expand(line, input));
+    }
+    return lines;
+  }
+
+  /**
+   * Runs the lines of a script on a new TextController and {@link Layer}, which only records
+   * changes for undoing if the script undoes or redoes.
+   *
+   * @return the first error the script ran into, or null if there was none
+   */
+  private String runScript(List<String> lines, IFileController files, Executor compute) {
+    ScriptView view = new ScriptView(lines);
+    try {
+      TextController controller = new TextController(view, new Layer(), files, compute);
+      controller.setHistory(undoes(lines));
+      controller.shareParallelism();
+      controller.start();
+      return view.errors.isEmpty() ? null : view.errors.get(0);
+    } catch (IOException | RuntimeException e) {
+      return view.command + ": " + e;
+    }
+  }
+
+  private synchronized void report(Path input, String error, long time) throws IOException {
+    this.done++;
+    if (error != null) {
+      this.failed++;
+    }
+    this.write(String.format(Locale.ROOT, "[%d/%d] %s %s (%d ms)%s%n", this.done,
+            this.inputs.size(), error == null ? "ok" : "failed", input, millis(time),
+            error == null ? "" : ": " + error));
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  private void write(String text) throws IOException {
+    synchronized (this.out) {
+      this.out.append(text);
+    }
+  }
+
+  /**
+   * Feeds the lines of a script to a TextController and keeps whatever it reports, which is only
+   * ever an error, except for the notice it gives on exit. Blank lines are skipped, and exit is
+   * given once the script runs out.
+   */
+  private static final class ScriptView implements ITextView {
+    private final Iterator<String> lines;
+    private final List<String> errors;
+    private String command;
+
+    ScriptView(List<String> lines) {
+      this.lines = lines.iterator();
+      this.errors = new ArrayList<>();
+      this.command = "";
+    }
+
+    @Override
+    public String getInput() {
+      while (this.lines.hasNext()) {
+        String line = this.lines.next();
+        if (!line.isBlank()) {
+          this.command = line.trim();
+          return this.command;
+        }
+      }
+      this.command = "exit";
+      return this.command;
+    }
+
+    @Override
+    public void displayOutput(String output) {
+      if (!this.command.equalsIgnoreCase("exit")) {
+        this.errors.add(this.command + ": " + output.trim());
+      }
+    }
+  }
+}
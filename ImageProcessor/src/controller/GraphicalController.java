@@ -8,6 +8,7 @@ import filter.Greyscale;
 import filter.Mosaic;
 import filter.Sepia;
 import filter.Sharpen;
+import filter.TileExecutor;
 import imagemodel.IImage;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -180,6 +181,26 @@ public class GraphicalController implements IController, ActionListener {
     }
   }
 
+  private void parallelismHandler() {
+    List<String> res = this.view.dialogHandler("parallelism");
+
+    if (res == null) {
+      return;
+    }
+
+    if (!res.get(0).equals("")) {
+      String threads = res.get(0);
+      if (this.isNumeric(threads) && Integer.parseInt(threads) > 0) {
+        TileExecutor.setParallelism(Integer.parseInt(threads));
+        this.view.alert("Modifiers now use " + threads + " threads");
+      } else {
+        this.view.alert("The number of threads must be a positive number");
+      }
+    } else {
+      this.view.alert("Invalid number of threads");
+    }
+  }
+
   private void saveHandler() {
     List<String> res = this.view.dialogHandler("save");
 
@@ -189,7 +210,7 @@ public class GraphicalController implements IController, ActionListener {
 
     String filePath = res.get(0);
     try {
-      this.fileController.writeTextOrPPM(filePath, "txt", this.model.toString());
+      this.fileController.writeState(filePath, this.model);
       this.view.alert("State saved successfully!");
     } catch (IOException e) {
       this.view.alert("Could not save state!");
@@ -219,6 +240,18 @@ public class GraphicalController implements IController, ActionListener {
 
     if (command.equals("Load")) {
       this.loadHandler();
+    } else if (command.equals("Parallelism")) {
+      this.parallelismHandler();
+    } else if (command.equals("Undo") || command.equals("Redo")) {
+      try {
+        if (command.equals("Undo")) {
+          this.model.undo();
+        } else {
+          this.model.redo();
+        }
+      } catch (IllegalArgumentException ex) {
+        this.view.alert(ex.getMessage());
+      }
     } else {
       if (this.model.hasCurrent()) {
         switch (command) {
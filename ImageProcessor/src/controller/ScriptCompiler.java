@@ -0,0 +1,386 @@
+package controller;
+
+import controller.ScriptPlan.Command;
+import controller.ScriptPlan.Kind;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import layermodel.BlendMode;
+
+/**
+ * The ScriptCompiler class turns the lines of a script into a {@link ScriptPlan} before any of it
+ * is run. Every command is checked up front, as far as it can be without reading any image: its
+ * arguments, the files it loads, which must exist or be written earlier in the script, the file
+ * types it writes and the layers it refers to, which are counted as the script loads images. All
+ * the errors are reported at once, each with the line it is on, so a script does not fail
+ * halfway through after minutes of work.
+ *
+ * <p>The plan is then optimized. Modifiers applied to a layer that nothing later exports or saves
+ * are dropped, and settings that only affect how files are written are moved past a transform
+ * that follows them, so transforms they separated run as one pass. Scripts that load a state or
+ * undo are not optimized, as which layer a command changes is then not known up front.
+ */
+public final class ScriptCompiler {
+
+  private static final List<String> READABLE = Arrays.asList("ppm", "pgm", "pnm", "png", "jpeg",
+          "jpg");
+  private static final List<String> WRITABLE = Arrays.asList("ppm", "pgm", "png", "jpeg", "jpg");
+  private static final List<String> TRANSFORMS = Arrays.asList("sepia", "greyscale");
+  private static final List<String> FILE_SETTINGS = Arrays.asList("encoding", "state");
+
+  private final List<Command> commands;
+  private final List<Integer> targets;
+  private final List<String> errors;
+  private final Set<String> written;
+  private int layers;
+  private int current;
+  private boolean known;
+
+  private ScriptCompiler() {
+    this.commands = new ArrayList<>();
+    this.targets = new ArrayList<>();
+    this.errors = new ArrayList<>();
+    this.written = new HashSet<>();
+    this.layers = 0;
+    this.current = 0;
+    this.known = true;
+  }
+
+  /**
+   * Compiles the lines of a script into a plan. Blank lines are skipped, and the script ends at
+   * the first exit.
+   *
+   * @param lines the lines of the script
+   * @return the optimized plan
+   * @throws IllegalArgumentException if lines is null or the script has errors, listing every
+   *                                  error with its line number
+   */
+  public static ScriptPlan compile(List<String> lines) throws IllegalArgumentException {
+    if (lines == null) {
+      throw new IllegalArgumentException("Script cannot be null.");
+    }
+    ScriptCompiler compiler = new ScriptCompiler();
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i).trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      String[] args = line.split("\\s+");
+      String error = compiler.check(args);
+      if (error != null) {
+        compiler.errors.add("Line " + (i + 1) + ": " + error);
+      } else {
+        compiler.commands.add(new Command(i + 1, kindOf(args), args));
+        if (args[0].equalsIgnoreCase("exit")) {
+          break;
+        }
+      }
+    }
+    if (!compiler.errors.isEmpty()) {
+      throw new IllegalArgumentException("The script has errors:" + System.lineSeparator()
+              + String.join(System.lineSeparator(), compiler.errors));
+    }
+    int dropped = compiler.known ? compiler.dropUnseen() : 0;
+    if (compiler.known) {
+      compiler.mergeTransforms();
+    }
+    return new ScriptPlan(compiler.commands, dropped);
+  }
+
+  private static Kind kindOf(String[] args) {
+    switch (args[0].toLowerCase(Locale.ROOT)) {
+      case "load":
+        return args[1].equals("image") ? Kind.LOAD_IMAGE : Kind.LOAD_STATE;
+      case "apply":
+        return Kind.APPLY;
+      case "set":
+        return Kind.SET;
+      case "toggle":
+        return Kind.TOGGLE;
+      case "export":
+        return Kind.EXPORT;
+      case "save":
+        return args[1].equals("image") ? Kind.SAVE_IMAGE : Kind.SAVE_STATE;
+      case "undo":
+        return Kind.UNDO;
+      case "redo":
+        return Kind.REDO;
+      default:
+        return Kind.EXIT;
+    }
+  }
+
+  /**
+   * Checks a command against what the script has done so far and records the layer it changes
+   * or reads, if any.
+   *
+   * @return the error the command would run into, or null if there is none
+   */
+  private String check(String[] args) {
+    int target = -1;
+    String error = null;
+    if (args.length < 2) {
+      if (args[0].equals("undo") || args[0].equals("redo")) {
+        this.known = false;
+      } else if (!args[0].equalsIgnoreCase("exit")) {
+        error = "Invalid number of arguments.";
+      }
+    } else {
+      switch (args[0]) {
+        case "load":
+          error = this.checkLoad(args);
+          break;
+        case "apply":
+          error = this.checkModifier(args);
+          if (error == null && this.known && this.layers == 0) {
+            error = "No image to apply filter to.";
+          }
+          target = this.current;
+          break;
+        case "set":
+          error = this.checkSet(args);
+          break;
+        case "toggle":
+          error = this.checkLayer(args[1], "Must enter integer after toggle.");
+          break;
+        case "export":
+          error = this.checkWrite(args[1]);
+          if (error == null && this.known && this.layers == 0) {
+            error = "No image to export.";
+          }
+          break;
+        case "save":
+          if (args.length < 3) {
+            error = "Invalid number of arguments.";
+          } else if (args[1].equals("image")) {
+            error = args.length < 4 ? "Invalid number of arguments." : this.checkWrite(args[3]);
+            if (error == null && args[2].equals("current")) {
+              error = this.known && this.layers == 0 ? "No current image to get!" : null;
+              target = this.current;
+            } else if (error == null) {
+              error = this.checkLayer(args[2], "Layer at this index does not exist.");
+              target = error == null && this.known ? Integer.parseInt(args[2]) - 1 : -1;
+            }
+          } else if (args[1].equals("state")) {
+            this.written.add(normalize(args[2] + ".state"));
+            this.written.add(normalize(args[2] + ".txt"));
+          } else {
+            error = "Unable to perform that operation!";
+          }
+          break;
+        default:
+          error = "Unable to perform that operation!";
+      }
+    }
+    if (error == null) {
+      this.targets.add(target);
+    }
+    return error;
+  }
+
+  private String checkLoad(String[] args) {
+    if (args.length < 3) {
+      return "Invalid number of arguments.";
+    }
+    if (!args[1].equals("image") && !args[1].equals("state")) {
+      return "Unknown asset to load.";
+    }
+    if (args[1].equals("image")) {
+      String[] parts = args[2].split("\\.");
+      if (!READABLE.contains(parts[parts.length - 1].toLowerCase(Locale.ROOT))) {
+        return "We cannot read that file type.";
+      }
+    }
+    if (!Files.exists(Paths.get(args[2])) && !this.written.contains(normalize(args[2]))) {
+      return "File " + args[2] + " not found!";
+    }
+    if (args[1].equals("image")) {
+      this.layers++;
+    } else {
+      this.known = false;
+    }
+    return null;
+  }
+
+  private String checkModifier(String[] args) {
+    switch (args[1]) {
+      case "blur":
+      case "sharpen":
+      case "sepia":
+      case "greyscale":
+        return null;
+      case "mosaic":
+        if (args.length < 3 || !isInteger(args[2])) {
+          return "Mosaic requires an integer input.";
+        }
+        if (args.length >= 4 && !args[3].equals("grid") && !args[3].equals("jfa")) {
+          return "Mosaic engine must be 'grid' or 'jfa'.";
+        }
+        return null;
+      case "downscale":
+        if (args.length < 4 || !isInteger(args[2]) || !isInteger(args[3])) {
+          return "Downscale requires integers for width and height.";
+        }
+        return null;
+      default:
+        return "Cannot apply that modifier!";
+    }
+  }
+
+  private String checkSet(String[] args) {
+    switch (args[1].toLowerCase(Locale.ROOT)) {
+      case "clamp":
+        return oneOf(args, "Clamp must be followed by 'end' or 'each'.", "end", "each");
+      case "encoding":
+        return oneOf(args, "Encoding must be followed by 'plain', 'binary' or 'binary16'.",
+                "plain", "binary", "binary16");
+      case "state":
+        return oneOf(args, "State must be followed by 'text', 'binary' or 'compressed'.",
+                "text", "binary", "compressed");
+      case "lazy":
+        return oneOf(args, "Lazy must be followed by 'on' or 'off'.", "on", "off");
+      case "history":
+        return oneOf(args, "History must be followed by 'on' or 'off'.", "on", "off");
+      case "blend":
+        for (BlendMode mode : BlendMode.values()) {
+          if (args.length >= 3 && mode.name().equalsIgnoreCase(args[2])) {
+            return args.length < 4 || isInteger(args[3]) ? null
+                    : "Must enter integer for opacity.";
+          }
+        }
+        return "Blend must be followed by 'average', 'normal', 'multiply', 'screen' or "
+                + "'additive'.";
+      case "parallelism":
+        if (args.length < 3) {
+          return "Invalid number of arguments.";
+        }
+        return isInteger(args[2]) ? null : "Must enter integer after parallelism.";
+      default:
+        String error = this.checkLayer(args[1], "Must enter integer.");
+        if (error == null && this.known) {
+          this.current = Integer.parseInt(args[1]) - 1;
+        }
+        return error;
+    }
+  }
+
+  private static String oneOf(String[] args, String error, String... values) {
+    return args.length >= 3 && Arrays.asList(values).contains(args[2]) ? null : error;
+  }
+
+  /**
+   * Checks that a word is the index of a layer the script has loaded by that point.
+   */
+  private String checkLayer(String word, String notInteger) {
+    if (!isInteger(word)) {
+      return notInteger;
+    }
+    int index = Integer.parseInt(word);
+    if (this.known && (index <= 0 || index > this.layers)) {
+      return "Image at " + index + " does not exist.";
+    }
+    return null;
+  }
+
+  /**
+   * Checks the file type of an image the script writes, and records the file so it can be loaded
+   * later in the script.
+   */
+  private String checkWrite(String filename) {
+    String[] parts = filename.split("\\.");
+    if (parts.length < 2) {
+      return "Invalid file extension on " + filename + ".";
+    }
+    if (!WRITABLE.contains(parts[1])) {
+      return "Enter valid image file type.";
+    }
+    this.written.add(normalize(parts[0] + "." + parts[1]));
+    return null;
+  }
+
+  private static boolean isInteger(String word) {
+    try {
+      Integer.parseInt(word);
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static String normalize(String filename) {
+    return Paths.get(filename).toAbsolutePath().normalize().toString();
+  }
+
+  /**
+   * Drops every modifier that is applied to a layer after the last export, save of that layer,
+   * save of the state or downscale, which are the only commands that can show it.
+   *
+   * @return the number of commands dropped
+   */
+  private int dropUnseen() {
+    boolean allSeen = false;
+    Set<Integer> seen = new HashSet<>();
+    List<Command> kept = new ArrayList<>();
+    for (int i = this.commands.size() - 1; i >= 0; i--) {
+      Command command = this.commands.get(i);
+      switch (command.getKind()) {
+        case EXPORT:
+        case SAVE_STATE:
+          allSeen = true;
+          break;
+        case SAVE_IMAGE:
+          seen.add(this.targets.get(i));
+          break;
+        case APPLY:
+          if (command.args()[1].equals("downscale")) {
+            //downscale changes every layer and the size later images must have
+            allSeen = true;
+          } else if (!allSeen && !seen.contains(this.targets.get(i))) {
+            continue;
+          }
+          break;
+        default:
+          break;
+      }
+      kept.add(0, command);
+    }
+    int dropped = this.commands.size() - kept.size();
+    this.commands.clear();
+    this.commands.addAll(kept);
+    return dropped;
+  }
+
+  /**
+   * Moves a transform that only file settings separate from the transform before it next to
+   * that transform, as settings that only affect how files are written cannot change it. The
+   * TextController then applies both in a single pass.
+   */
+  private void mergeTransforms() {
+    for (int i = 0; i < this.commands.size() - 1; i++) {
+      if (!isTransform(this.commands.get(i))) {
+        continue;
+      }
+      int next = i + 1;
+      while (next < this.commands.size() && isFileSetting(this.commands.get(next))) {
+        next++;
+      }
+      if (next > i + 1 && next < this.commands.size() && isTransform(this.commands.get(next))) {
+        this.commands.add(i + 1, this.commands.remove(next));
+      }
+    }
+  }
+
+  private static boolean isTransform(Command command) {
+    return command.getKind() == Kind.APPLY && TRANSFORMS.contains(command.args()[1]);
+  }
+
+  private static boolean isFileSetting(Command command) {
+    return command.getKind() == Kind.SET
+            && FILE_SETTINGS.contains(command.args()[1].toLowerCase(Locale.ROOT));
+  }
+}
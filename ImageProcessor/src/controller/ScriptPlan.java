@@ -0,0 +1,123 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The ScriptPlan class is a script that was parsed and checked by {@link ScriptCompiler}, ready to
+ * be run with {@link TextController#run(ScriptPlan)}. It holds the commands that are left after
+ * the compiler's optimizations, in the order they are run, along with how many commands of the
+ * script were dropped.
+ */
+public final class ScriptPlan {
+
+  /**
+   * The kinds of commands a script can hold.
+   */
+  public enum Kind {
+    LOAD_IMAGE, LOAD_STATE, APPLY, SET, TOGGLE, EXPORT, SAVE_IMAGE, SAVE_STATE, UNDO, REDO, EXIT
+  }
+
+  /**
+   * A single command of a script, already split into its words.
+   */
+  public static final class Command {
+    private final int line;
+    private final Kind kind;
+    private final String[] args;
+
+    Command(int line, Kind kind, String[] args) {
+      this.line = line;
+      this.kind = kind;
+      this.args = args;
+    }
+
+    /**
+     * Returns the line of the script the command was on, starting at 1.
+     *
+     * @return the line number
+     */
+    public int getLine() {
+      return this.line;
+    }
+
+    /**
+     * Returns the kind of the command.
+     *
+     * @return the kind
+     */
+    public Kind getKind() {
+      return this.kind;
+    }
+
+    /**
+     * Returns the words of the command, starting with the command itself.
+     *
+     * @return a copy of the words
+     */
+    public String[] getArgs() {
+      return Arrays.copyOf(this.args, this.args.length);
+    }
+
+    String[] args() {
+      return this.args;
+    }
+
+    @Override
+    public String toString() {
+      return String.join(" ", this.args);
+    }
+  }
+
+  private final List<Command> commands;
+  private final int dropped;
+
+  ScriptPlan(List<Command> commands, int dropped) {
+    this.commands = new ArrayList<>(commands);
+    this.dropped = dropped;
+  }
+
+  /**
+   * Returns the commands of the plan in the order they are run.
+   *
+   * @return a copy of the commands
+   */
+  public List<Command> getCommands() {
+    return new ArrayList<>(this.commands);
+  }
+
+  /**
+   * Returns whether the plan undoes or redoes anything, as otherwise nothing it changes needs to
+   * be kept for undoing.
+   *
+   * @return true if the plan has an undo or redo command
+   */
+  public boolean hasUndo() {
+    for (Command command : this.commands) {
+      if (command.getKind() == Kind.UNDO || command.getKind() == Kind.REDO) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns how many commands of the script were dropped because nothing they did could be seen
+   * in any file the script writes.
+   *
+   * @return the number of dropped commands
+   */
+  public int getDropped() {
+    return this.dropped;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (Command command : this.commands) {
+      builder.append(command).append(System.lineSeparator());
+    }
+    return builder.toString();
+  }
+}
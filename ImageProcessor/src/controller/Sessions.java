@@ -0,0 +1,101 @@
+package controller;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Sessions class provides the threads that many {@link TextController} sessions run on at the
+ * same time. Each session gets a thread of its own, a virtual thread when the JVM has them, so
+ * sessions that are waiting on a file do not hold on to a core, and the CPU-bound modifier work of
+ * every session is run on one shared compute pool with a thread per processor so the sessions
+ * never run more modifiers at once than there are cores. Virtual threads are looked up by name, as
+ * the project is built for a JVM that may not have them, and ordinary threads are used otherwise.
+ */
+public final class Sessions {
+
+  private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+  //sessions beyond the compute threads only help while others wait on files, and each one holds
+  //its images in memory, so only this many sessions per compute thread run at once
+  private static final int SESSIONS_PER_COMPUTE_THREAD = 4;
+
+  private static final ExecutorService COMPUTE =
+          Executors.newFixedThreadPool(PROCESSORS, daemonThreads("compute-"));
+
+  private static final Method VIRTUAL_EXECUTOR = findVirtualExecutor();
+
+  private Sessions() {
+  }
+
+  /**
+   * Determines if the JVM supports virtual threads.
+   *
+   * @return true if sessions run on virtual threads
+   */
+  public static boolean hasVirtualThreads() {
+    return VIRTUAL_EXECUTOR != null;
+  }
+
+  /**
+   * Creates an executor that runs every task on a new thread of its own, a virtual thread if the
+   * JVM supports them.
+   *
+   * @return the new executor, which should be shut down once its sessions are done
+   */
+  public static ExecutorService newSessionExecutor() {
+    if (VIRTUAL_EXECUTOR != null) {
+      try {
+        return (ExecutorService) VIRTUAL_EXECUTOR.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        //fall back to platform threads below
+      }
+    }
+    return Executors.newCachedThreadPool(daemonThreads("session-"));
+  }
+
+  /**
+   * Returns how many sessions should run at the same time, which is a few per thread of the
+   * compute pool so sessions waiting on files overlap with the ones computing without every
+   * waiting session holding its images and a thread.
+   *
+   * @return the number of sessions that can run at once
+   */
+  public static int getSessionLimit() {
+    return PROCESSORS * SESSIONS_PER_COMPUTE_THREAD;
+  }
+
+  /**
+   * Returns the compute pool shared by every session, with one thread per processor.
+   *
+   * @return the shared compute pool
+   */
+  public static ExecutorService getComputePool() {
+    return COMPUTE;
+  }
+
+  /**
+   * Finds Executors.newVirtualThreadPerTaskExecutor and checks that it can be called, as it
+   * throws on JVMs where virtual threads are a preview feature that was not enabled.
+   */
+  private static Method findVirtualExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      ((ExecutorService) method.invoke(null)).shutdown();
+      return method;
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger count = new AtomicInteger();
+    return task -> {
+      Thread thread = new Thread(task, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -2,6 +2,9 @@ package controller;
 
 import filecontroller.FileController;
 import filecontroller.IFileController;
+import filecontroller.PnmEncoding;
+import filecontroller.StateFormat;
+import filter.ATransform;
 import filter.Blur;
 import filter.DownScale;
 import filter.Greyscale;
@@ -9,8 +12,18 @@ import filter.IModifier;
 import filter.Mosaic;
 import filter.Sepia;
 import filter.Sharpen;
+import filter.TileExecutor;
+import filter.TransformChain;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import layermodel.BlendMode;
 import layermodel.ILayer;
 import view.ITextView;
 
@@ -25,6 +38,12 @@ public class TextController implements IController {
   private final ITextView view;
   private ILayer model;
   private boolean running;
+  private final List<ATransform> pendingTransforms;
+  private boolean clampAtEnd;
+  private boolean lazy;
+  private boolean history;
+  private boolean sharedParallelism;
+  private final Executor compute;
 
   /**
    * Creates a controller object.
@@ -34,13 +53,64 @@ public class TextController implements IController {
    * @throws IllegalArgumentException if arguments are bull
    */
   public TextController(ITextView view, ILayer model) {
-    if (view == null || model == null) {
+    this(view, model, new FileController(), null);
+  }
+
+  /**
+   * Creates a controller object that applies modifiers and blends layers on the given executor
+   * and waits for them, so that many controllers running at once, each on a thread of its own,
+   * share a fixed number of threads for their CPU-bound work. Reading and writing files is still
+   * done on the thread that runs the controller.
+   *
+   * @param view    a View object
+   * @param model   An ILayer object.
+   * @param compute the executor that modifiers are applied on, or null for the calling thread
+   * @throws IllegalArgumentException if the view or model are null
+   */
+  public TextController(ITextView view, ILayer model, Executor compute) {
+    this(view, model, new FileController(), compute);
+  }
+
+  /**
+   * Creates a controller object that reads and writes files through the given file controller,
+   * such as a {@link filecontroller.PipelinedFileController} that decodes and encodes images
+   * while modifiers are being applied.
+   *
+   * @param view           a View object
+   * @param model          An ILayer object.
+   * @param fileController the controller files are read and written with
+   * @throws IllegalArgumentException if arguments are null
+   */
+  public TextController(ITextView view, ILayer model, IFileController fileController) {
+    this(view, model, fileController, null);
+  }
+
+  /**
+   * Creates a controller object that reads and writes files through the given file controller
+   * and applies modifiers on the given executor.
+   *
+   * @param view           a View object
+   * @param model          An ILayer object.
+   * @param fileController the controller files are read and written with
+   * @param compute        the executor that modifiers are applied on, or null for the calling
+   *                       thread
+   * @throws IllegalArgumentException if the view, model or file controller are null
+   */
+  public TextController(ITextView view, ILayer model, IFileController fileController,
+                        Executor compute) {
+    if (view == null || model == null || fileController == null) {
       throw new IllegalArgumentException("Arguments are null.");
     }
-    this.fileController = new FileController();
+    this.compute = compute;
+    this.fileController = fileController;
     this.view = view;
     this.model = model;
     this.running = true;
+    this.pendingTransforms = new ArrayList<>();
+    this.clampAtEnd = false;
+    this.lazy = false;
+    this.history = true;
+    this.sharedParallelism = false;
   }
 
   @Override
@@ -50,13 +120,122 @@ public class TextController implements IController {
     }
   }
 
+  /**
+   * Runs CPU-bound work on the compute executor, if there is one, and waits for it to finish.
+   * Exceptions thrown by the work are rethrown as they are.
+   */
+  private <T> T computeValue(Supplier<T> work) {
+    if (this.compute == null) {
+      return work.get();
+    }
+    try {
+      return CompletableFuture.supplyAsync(work, this.compute).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void compute(Runnable work) {
+    this.computeValue(() -> {
+      work.run();
+      return null;
+    });
+  }
+
+  /**
+   * Applies the transforms that were collected from consecutive apply commands to the current
+   * image as a single {@link TransformChain} pass. Transforms are only collected while history is
+   * off.
+   */
+  private void flushTransforms() throws IOException {
+    if (this.pendingTransforms.isEmpty()) {
+      return;
+    }
+    ATransform transform = this.pendingTransforms.size() == 1 ? this.pendingTransforms.get(0)
+            : new TransformChain(new ArrayList<>(this.pendingTransforms), this.clampAtEnd);
+    this.pendingTransforms.clear();
+    try {
+      this.compute(() -> model.applyToCurrent(transform));
+    } catch (IllegalArgumentException e) {
+      this.view.displayOutput(e.getMessage() + System.lineSeparator());
+    }
+  }
+
+  /**
+   * Turns the recording of changes that can be undone on or off, for this controller's model and
+   * any state it loads later.
+   *
+   * @param history true to record changes so they can be undone
+   */
+  void setHistory(boolean history) {
+    this.history = history;
+    this.model.setHistory(history);
+  }
+
+  /**
+   * Stops this controller from changing the parallelism of the shared {@link TileExecutor}, for
+   * when it runs alongside other controllers that the change would also affect.
+   */
+  void shareParallelism() {
+    this.sharedParallelism = true;
+  }
+
+  /**
+   * Runs a script that was compiled by {@link ScriptCompiler}. Its commands are run in order as
+   * if they had been entered one at a time, without parsing them again, until the plan ends or
+   * it exits. If the plan never undoes or redoes, no changes are recorded for undoing while it
+   * runs or after.
+   *
+   * @param plan the compiled script
+   * @throws IOException if reading or writing a file fails
+   * @throws IllegalArgumentException if plan is null
+   */
+  public void run(ScriptPlan plan) throws IOException {
+    if (plan == null) {
+      throw new IllegalArgumentException("Plan cannot be null.");
+    }
+    this.running = true;
+    if (!plan.hasUndo()) {
+      this.setHistory(false);
+    }
+    for (ScriptPlan.Command command : plan.getCommands()) {
+      this.handleCommand(command.args());
+      if (!this.running) {
+        return;
+      }
+    }
+    this.flushTransforms();
+  }
+
   private void handleInput(String input) throws IOException {
-    String[] components = input.split(" ");
+    this.handleCommand(input.split(" "));
+  }
+
+  private void handleCommand(String[] components) throws IOException {
+    if (!components[0].equals("apply")) {
+      this.flushTransforms();
+    }
 
     if (components.length < 2) {
       if (components[0].equalsIgnoreCase("exit")) {
         this.view.displayOutput("All unsaved changes will be lost.\n");
         this.running = false;
+      } else if (components[0].equals("undo") || components[0].equals("redo")) {
+        try {
+          if (components[0].equals("undo")) {
+            this.model.undo();
+          } else {
+            this.model.redo();
+          }
+        } catch (IllegalArgumentException e) {
+          this.view.displayOutput(e.getMessage() + System.lineSeparator());
+        }
       } else {
         this.view.displayOutput("Invalid number of arguments.\n");
       }
@@ -67,17 +246,25 @@ public class TextController implements IController {
           break;
         case "apply":
           IModifier modifier = this.getModifier(components);
+          if (modifier instanceof ATransform && !this.history && this.model.hasCurrent()) {
+            //consecutive transforms are fused into one pass when the next command comes, but
+            //only while nothing is recorded for undo, which has to step back one apply at a time
+            this.pendingTransforms.add((ATransform) modifier);
+            break;
+          }
+          this.flushTransforms();
           if (modifier != null) {
             if (components[1].equalsIgnoreCase("downscale")) {
               try {
-                model.alterLayer(modifier, Integer.parseInt(components[2]),
-                        Integer.parseInt(components[3]));
+                int width = Integer.parseInt(components[2]);
+                int height = Integer.parseInt(components[3]);
+                this.compute(() -> model.alterLayer(modifier, width, height));
               } catch (IllegalArgumentException e) {
                 this.view.displayOutput(e.getMessage() + System.lineSeparator());
               }
             } else {
               try {
-                model.applyToCurrent(modifier);
+                this.compute(() -> model.applyToCurrent(modifier));
               } catch (IllegalArgumentException e) {
                 this.view.displayOutput(e.getMessage() + System.lineSeparator());
               }
@@ -85,16 +272,7 @@ public class TextController implements IController {
           }
           break;
         case "set":
-          try {
-            int num = Integer.parseInt(components[1]);
-            try {
-              model.setCurrent(num);
-            } catch (IllegalArgumentException e) {
-              this.view.displayOutput(e.getMessage() + System.lineSeparator());
-            }
-          } catch (NumberFormatException e) {
-            this.view.displayOutput("Must enter integer.\n");
-          }
+          this.setInputHandler(components);
           break;
         case "save":
           try {
@@ -118,7 +296,8 @@ public class TextController implements IController {
         case "export":
           String[] subcomps = components[1].split("\\.");
           try {
-            this.fileController.writeImage(subcomps[0], subcomps[1], this.model.blend());
+            this.fileController.writeImage(subcomps[0], subcomps[1],
+                    this.computeValue(this.model::blend));
           } catch (IllegalArgumentException e) {
             this.view.displayOutput(e.getMessage() + System.lineSeparator());
           }
@@ -129,6 +308,109 @@ public class TextController implements IController {
     }
   }
 
+  private void setInputHandler(String[] args) throws IOException {
+    if (args[1].equalsIgnoreCase("clamp")) {
+      if (args.length < 3 || !(args[2].equals("end") || args[2].equals("each"))) {
+        this.view.displayOutput("Clamp must be followed by 'end' or 'each'.\n");
+      } else {
+        this.clampAtEnd = args[2].equals("end");
+      }
+      return;
+    }
+    if (args[1].equalsIgnoreCase("encoding")) {
+      if (args.length < 3 || !(args[2].equals("plain") || args[2].equals("binary")
+              || args[2].equals("binary16"))) {
+        this.view.displayOutput("Encoding must be followed by 'plain', 'binary' or "
+                + "'binary16'.\n");
+      } else {
+        this.fileController.setEncoding(PnmEncoding.valueOf(args[2].toUpperCase(Locale.ROOT)));
+      }
+      return;
+    }
+    if (args[1].equalsIgnoreCase("state")) {
+      if (args.length < 3 || !(args[2].equals("text") || args[2].equals("binary")
+              || args[2].equals("compressed"))) {
+        this.view.displayOutput("State must be followed by 'text', 'binary' or "
+                + "'compressed'.\n");
+      } else {
+        this.fileController.setStateFormat(StateFormat.valueOf(args[2].toUpperCase(Locale.ROOT)));
+      }
+      return;
+    }
+    if (args[1].equalsIgnoreCase("lazy")) {
+      if (args.length < 3 || !(args[2].equals("on") || args[2].equals("off"))) {
+        this.view.displayOutput("Lazy must be followed by 'on' or 'off'.\n");
+      } else {
+        this.lazy = args[2].equals("on");
+        this.model.setLazy(this.lazy);
+      }
+      return;
+    }
+    if (args[1].equalsIgnoreCase("history")) {
+      if (args.length < 3 || !(args[2].equals("on") || args[2].equals("off"))) {
+        this.view.displayOutput("History must be followed by 'on' or 'off'.\n");
+      } else {
+        this.setHistory(args[2].equals("on"));
+      }
+      return;
+    }
+    if (args[1].equalsIgnoreCase("blend")) {
+      this.setBlendHandler(args);
+      return;
+    }
+    if (args[1].equalsIgnoreCase("parallelism")) {
+      if (args.length < 3) {
+        this.view.displayOutput("Invalid number of arguments.\n");
+        return;
+      }
+      if (this.sharedParallelism) {
+        this.view.displayOutput("Parallelism cannot be changed while other images are being "
+                + "processed.\n");
+        return;
+      }
+      try {
+        TileExecutor.setParallelism(Integer.parseInt(args[2]));
+      } catch (NumberFormatException e) {
+        this.view.displayOutput("Must enter integer after parallelism.\n");
+      } catch (IllegalArgumentException e) {
+        this.view.displayOutput(e.getMessage() + System.lineSeparator());
+      }
+      return;
+    }
+    try {
+      int num = Integer.parseInt(args[1]);
+      try {
+        model.setCurrent(num);
+      } catch (IllegalArgumentException e) {
+        this.view.displayOutput(e.getMessage() + System.lineSeparator());
+      }
+    } catch (NumberFormatException e) {
+      this.view.displayOutput("Must enter integer.\n");
+    }
+  }
+
+  private void setBlendHandler(String[] args) throws IOException {
+    BlendMode mode = null;
+    for (BlendMode m : BlendMode.values()) {
+      if (args.length >= 3 && m.name().equalsIgnoreCase(args[2])) {
+        mode = m;
+      }
+    }
+    if (mode == null) {
+      this.view.displayOutput("Blend must be followed by 'average', 'normal', 'multiply', "
+              + "'screen' or 'additive'.\n");
+      return;
+    }
+    try {
+      int opacity = args.length < 4 ? 100 : Integer.parseInt(args[3]);
+      this.model.setBlendMode(this.model.getProps().get(4) + 1, mode, opacity);
+    } catch (NumberFormatException e) {
+      this.view.displayOutput("Must enter integer for opacity.\n");
+    } catch (IllegalArgumentException e) {
+      this.view.displayOutput(e.getMessage() + System.lineSeparator());
+    }
+  }
+
   private void saveInputHandler(String[] args) throws IOException {
     if (args.length < 3) {
       this.view.displayOutput("Invalid number of arguments.\n");
@@ -164,11 +446,13 @@ public class TextController implements IController {
                 + System.lineSeparator());
       } else {
         if ("current".equals(args[2])) {
-          this.fileController.writeImage(subcomps[0], subcomps[1], this.model.getCurrent());
+          this.fileController.writeImage(subcomps[0], subcomps[1],
+                  this.computeValue(this.model::getCurrent));
         } else {
           try {
+            int index = Integer.parseInt(args[2]);
             this.fileController.writeImage(subcomps[0], subcomps[1],
-                    this.model.getLayer(Integer.parseInt(args[2])));
+                    this.computeValue(() -> this.model.getLayer(index)));
           } catch (IllegalArgumentException e) {
             this.view.displayOutput("Layer at this index does not exist.\n");
           }
@@ -192,6 +476,8 @@ public class TextController implements IController {
         case "state":
           try {
             this.model = this.fileController.readState(args[2]);
+            this.model.setLazy(this.lazy);
+            this.model.setHistory(this.history);
           } catch (FileNotFoundException e) {
             this.view.displayOutput(e.getMessage() + System.lineSeparator());
           }
@@ -215,7 +501,13 @@ public class TextController implements IController {
       case "mosaic":
         try {
           int seed = Integer.parseInt(args[2]);
-          return new Mosaic(seed);
+          if (args.length < 4 || args[3].equals("grid")) {
+            return new Mosaic(seed);
+          } else if (args[3].equals("jfa")) {
+            return new Mosaic(seed, Mosaic.Engine.JUMP_FLOOD);
+          }
+          this.view.displayOutput("Mosaic engine must be 'grid' or 'jfa'.\n");
+          return null;
         } catch (NumberFormatException e) {
           this.view.displayOutput("Mosaic requires an integer input.\n");
           return null;
@@ -236,6 +528,12 @@ public class TextController implements IController {
   }
 
   private void saveState(String stateName) throws IOException {
-    fileController.writeTextOrPPM(stateName, "txt", model.toString());
+    //run the pending transforms of a lazy model here rather than while the state is written
+    this.compute(() -> {
+      for (int i = 1; i <= this.model.getProps().get(0); i++) {
+        this.model.getLayer(i);
+      }
+    });
+    fileController.writeState(stateName, model);
   }
 }
\ No newline at end of file
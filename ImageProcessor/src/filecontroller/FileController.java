@@ -1,37 +1,69 @@
 package filecontroller;
 
 import imagemodel.IImage;
-import imagemodel.IPixel;
-import imagemodel.Image;
-import imagemodel.Pixel;
+import imagemodel.RasterImage;
 import layermodel.ILayer;
+import layermodel.IROLayer;
 import layermodel.Layer;
 
 import javax.imageio.ImageIO;
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Locale;
-import java.util.Scanner;
 import java.io.FileOutputStream;
 
 
 /**
  * This class contains methods for the FileController. This class allows for creation of images
- * based on the input image files, such as (ppm, bmp, jpeg, and png) or the reading of a state which
- * is a layer file that is in a txt file. It results in am image or a layer that can be modified.
+ * based on the input image files, such as (ppm, pgm, bmp, jpeg, and png) or the reading of a
+ * state which is a layer file that is in a txt file. It results in am image or a layer that can
+ * be modified.
  * It also can write an image or a layer to a file in the users choosing folder when
  * given a file name and the contents of the file.
  */
 public class FileController implements IFileController {
 
+  //binary files at least this big are memory mapped instead of read onto the heap
+  private static final long MAP_THRESHOLD = 1 << 20;
+
+  private PnmEncoding encoding;
+  private StateFormat stateFormat;
+
+  /**
+   * Creates a FileController that writes ppm and pgm files as plain text and states in the
+   * original text format, so states saved without choosing a format can still be loaded as .txt
+   * files.
+   */
+  public FileController() {
+    this.encoding = PnmEncoding.PLAIN;
+    this.stateFormat = StateFormat.TEXT;
+  }
+
+  @Override
+  public void setEncoding(PnmEncoding encoding) {
+    if (encoding == null) {
+      throw new IllegalArgumentException("Encoding cannot be null.");
+    }
+    this.encoding = encoding;
+  }
+
   @Override
   public IImage readImage(String filename) throws IOException {
     String[] nameComps = filename.split("\\.");
@@ -39,6 +71,8 @@ public class FileController implements IFileController {
 
     switch (fileExtension) {
       case "ppm":
+      case "pgm":
+      case "pnm":
         return readPPM(filename);
       case "jpeg":
       case "png":
@@ -49,125 +83,177 @@ public class FileController implements IFileController {
     }
   }
 
-  private IImage readPPM(String filename) throws FileNotFoundException {
-    Scanner sc;
+  private IImage readPPM(String filename) throws IOException {
+    FileChannel channel;
     try {
-      sc = new Scanner(new FileInputStream(filename));
-    } catch (FileNotFoundException e) {
+      channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+    } catch (NoSuchFileException e) {
       throw new FileNotFoundException("File " + filename + " not found!");
     }
-    StringBuilder builder = new StringBuilder();
-    //read the file line by line, and populate a string. This will throw away any comment lines
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s).append(System.lineSeparator());
+    try (channel) {
+      ByteBuffer magic = ByteBuffer.allocate(2);
+      while (magic.hasRemaining() && channel.read(magic) != -1) {
+        //keep reading until both bytes of the magic number are in
+      }
+      String type = new String(magic.array(), 0, magic.position(), StandardCharsets.US_ASCII);
+      if (type.equals("P6") || type.equals("P5")) {
+        return PnmCodec.decode(this.readRest(channel), type.equals("P5"));
       }
-    }
-
-    //now set up the scanner to read from the string we just built
-    sc = new Scanner(builder.toString());
-
-    String token;
 
-    token = sc.next();
-    if (!token.equals("P3")) {
-      throw new FileNotFoundException("Invalid PPM file: plain RAW file should begin with P3");
+      channel.position(0);
+      PpmReader reader = new PpmReader(Channels.newInputStream(channel));
+      String token = reader.next();
+      if (!token.equals("P3") && !token.equals("P2")) {
+        throw new FileNotFoundException("Invalid PPM file: file should begin with P2, P3, P5 "
+                + "or P6");
+      }
+      return this.makeImage(reader, token.equals("P2"));
     }
-
-    return this.makeImage(sc);
   }
 
-  private IImage makeImage(Scanner sc) {
-    List<IPixel> pix = new ArrayList<>();
+  /**
+   * Returns the rest of the channel as a buffer. Large files are memory mapped so their samples
+   * are decoded straight from the page cache, small ones are read onto the heap.
+   */
+  private ByteBuffer readRest(FileChannel channel) throws IOException {
+    long remaining = channel.size() - channel.position();
+    if (remaining >= MAP_THRESHOLD) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, channel.position(), remaining);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) remaining);
+    while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+      //keep reading until the buffer is full
+    }
+    buffer.flip();
+    return buffer;
+  }
 
-    int width = sc.nextInt();
-    int height = sc.nextInt();
-    int maxValue = sc.nextInt();
+  private IImage makeImage(PpmReader reader, boolean grey) throws IOException {
+    int width = reader.nextInt();
+    int height = reader.nextInt();
+    int maxValue = reader.nextInt();
+    int[] raster = new int[width * height];
 
-    for (int i = 0; i < height; i++) { //COL
-      for (int j = 0; j < width; j++) { //ROW
-        int r = sc.nextInt();
-        int g = sc.nextInt();
-        int b = sc.nextInt();
+    for (int i = 0; i < raster.length; i++) {
+      int r = reader.nextInt();
+      int g = grey ? r : reader.nextInt();
+      int b = grey ? r : reader.nextInt();
 
-        pix.add(new Pixel(j, i, r, g, b));
-      }
+      raster[i] = RasterImage.pack(r, g, b);
     }
-    return new Image(pix, width, height, maxValue);
+    return new RasterImage(raster, width, height, maxValue);
   }
 
   private IImage readOtherImg(String filename) throws IOException {
     BufferedImage img = ImageIO.read(new File(filename));
-
-    int height = img.getHeight();
-    int width = img.getWidth();
     int depth = (img.getColorModel().getPixelSize() * 8) - 1;
-
-    List<IPixel> pixels = new ArrayList<>();
-
-    for (int j = 0; j < height; j++) {
-      for (int i = 0; i < width; i++) {
-        Color c = new Color(img.getRGB(i, j));
-        pixels.add(new Pixel(i, j, c.getRed(), c.getGreen(), c.getBlue()));
-      }
-    }
-
-    return new Image(pixels, width, height, depth);
+    return RasterImage.fromBufferedImage(img, depth);
   }
 
   @Override
   public ILayer readState(String filename) throws FileNotFoundException {
-    File f = new File(filename);
-    Scanner s;
-
+    FileChannel channel;
     try {
-      s = new Scanner(f);
-    } catch (FileNotFoundException e) {
+      channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+    } catch (IOException e) {
       throw new FileNotFoundException("File " + filename + " not found!");
     }
-    StringBuilder contents = new StringBuilder();
-
-    while (s.hasNext()) {
-      contents.append(s.nextLine()).append(System.lineSeparator());
+    try (channel) {
+      ByteBuffer magic = ByteBuffer.allocate(StateCodec.MAGIC.length);
+      while (magic.hasRemaining() && channel.read(magic) != -1) {
+        //keep reading until the whole magic number is in
+      }
+      if (Arrays.equals(magic.array(), StateCodec.MAGIC)) {
+        return StateCodec.read(channel);
+      }
+      channel.position(0);
+      return this.readTextState(new PpmReader(Channels.newInputStream(channel)));
+    } catch (FileNotFoundException e) {
+      throw e;
+    } catch (IOException | IllegalArgumentException e) {
+      throw new FileNotFoundException("This is not a valid layer state: " + e.getMessage());
     }
+  }
 
-    s = new Scanner(contents.toString());
-
-    if (!s.next().equals("LAYER")) {
+  private ILayer readTextState(PpmReader reader) throws IOException {
+    if (!reader.next().equals("LAYER")) {
       throw new FileNotFoundException("This is not a valid layer state");
     }
 
-    int numImgs = s.nextInt();
-    ILayer layer = new Layer(new ArrayList<>(Arrays.asList(s.nextInt(), s.nextInt(), s.nextInt())));
+    int numImgs = reader.nextInt();
+    ILayer layer = new Layer(new ArrayList<>(Arrays.asList(reader.nextInt(), reader.nextInt(),
+            reader.nextInt())));
 
     for (int i = 0; i < numImgs; i++) {
-      boolean visible = Boolean.parseBoolean(s.next());
-      layer.addLayer(this.makeImage(s));
+      boolean visible = Boolean.parseBoolean(reader.next());
+      layer.addLayer(this.makeImage(reader, false));
       if (!visible) {
-        layer.toggleVisibility(i);
+        layer.toggleVisibility(i + 1);
       }
     }
-
+    //loading is not a change that can be undone
+    layer.clearHistory();
     return layer;
   }
 
+  @Override
+  public void setStateFormat(StateFormat format) {
+    if (format == null) {
+      throw new IllegalArgumentException("State format cannot be null.");
+    }
+    this.stateFormat = format;
+  }
+
+  @Override
+  public void writeState(String filename, IROLayer layer) throws IOException {
+    if (this.stateFormat == StateFormat.TEXT) {
+      this.writeTextOrPPM(filename, "txt", layer.toString());
+      return;
+    }
+    //the layers of a loaded state are mapped from its file until they are decoded, so a state is
+    //never truncated in place: it is written next to the file and then moved over it
+    Path target = Paths.get(filename + ".state");
+    Path temp = target.resolveSibling(target.getFileName() + "." + System.nanoTime() + ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+              StandardOpenOption.WRITE)) {
+        StateCodec.write(channel, layer, this.stateFormat == StateFormat.COMPRESSED);
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
   @Override
   public void writeImage(String filename, String extension, IImage contents) throws IOException {
-    BufferedImage b = contents.createImage();
     File f = new File(filename + "." + extension);
     switch (extension) {
       case "ppm":
-        writeTextOrPPM(filename, extension, "P3\n" + contents.toString());
+      case "pgm":
+        boolean grey = extension.equals("pgm");
+        if (this.encoding == PnmEncoding.PLAIN) {
+          try (OutputStream out = new FileOutputStream(f)) {
+            new PpmWriter(out).writePlain(contents, grey);
+          }
+        } else {
+          try (OutputStream out = new BufferedOutputStream(new FileOutputStream(f), 1 << 16)) {
+            PnmCodec.encode(out, contents, grey, this.encoding == PnmEncoding.BINARY16);
+          }
+        }
         break;
       case "png":
-        ImageIO.write(b, "PNG", f);
+        ImageIO.write(contents.createImage(), "PNG", f);
         break;
       case "jpeg":
-        ImageIO.write(b, "JPEG", f);
+        ImageIO.write(contents.createImage(), "JPEG", f);
         break;
       case "jpg":
-        ImageIO.write(b, "JPG", f);
+        ImageIO.write(contents.createImage(), "JPG", f);
         break;
       default:
         throw new IllegalArgumentException("Enter valid image file type.");
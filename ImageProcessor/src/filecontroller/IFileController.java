@@ -2,6 +2,7 @@ package filecontroller;
 
 import imagemodel.IImage;
 import layermodel.ILayer;
+import layermodel.IROLayer;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -22,10 +23,11 @@ public interface IFileController {
   IImage readImage(String filename) throws IOException;
 
   /**
-   * Reads the text file into an ILayer.
+   * Reads a text or binary state file into an ILayer. The format is detected from the contents
+   * of the file.
    *
    * @param filename String
-   * @return an ILayer of the txt file
+   * @return an ILayer of the state file
    * @throws FileNotFoundException if file is not found
    */
   ILayer readState(String filename) throws FileNotFoundException;
@@ -40,6 +42,32 @@ public interface IFileController {
    */
   void writeImage(String filename, String extension, IImage image) throws IOException;
 
+  /**
+   * Sets how ppm and pgm files are written by {@link #writeImage(String, String, IImage)}.
+   *
+   * @param encoding plain text, 8 bit binary or 16 bit binary
+   * @throws IllegalArgumentException if encoding is null
+   */
+  void setEncoding(PnmEncoding encoding);
+
+  /**
+   * Sets the format {@link #writeState(String, IROLayer)} saves states in.
+   *
+   * @param format text, binary or compressed binary
+   * @throws IllegalArgumentException if format is null
+   */
+  void setStateFormat(StateFormat format);
+
+  /**
+   * Saves a layer as a state that {@link #readState(String)} can load. Text states are saved as
+   * a .txt file and binary states as a .state file.
+   *
+   * @param filename of the state without an extension
+   * @param layer    the layer to save
+   * @throws IOException if the file cannot be written
+   */
+  void writeState(String filename, IROLayer layer) throws IOException;
+
   /**
    * Writes a text or ppm file into the res/ folder.
    *
@@ -0,0 +1,364 @@
+package filecontroller;
+
+import imagemodel.IImage;
+import imagemodel.ImageInfo;
+import imagemodel.RasterImage;
+import layermodel.ILayer;
+import layermodel.IROLayer;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The PipelinedFileController class is an {@link IFileController} that decodes and encodes images
+ * on stages of their own, so they overlap with the modifiers being applied in between. Images can
+ * be decoded ahead of time with {@link #prefetch(String)}, and {@link #readImage(String)} hands
+ * out a prefetched image instead of reading it again. {@link #writeImage(String, String, IImage)}
+ * copies the image and returns straight away, leaving the encoding to the encode stage, and
+ * {@link #flush()} waits for every write to finish and reports the first one that failed. Both
+ * stages hold at most a fixed number of images. Prefetching is skipped and writing blocks while a
+ * stage is full, so neither stage can run far ahead of the modifiers in between.
+ *
+ * <p>Every other method, and reading an image that was not prefetched, first waits for the
+ * pending writes, so they happen in the same order as they would with the wrapped controller.
+ * Files are told apart by their normalized paths. Writing an image drops any prefetch of the same
+ * file, a file is not prefetched while it is being written, and reading it waits for its writes
+ * through any controller sharing the stages, so a read never sees an older copy of a file that
+ * was written before it.
+ * Controllers made with {@link #withDelegate(IFileController)} share the stages, which lets each
+ * script of a batch keep its own settings while the next script's images are decoded and the last
+ * script's images are encoded.
+ */
+public class PipelinedFileController implements IFileController, Closeable {
+
+  private static final List<String> IMAGE_EXTENSIONS =
+          Arrays.asList("ppm", "pgm", "png", "jpeg", "jpg");
+
+  private final Stages stages;
+  private final IFileController delegate;
+  private final List<Future<?>> writes;
+
+  /**
+   * The decode and encode stages shared by every controller made from the same one.
+   */
+  private static final class Stages {
+    private final IFileController reader;
+    private final int capacity;
+    private final ExecutorService decoder;
+    private final ExecutorService encoder;
+    private final Semaphore encodeSlots;
+    private final Map<String, Future<IImage>> prefetched;
+    //how many writes of each file are queued or running, guarded by the Stages
+    private final Map<String, Integer> writing;
+
+    Stages(IFileController reader, int capacity) {
+      this.reader = reader;
+      this.capacity = capacity;
+      this.decoder = Executors.newSingleThreadExecutor(daemon("decode"));
+      this.encoder = Executors.newSingleThreadExecutor(daemon("encode"));
+      this.encodeSlots = new Semaphore(capacity);
+      this.prefetched = new LinkedHashMap<>();
+      this.writing = new HashMap<>();
+    }
+
+    synchronized void startWrite(String file) {
+      Future<IImage> stale = this.prefetched.remove(file);
+      if (stale != null) {
+        stale.cancel(false);
+      }
+      this.writing.merge(file, 1, Integer::sum);
+    }
+
+    synchronized void endWrite(String file) {
+      if (this.writing.merge(file, -1, Integer::sum) == 0) {
+        this.writing.remove(file);
+      }
+      this.notifyAll();
+    }
+  }
+
+  /**
+   * Creates a pipelined controller.
+   *
+   * @param delegate the controller that reads and writes the files
+   * @param capacity the number of images each stage can hold
+   * @throws IllegalArgumentException if delegate is null or capacity is less than 1
+   */
+  public PipelinedFileController(IFileController delegate, int capacity) {
+    if (delegate == null || capacity < 1) {
+      throw new IllegalArgumentException("Invalid Parameters.");
+    }
+    this.stages = new Stages(delegate, capacity);
+    this.delegate = delegate;
+    this.writes = new ArrayList<>();
+  }
+
+  private PipelinedFileController(Stages stages, IFileController delegate) {
+    this.stages = stages;
+    this.delegate = delegate;
+    this.writes = new ArrayList<>();
+  }
+
+  /**
+   * Returns the normalized absolute path of a file, or the name as it is if it is not a path.
+   */
+  private static String normalize(String filename) {
+    try {
+      return Paths.get(filename).toAbsolutePath().normalize().toString();
+    } catch (InvalidPathException e) {
+      return filename;
+    }
+  }
+
+  private static ThreadFactory daemon(String name) {
+    return task -> {
+      Thread thread = new Thread(task, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Creates a controller that shares the decode and encode stages of this one but reads and
+   * writes through another controller. Its writes are flushed separately from this one's.
+   *
+   * @param delegate the controller that reads and writes the files
+   * @return the new controller
+   * @throws IllegalArgumentException if delegate is null
+   */
+  public PipelinedFileController withDelegate(IFileController delegate) {
+    if (delegate == null) {
+      throw new IllegalArgumentException("Invalid Parameters.");
+    }
+    return new PipelinedFileController(this.stages, delegate);
+  }
+
+  /**
+   * Starts decoding an image so a later {@link #readImage(String)} of the same file does not have
+   * to wait for it. Nothing is started if the decode stage already holds as many images as it
+   * can, which keeps the decode stage from running more than a few images ahead of the rest, or
+   * if the file is being written.
+   *
+   * @param filename the file to decode
+   * @return true if the image is being decoded, false if the decode stage is full or the file is
+   *         being written
+   */
+  public boolean prefetch(String filename) {
+    String file = normalize(filename);
+    synchronized (this.stages) {
+      if (this.stages.prefetched.containsKey(file)) {
+        return true;
+      }
+      if (this.stages.prefetched.size() >= this.stages.capacity
+              || this.stages.writing.containsKey(file)) {
+        return false;
+      }
+      this.stages.prefetched.put(file,
+              this.stages.decoder.submit(() -> this.stages.reader.readImage(filename)));
+      return true;
+    }
+  }
+
+  /**
+   * Drops an image that was prefetched but is no longer going to be read, making room for
+   * another one.
+   *
+   * @param filename the file that was prefetched
+   */
+  public void discard(String filename) {
+    synchronized (this.stages) {
+      Future<IImage> image = this.stages.prefetched.remove(normalize(filename));
+      if (image != null) {
+        image.cancel(false);
+      }
+    }
+  }
+
+  @Override
+  public IImage readImage(String filename) throws IOException {
+    String file = normalize(filename);
+    Future<IImage> image;
+    try {
+      synchronized (this.stages) {
+        image = this.stages.prefetched.remove(file);
+        while (image == null && this.stages.writing.containsKey(file)) {
+          this.stages.wait();
+        }
+      }
+      if (image == null) {
+        this.awaitWrites();
+        return this.delegate.readImage(filename);
+      }
+      return image.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading " + filename + ".", e);
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  /**
+   * Rethrows the cause of a failed stage as the exception the delegate threw.
+   */
+  private static IOException rethrow(Throwable cause) {
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+  }
+
+  /**
+   * Copies the image and queues it on the encode stage, blocking while the stage is full. A file
+   * extension that cannot be written is still rejected straight away, and any other failure is
+   * reported by {@link #flush()}.
+   */
+  @Override
+  public void writeImage(String filename, String extension, IImage image) throws IOException {
+    if (!IMAGE_EXTENSIONS.contains(extension)) {
+      this.awaitWrites();
+      this.delegate.writeImage(filename, extension, image);
+      return;
+    }
+    ImageInfo info = image.getInfo();
+    IImage copy = new RasterImage(image.getRaster(), info.getWidth(), info.getHeight(),
+            info.getDepth());
+    try {
+      this.stages.encodeSlots.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing " + filename + ".", e);
+    }
+    String file = normalize(filename + "." + extension);
+    this.stages.startWrite(file);
+    try {
+      this.writes.add(this.stages.encoder.submit(() -> {
+        try {
+          this.delegate.writeImage(filename, extension, copy);
+          return null;
+        } finally {
+          this.stages.endWrite(file);
+          this.stages.encodeSlots.release();
+        }
+      }));
+    } catch (RuntimeException e) {
+      this.stages.endWrite(file);
+      this.stages.encodeSlots.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Waits for every image written through this controller to be encoded.
+   *
+   * @throws IOException the first exception a write failed with, after waiting for the rest
+   */
+  public void flush() throws IOException {
+    IOException failure = null;
+    RuntimeException unchecked = null;
+    for (Future<?> write : this.writes) {
+      try {
+        write.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while flushing writes.", e);
+      } catch (ExecutionException e) {
+        try {
+          IOException io = rethrow(e.getCause());
+          failure = failure == null ? io : failure;
+        } catch (RuntimeException runtime) {
+          unchecked = unchecked == null ? runtime : unchecked;
+        }
+      }
+    }
+    this.writes.clear();
+    if (failure != null) {
+      throw failure;
+    }
+    if (unchecked != null) {
+      throw unchecked;
+    }
+  }
+
+  /**
+   * Flushes the writes of this controller and stops the stages, which stops every controller
+   * that shares them.
+   *
+   * @throws IOException if a write failed
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.flush();
+    } finally {
+      this.stages.decoder.shutdownNow();
+      this.stages.encoder.shutdown();
+    }
+  }
+
+  @Override
+  public ILayer readState(String filename) throws FileNotFoundException {
+    this.awaitWrites();
+    return this.delegate.readState(filename);
+  }
+
+  @Override
+  public void setEncoding(PnmEncoding encoding) {
+    this.awaitWrites();
+    this.delegate.setEncoding(encoding);
+  }
+
+  @Override
+  public void setStateFormat(StateFormat format) {
+    this.awaitWrites();
+    this.delegate.setStateFormat(format);
+  }
+
+  @Override
+  public void writeState(String filename, IROLayer layer) throws IOException {
+    this.flush();
+    this.delegate.writeState(filename, layer);
+  }
+
+  @Override
+  public void writeTextOrPPM(String filename, String extension, String contents)
+          throws IOException {
+    this.flush();
+    this.delegate.writeTextOrPPM(filename, extension, contents);
+  }
+
+  /**
+   * Waits for the pending writes without reporting their failures, which are kept for the next
+   * flush.
+   */
+  private void awaitWrites() {
+    for (Future<?> write : this.writes) {
+      try {
+        write.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        //reported by flush
+      }
+    }
+  }
+}
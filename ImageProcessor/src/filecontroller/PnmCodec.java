@@ -0,0 +1,186 @@
+package filecontroller;
+
+import imagemodel.IImage;
+import imagemodel.ImageInfo;
+import imagemodel.RasterImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The PnmCodec class reads and writes the binary netpbm formats, P6 (ppm) and P5 (pgm), with
+ * either 8 or 16 bit samples. Binary files are decoded straight from a {@link ByteBuffer}, which
+ * can be a memory mapped file, so no samples are tokenized or copied before they are packed into
+ * the raster. The model keeps 8 bit channels, so 16 bit samples are scaled down to 0-255 when read
+ * and scaled up when written.
+ */
+final class PnmCodec {
+
+  private PnmCodec() {
+  }
+
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B;
+  }
+
+  /**
+   * Reads a header integer, skipping whitespace and comments before it. The single whitespace
+   * character after the integer is consumed.
+   */
+  private static int headerInt(ByteBuffer buffer) throws IOException {
+    int c = next(buffer);
+    while (c == '#' || isWhitespace(c)) {
+      if (c == '#') {
+        while (c != '\n' && c != '\r') {
+          c = next(buffer);
+        }
+      }
+      c = next(buffer);
+    }
+    if (c < '0' || c > '9') {
+      throw new IOException("Invalid PPM file: expected an integer in the header.");
+    }
+    long value = 0;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + (c - '0');
+      if (value > Integer.MAX_VALUE) {
+        throw new IOException("Invalid PPM file: integer is too large.");
+      }
+      c = next(buffer);
+    }
+    if (!isWhitespace(c)) {
+      throw new IOException("Invalid PPM file: expected whitespace after " + value + ".");
+    }
+    return (int) value;
+  }
+
+  private static int next(ByteBuffer buffer) throws IOException {
+    if (!buffer.hasRemaining()) {
+      throw new IOException("Invalid PPM file: unexpected end of file.");
+    }
+    return buffer.get() & 0xFF;
+  }
+
+  /**
+   * Decodes a P5 or P6 file whose magic number has already been read from the buffer.
+   *
+   * @param buffer the rest of the file, positioned right after the magic number
+   * @param grey   true for P5, false for P6
+   * @return the decoded image
+   * @throws IOException if the header is invalid or the file is too short
+   */
+  static IImage decode(ByteBuffer buffer, boolean grey) throws IOException {
+    int width = headerInt(buffer);
+    int height = headerInt(buffer);
+    int maxValue = headerInt(buffer);
+    if (width <= 0 || height <= 0 || maxValue <= 0 || maxValue > 65535) {
+      throw new IOException("Invalid PPM file: bad width, height or maximum value.");
+    }
+    boolean wide = maxValue > 255;
+    int channels = grey ? 1 : 3;
+    long needed = (long) width * height * channels * (wide ? 2 : 1);
+    if (buffer.remaining() < needed) {
+      throw new IOException("Invalid PPM file: expected " + needed + " bytes of samples.");
+    }
+
+    int[] raster = new int[width * height];
+    int offset = buffer.position();
+    if (!wide) {
+      for (int i = 0; i < raster.length; i++) {
+        int r = buffer.get(offset++) & 0xFF;
+        if (grey) {
+          raster[i] = RasterImage.pack(r, r, r);
+        } else {
+          int g = buffer.get(offset++) & 0xFF;
+          int b = buffer.get(offset++) & 0xFF;
+          raster[i] = RasterImage.pack(r, g, b);
+        }
+      }
+      return new RasterImage(raster, width, height, maxValue);
+    }
+
+    for (int i = 0; i < raster.length; i++) {
+      int r = scaleDown(buffer.getShort(offset) & 0xFFFF, maxValue);
+      offset += 2;
+      if (grey) {
+        raster[i] = RasterImage.pack(r, r, r);
+      } else {
+        int g = scaleDown(buffer.getShort(offset) & 0xFFFF, maxValue);
+        int b = scaleDown(buffer.getShort(offset + 2) & 0xFFFF, maxValue);
+        offset += 4;
+        raster[i] = RasterImage.pack(r, g, b);
+      }
+    }
+    return new RasterImage(raster, width, height, 255);
+  }
+
+  private static int scaleDown(int sample, int maxValue) {
+    return (int) ((sample * 255L + maxValue / 2) / maxValue);
+  }
+
+  /**
+   * Converts a packed pixel to grey using the same weights as {@link filter.Greyscale}.
+   *
+   * @param rgb the packed 0xRRGGBB pixel
+   * @return the grey value
+   */
+  static int luma(int rgb) {
+    return (int) (((rgb >> 16) & 0xFF) * 0.2126 + ((rgb >> 8) & 0xFF) * 0.7152
+            + (rgb & 0xFF) * 0.0722);
+  }
+
+  /**
+   * Writes an image as P6, or as P5 using the same luma weights as
+   * {@link filter.Greyscale}. Pixels always hold 8 bit channels, whatever depth the image reports,
+   * so the maximum value written is 255, or 65535 for 16 bit samples.
+   *
+   * @param out    where to write the file, should be buffered
+   * @param image  the image to write
+   * @param grey   true for P5, false for P6
+   * @param wide   true for 16 bit samples, false for 8 bit samples
+   * @throws IOException if the file cannot be written
+   */
+  static void encode(OutputStream out, IImage image, boolean grey, boolean wide)
+          throws IOException {
+    ImageInfo info = image.getInfo();
+    int width = info.getWidth();
+    int height = info.getHeight();
+    int maxValue = wide ? 65535 : 255;
+    out.write(((grey ? "P5" : "P6") + "\n" + width + " " + height + "\n" + maxValue + "\n")
+            .getBytes(StandardCharsets.US_ASCII));
+
+    int channels = grey ? 1 : 3;
+    int[] pixels = null;
+    byte[] row = new byte[width * channels * (wide ? 2 : 1)];
+    for (int y = 0; y < height; y++) {
+      pixels = image.getRow(y, pixels);
+      int index = 0;
+      for (int x = 0; x < width; x++) {
+        int rgb = pixels[x];
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        if (grey) {
+          index = put(row, index, luma(rgb), wide);
+        } else {
+          index = put(row, index, r, wide);
+          index = put(row, index, g, wide);
+          index = put(row, index, b, wide);
+        }
+      }
+      out.write(row);
+    }
+  }
+
+  private static int put(byte[] row, int index, int value, boolean wide) {
+    if (!wide) {
+      row[index] = (byte) value;
+      return index + 1;
+    }
+    int sample = value * 257;
+    row[index] = (byte) (sample >> 8);
+    row[index + 1] = (byte) sample;
+    return index + 2;
+  }
+}
@@ -0,0 +1,19 @@
+package filecontroller;
+
+/**
+ * The encodings a ppm or pgm file can be written in.
+ */
+public enum PnmEncoding {
+  /**
+   * Plain text samples, P3 for ppm and P2 for pgm.
+   */
+  PLAIN,
+  /**
+   * One byte per sample, P6 for ppm and P5 for pgm.
+   */
+  BINARY,
+  /**
+   * Two big-endian bytes per sample with a maximum value of 65535, P6 for ppm and P5 for pgm.
+   */
+  BINARY16
+}
@@ -0,0 +1,136 @@
+package filecontroller;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The PpmReader class is a streaming tokenizer for plain (ASCII) PPM files and the layer state
+ * files, which use the same format. It reads the stream through its own byte buffer, skips
+ * whitespace and {@code #} comments as it goes and decodes integers digit by digit, so a file is
+ * read in one pass without building strings, lines or regular expressions per value.
+ */
+final class PpmReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final InputStream in;
+  private final byte[] buffer;
+  private int position;
+  private int limit;
+
+  /**
+   * Creates a PpmReader over the given stream. The stream is closed when this reader is.
+   *
+   * @param in the stream to read, does not need to be buffered
+   */
+  PpmReader(InputStream in) {
+    this.in = in;
+    this.buffer = new byte[BUFFER_SIZE];
+    this.position = 0;
+    this.limit = 0;
+  }
+
+  private int read() throws IOException {
+    if (this.position == this.limit) {
+      this.limit = this.in.read(this.buffer, 0, this.buffer.length);
+      this.position = 0;
+      if (this.limit <= 0) {
+        this.limit = 0;
+        return -1;
+      }
+    }
+    return this.buffer[this.position++] & 0xFF;
+  }
+
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B;
+  }
+
+  /**
+   * Skips whitespace and comments, which run from a {@code #} to the end of the line.
+   *
+   * @return the first character of the next token, or -1 at the end of the stream
+   */
+  private int skipSeparators() throws IOException {
+    int c = this.read();
+    while (true) {
+      if (c == '#') {
+        while (c != '\n' && c != '\r' && c != -1) {
+          c = this.read();
+        }
+      } else if (isWhitespace(c)) {
+        c = this.read();
+      } else {
+        return c;
+      }
+    }
+  }
+
+  /**
+   * Ends a token on the character after it. Whitespace is consumed, a comment is left to be
+   * skipped before the next token.
+   */
+  private void endToken(int c) {
+    if (c == '#') {
+      this.position--;
+    }
+  }
+
+  /**
+   * Reads the next whitespace separated token, such as the magic number of a file.
+   *
+   * @return the token
+   * @throws EOFException if the stream has no more tokens
+   * @throws IOException  if the stream cannot be read
+   */
+  String next() throws IOException {
+    int c = this.skipSeparators();
+    if (c == -1) {
+      throw new EOFException("Unexpected end of file.");
+    }
+    StringBuilder token = new StringBuilder();
+    while (c != -1 && c != '#' && !isWhitespace(c)) {
+      token.append((char) c);
+      c = this.read();
+    }
+    this.endToken(c);
+    return token.toString();
+  }
+
+  /**
+   * Reads the next token as a non negative decimal integer.
+   *
+   * @return the integer
+   * @throws EOFException if the stream has no more tokens
+   * @throws IOException  if the token is not an integer or the stream cannot be read
+   */
+  int nextInt() throws IOException {
+    int c = this.skipSeparators();
+    if (c == -1) {
+      throw new EOFException("Unexpected end of file.");
+    }
+    if (c < '0' || c > '9') {
+      throw new IOException("Invalid PPM file: expected an integer.");
+    }
+    long value = 0;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + (c - '0');
+      if (value > Integer.MAX_VALUE) {
+        throw new IOException("Invalid PPM file: integer is too large.");
+      }
+      c = this.read();
+    }
+    if (c != -1 && c != '#' && !isWhitespace(c)) {
+      throw new IOException("Invalid PPM file: expected an integer.");
+    }
+    this.endToken(c);
+    return (int) value;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.in.close();
+  }
+}
@@ -0,0 +1,118 @@
+package filecontroller;
+
+import imagemodel.IImage;
+import imagemodel.ImageInfo;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The PpmWriter class streams plain (text) P3 and P2 files to an {@link OutputStream}. Rows of the
+ * image are copied one at a time into a reused int array and their samples are encoded into a
+ * reused byte buffer without creating a string per value, so the memory needed to write an image
+ * does not grow with its size. A P3 file is byte for byte the same as {@code "P3\n"} followed by
+ * the {@code toString} of the image.
+ */
+final class PpmWriter {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final OutputStream out;
+  private final byte[] buffer;
+  private int count;
+
+  /**
+   * Creates a PpmWriter over the given stream, which does not need to be buffered.
+   *
+   * @param out the stream to write to
+   */
+  PpmWriter(OutputStream out) {
+    this.out = out;
+    this.buffer = new byte[BUFFER_SIZE];
+    this.count = 0;
+  }
+
+  private void ensure(int bytes) throws IOException {
+    if (this.count + bytes > this.buffer.length) {
+      this.flush();
+    }
+  }
+
+  private void writeByte(int b) throws IOException {
+    this.ensure(1);
+    this.buffer[this.count++] = (byte) b;
+  }
+
+  private void writeAscii(String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+    this.flush();
+    this.out.write(bytes);
+  }
+
+  /**
+   * Writes a sample, which is always between 0 and 255, in decimal.
+   */
+  private void writeSample(int value) throws IOException {
+    this.ensure(3);
+    if (value >= 100) {
+      this.buffer[this.count++] = (byte) ('0' + value / 100);
+    }
+    if (value >= 10) {
+      this.buffer[this.count++] = (byte) ('0' + value / 10 % 10);
+    }
+    this.buffer[this.count++] = (byte) ('0' + value % 10);
+  }
+
+  /**
+   * Writes an image as a P3 file, or as a P2 file using the same luma weights as
+   * {@link filter.Greyscale}.
+   *
+   * @param image the image to write
+   * @param grey  true for P2, false for P3
+   * @throws IOException if the stream cannot be written
+   */
+  void writePlain(IImage image, boolean grey) throws IOException {
+    ImageInfo info = image.getInfo();
+    int width = info.getWidth();
+    int height = info.getHeight();
+    int depth = info.getDepth();
+    this.writeAscii((grey ? "P2" : "P3") + "\n" + width + "\n" + height + "\n" + depth + "\n");
+
+    int[] row = null;
+    for (int y = 0; y < height; y++) {
+      row = image.getRow(y, row);
+      for (int x = 0; x < width; x++) {
+        int rgb = row[x];
+        if (grey) {
+          this.writeSample(PnmCodec.luma(rgb));
+          this.writeByte(x == width - 1 ? '\n' : ' ');
+        } else {
+          this.writeSample((rgb >> 16) & 0xFF);
+          this.writeByte(' ');
+          this.writeSample((rgb >> 8) & 0xFF);
+          this.writeByte(' ');
+          this.writeSample(rgb & 0xFF);
+          this.writeByte(' ');
+          this.writeByte(' ');
+        }
+      }
+    }
+    if (!grey) {
+      this.writeByte('\n');
+    }
+    this.flush();
+  }
+
+  /**
+   * Writes out everything that is buffered.
+   *
+   * @throws IOException if the stream cannot be written
+   */
+  void flush() throws IOException {
+    if (this.count > 0) {
+      this.out.write(this.buffer, 0, this.count);
+      this.count = 0;
+    }
+    this.out.flush();
+  }
+}
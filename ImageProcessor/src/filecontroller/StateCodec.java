@@ -0,0 +1,242 @@
+package filecontroller;
+
+import imagemodel.DeferredImage;
+import imagemodel.IImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import layermodel.BlendMode;
+import layermodel.ILayer;
+import layermodel.IROLayer;
+import layermodel.Layer;
+
+/**
+ * The StateCodec class reads and writes the binary layer state format. A state starts with a
+ * header:
+ *
+ * <pre>
+ *   magic     4 bytes, "IPLS"
+ *   version   int, currently 1
+ *   flags     int, bit 0 set if the layers are deflate compressed
+ *   layers    int, the number of layers
+ *   width     int
+ *   height    int
+ *   depth     int
+ *   current   int, the index of the current layer counting from 0
+ * </pre>
+ *
+ * <p>followed by an index table with one entry per layer in order: a visibility byte (1 if
+ * visible), the ordinal of the layer's {@link BlendMode} and its opacity as one byte each, the long
+ * offset of the layer's chunk from the start of the file and the int length of the chunk. Each
+ * chunk holds the red, green and blue channel planes of width * height bytes each, as its own
+ * deflate stream if the state is compressed. All numbers are big-endian. Storing the
+ * channels as planes keeps similar bytes together, which compresses much better than interleaved
+ * pixels.
+ *
+ * <p>Because every layer is its own chunk, a state is read by memory mapping the chunks and
+ * handing each layer to the {@link Layer} as a {@link DeferredImage}, so a layer is only
+ * decompressed once something looks at its pixels, such as a blend or the GUI showing the current
+ * visible layer.
+ */
+final class StateCodec {
+
+  static final byte[] MAGIC = {'I', 'P', 'L', 'S'};
+  static final int VERSION = 1;
+  private static final int FLAG_DEFLATE = 1;
+  private static final int HEADER_SIZE = 32;
+  private static final int INDEX_ENTRY_SIZE = 15;
+
+  private StateCodec() {
+  }
+
+  /**
+   * Writes a layer as a binary state, one chunk per layer followed by the header and index table.
+   *
+   * @param channel  the empty file to write the state to
+   * @param layer    the layer to write
+   * @param compress true to deflate the channel planes
+   * @throws IOException if the state cannot be written
+   */
+  static void write(FileChannel channel, IROLayer layer, boolean compress) throws IOException {
+    List<Integer> props = layer.getProps();
+    int numLayers = props.get(0);
+    int height = props.get(1);
+    int width = props.get(2);
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + numLayers * INDEX_ENTRY_SIZE);
+    header.put(MAGIC);
+    header.putInt(VERSION);
+    header.putInt(compress ? FLAG_DEFLATE : 0);
+    header.putInt(numLayers);
+    header.putInt(width);
+    header.putInt(height);
+    header.putInt(props.get(3));
+    header.putInt(props.get(4));
+
+    long offset = header.capacity();
+    for (int i = 1; i <= numLayers; i++) {
+      ByteBuffer chunk = ByteBuffer.wrap(encodeLayer(layer.getLayer(i), width, height, compress));
+      header.put((byte) (layer.isVisible(i) ? 1 : 0));
+      header.put((byte) layer.getBlendMode(i).ordinal());
+      header.put((byte) layer.getOpacity(i));
+      header.putLong(offset);
+      header.putInt(chunk.remaining());
+      while (chunk.hasRemaining()) {
+        offset += channel.write(chunk, offset);
+      }
+    }
+
+    header.flip();
+    long position = 0;
+    while (header.hasRemaining()) {
+      position += channel.write(header, position);
+    }
+  }
+
+  private static byte[] encodeLayer(IImage image, int width, int height, boolean compress)
+          throws IOException {
+    ByteArrayOutputStream chunk = new ByteArrayOutputStream(compress ? 1 << 16
+            : 3 * width * height);
+    Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+    try {
+      OutputStream out = compress ? new DeflaterOutputStream(chunk, deflater, 1 << 16) : chunk;
+      byte[] plane = new byte[width];
+      int[] row = null;
+      for (int shift = 16; shift >= 0; shift -= 8) {
+        for (int y = 0; y < height; y++) {
+          row = image.getRow(y, row);
+          for (int x = 0; x < width; x++) {
+            plane[x] = (byte) (row[x] >> shift);
+          }
+          out.write(plane, 0, width);
+        }
+      }
+      out.close();
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+    return chunk.toByteArray();
+  }
+
+  /**
+   * Reads a binary state whose magic number has already been read from the channel.
+   *
+   * @param channel the state, positioned right after the magic number
+   * @return the layer
+   * @throws IOException if the state is invalid, of an unknown version or too short
+   */
+  static ILayer read(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE - MAGIC.length);
+    readFully(channel, header);
+    header.flip();
+    int version = header.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported state version " + version + ".");
+    }
+    boolean compressed = (header.getInt() & FLAG_DEFLATE) != 0;
+    int numLayers = header.getInt();
+    int width = header.getInt();
+    int height = header.getInt();
+    int depth = header.getInt();
+    int current = header.getInt();
+    if (numLayers < 0 || (numLayers > 0 && (width <= 0 || height <= 0
+            || (long) width * height > Integer.MAX_VALUE / 3))) {
+      throw new IOException("Invalid layer sizes.");
+    }
+
+    ILayer layer = readChunked(channel, compressed, numLayers, width, height, depth);
+    if (current >= 0 && current < numLayers) {
+      layer.setCurrent(current + 1);
+    }
+    return layer;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) == -1) {
+        throw new IOException("Unexpected end of file.");
+      }
+    }
+  }
+
+  private static ILayer readChunked(FileChannel channel, boolean compressed, int numLayers,
+                                    int width, int height, int depth) throws IOException {
+    ByteBuffer index = ByteBuffer.allocate(numLayers * INDEX_ENTRY_SIZE);
+    readFully(channel, index);
+    index.flip();
+
+    ILayer layer = new Layer(new ArrayList<>(Arrays.asList(width, height, depth)));
+    long size = channel.size();
+    for (int i = 1; i <= numLayers; i++) {
+      boolean visible = index.get() != 0;
+      int mode = index.get();
+      int opacity = index.get();
+      long offset = index.getLong();
+      int length = index.getInt();
+      if (offset < HEADER_SIZE || length < 0 || offset + length > size
+              || (!compressed && length != 3 * width * height)) {
+        throw new IOException("Invalid chunk for layer " + i + ".");
+      }
+      if (mode < 0 || mode >= BlendMode.values().length) {
+        throw new IOException("Invalid blend mode for layer " + i + ".");
+      }
+      //the mapping stays valid after the channel is closed
+      ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+      layer.addLayer(new DeferredImage(width, height, depth,
+          () -> decodeChunk(chunk, compressed, width, height)));
+      if (!visible) {
+        layer.toggleVisibility(i);
+      }
+      layer.setBlendMode(i, BlendMode.values()[mode], opacity);
+    }
+    //loading is not a change that can be undone
+    layer.clearHistory();
+    return layer;
+  }
+
+  private static int[] decodeChunk(ByteBuffer chunk, boolean compressed, int width, int height) {
+    byte[] planes = new byte[3 * width * height];
+    if (compressed) {
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(chunk.duplicate());
+        int read = 0;
+        while (read < planes.length && !inflater.finished()) {
+          int n = inflater.inflate(planes, read, planes.length - read);
+          if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          read += n;
+        }
+        if (read != planes.length) {
+          throw new IllegalArgumentException("Invalid layer state: a layer is truncated.");
+        }
+      } catch (DataFormatException e) {
+        throw new IllegalArgumentException("Invalid layer state: " + e.getMessage());
+      } finally {
+        inflater.end();
+      }
+    } else {
+      chunk.duplicate().get(planes);
+    }
+
+    int pixels = width * height;
+    int[] raster = new int[pixels];
+    for (int p = 0; p < pixels; p++) {
+      raster[p] = ((planes[p] & 0xFF) << 16) | ((planes[pixels + p] & 0xFF) << 8)
+              | (planes[2 * pixels + p] & 0xFF);
+    }
+    return raster;
+  }
+}
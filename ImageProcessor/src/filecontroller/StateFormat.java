@@ -0,0 +1,19 @@
+package filecontroller;
+
+/**
+ * The formats a layer state can be saved in. States in any of these formats can be loaded.
+ */
+public enum StateFormat {
+  /**
+   * The original text format, saved as a .txt file. This is the default.
+   */
+  TEXT,
+  /**
+   * The binary format with raw channel planes, saved as a .state file.
+   */
+  BINARY,
+  /**
+   * The binary format with deflate compressed channel planes, saved as a .state file.
+   */
+  COMPRESSED
+}
@@ -2,7 +2,10 @@ package filter;
 
 import imagemodel.IImage;
 import imagemodel.IPixel;
+import imagemodel.ImageInfo;
+import imagemodel.Pixel;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,26 +71,45 @@ public abstract class AModifier implements IModifier {
 
   @Override
   public List<IPixel> modify(IImage image) {
-    List<IPixel> origPixels = image.getPixels();
-    int width = image.getProps().get(0);
-    int height = image.getProps().get(1);
+    int width = image.getInfo().getWidth();
+    int[] raster = this.modifyRaster(image);
 
-    origPixels.forEach((pixel) -> {
-      this.pixels.add(this.applyToPixel(origPixels, pixel, width, height));
-    });
+    //the pixels of an image are kept in row-major order, so the coords follow from the index
+    for (int i = 0; i < raster.length; i++) {
+      int rgb = raster[i];
+      this.pixels.add(new Pixel(i % width, i / width, (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF,
+              rgb & 0xFF));
+    }
 
     return this.pixels;
   }
 
+  @Override
+  public int[] modifyRaster(IImage image) {
+    IntBuffer origRaster = image.getPixelBuffer();
+    ImageInfo info = image.getInfo();
+    int width = info.getWidth();
+    int height = info.getHeight();
+    int[] raster = new int[info.getSize()];
+
+    TileExecutor.getShared().forEachBand(width, height, (fromRow, toRow) -> {
+      for (int i = fromRow * width; i < toRow * width; i++) {
+        raster[i] = this.applyToRaster(origRaster, i, width, height);
+      }
+    });
+
+    return raster;
+  }
+
   /**
-   * Applies the filter to a Pixel and returns a new pixel with the same x,
-   * same y, and new RGB values.
+   * Applies the filter to the packed pixel at the given index of a raster and returns the new
+   * packed pixel. The list based {@link #modify(IImage)} is built on top of this as well.
    *
-   * @param pixels original list of pixels of the image
-   * @param pixel  the pixel that we want the new RBG values of
+   * @param raster read-only view of the original packed pixels of the image
+   * @param index  the row-major index of the pixel that we want the new RGB values of
    * @param width  the width of the image
    * @param height the height of the image
-   * @return a new pixel with the same x, same y, and new RBG values
+   * @return the new packed 0xRRGGBB pixel
    */
-  protected abstract IPixel applyToPixel(List<IPixel> pixels, IPixel pixel, int width, int height);
+  protected abstract int applyToRaster(IntBuffer raster, int index, int width, int height);
 }
@@ -1,55 +1,51 @@
 package filter;
 
-import imagemodel.IPixel;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
-import imagemodel.Pixel;
+import imagemodel.RasterImage;
+import java.nio.IntBuffer;
 
 /**
  * The abstract ATransform class contains the methods implemented by all filters (ex: Sepia).
- * This class specifically overrides the AModifier applyToPixel method for kernel configuration
+ * This class specifically overrides the AModifier applyToRaster method for kernel configuration
  * where each pixel gets a new RBG value through a linear transformation.
  * It also extends AModifier.
+ *
+ * <p>The kernel must be 3 x 3, one row for each of the red, green and blue values it makes, or
+ * the constructor throws an IllegalArgumentException.
  */
 public class ATransform extends AModifier {
 
+  protected final double[] matrix;
+
   /**
    * Instantiates a new Transform.
    *
-   * @param kernel the kernel which is validated in the superclass.
+   * @param kernel the 3 x 3 matrix, which is also validated in the superclass.
+   * @throws IllegalArgumentException if the kernel is not 3 x 3
    */
   public ATransform(double[][] kernel) {
     super(kernel);
+    if (kernel.length != 3 || kernel[0].length != 3 || kernel[1].length != 3
+            || kernel[2].length != 3) {
+      throw new IllegalArgumentException("Invalid kernel");
+    }
+    this.matrix = new double[9];
+    for (int i = 0; i < 9; i++) {
+      this.matrix[i] = kernel[i / 3][i % 3];
+    }
   }
 
   /**
-   * Creates a new list of RGB values that are a result of linear transformation with
-   * matrix multiplication with the kernel.
-   *
-   * @param pixel current pixel that we want to apply the kernel on
-   * @return new list of RBG values with kernel multiplication applied
+   * Creates the new RGB values of a pixel as a result of linear transformation with matrix
+   * multiplication with the kernel.
    */
-  private List<Double> generateNewRGB(IPixel pixel) {
-    List<Double> newRGB = new ArrayList<>(Arrays.asList(0.0, 0.0, 0.0));
-    newRGB.set(0, pixel.applyToR(crushedKernel.get(0))
-            + pixel.applyToG(crushedKernel.get(1))
-            + pixel.applyToB(crushedKernel.get(2)));
-    newRGB.set(1, pixel.applyToR(crushedKernel.get(3))
-            + pixel.applyToG(crushedKernel.get(4))
-            + pixel.applyToB(crushedKernel.get(5)));
-    newRGB.set(2, pixel.applyToR(crushedKernel.get(6))
-            + pixel.applyToG(crushedKernel.get(7))
-            + pixel.applyToB(crushedKernel.get(8)));
-
-    return newRGB;
-  }
-
   @Override
-  protected IPixel applyToPixel(List<IPixel> pixels, IPixel pixel, int width, int height) {
-    //get pixel with new rgb values
-    return new Pixel(pixel.getCoords(), this.generateNewRGB(pixel));
+  protected int applyToRaster(IntBuffer raster, int index, int width, int height) {
+    int rgb = raster.get(index);
+    int r = (rgb >> 16) & 0xFF;
+    int g = (rgb >> 8) & 0xFF;
+    int b = rgb & 0xFF;
+    return RasterImage.pack((int) (r * matrix[0] + g * matrix[1] + b * matrix[2]),
+            (int) (r * matrix[3] + g * matrix[4] + b * matrix[5]),
+            (int) (r * matrix[6] + g * matrix[7] + b * matrix[8]));
   }
 }
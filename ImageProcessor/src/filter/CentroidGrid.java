@@ -0,0 +1,115 @@
+package filter;
+
+/**
+ * The CentroidGrid class is a uniform grid of buckets over the centroids of a {@link Mosaic}, used
+ * to find the closest centroid to a pixel without looking at every centroid. The cells are sized
+ * so that each holds about one centroid, and a lookup searches rings of cells around the pixel
+ * until no unsearched cell can hold anything closer, so a lookup costs about O(1) instead of
+ * O(centroids). The buckets are kept as flat int arrays in the cell order, so building the grid
+ * creates no per centroid objects.
+ */
+final class CentroidGrid {
+
+  private final int[] centroidX;
+  private final int[] centroidY;
+  private final int cellSize;
+  private final int columns;
+  private final int rows;
+  //the centroids of cell c are cellItems[cellStart[c]] up to cellItems[cellStart[c + 1]]
+  private final int[] cellStart;
+  private final int[] cellItems;
+
+  /**
+   * Builds the grid over the given centroids.
+   *
+   * @param centroidX the x coord of every centroid
+   * @param centroidY the y coord of every centroid
+   * @param width     the width of the image the centroids are in
+   * @param height    the height of the image the centroids are in
+   * @throws IllegalArgumentException if there are no centroids or the coords do not match up
+   */
+  CentroidGrid(int[] centroidX, int[] centroidY, int width, int height) {
+    if (centroidX.length == 0 || centroidX.length != centroidY.length) {
+      throw new IllegalArgumentException("A grid needs at least one centroid.");
+    }
+    this.centroidX = centroidX;
+    this.centroidY = centroidY;
+    this.cellSize = Math.max(1,
+            (int) Math.ceil(Math.sqrt((double) width * height / centroidX.length)));
+    this.columns = Math.max(1, (width + cellSize - 1) / cellSize);
+    this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+
+    //count the centroids per cell, then turn the counts into start offsets
+    this.cellStart = new int[columns * rows + 1];
+    for (int c = 0; c < centroidX.length; c++) {
+      this.cellStart[this.cellOf(centroidX[c], centroidY[c]) + 1]++;
+    }
+    for (int cell = 0; cell < columns * rows; cell++) {
+      this.cellStart[cell + 1] += this.cellStart[cell];
+    }
+    this.cellItems = new int[centroidX.length];
+    int[] next = new int[columns * rows];
+    for (int c = 0; c < centroidX.length; c++) {
+      int cell = this.cellOf(centroidX[c], centroidY[c]);
+      this.cellItems[this.cellStart[cell] + next[cell]++] = c;
+    }
+  }
+
+  private int cellOf(int x, int y) {
+    int column = Math.min(Math.max(x / cellSize, 0), columns - 1);
+    int row = Math.min(Math.max(y / cellSize, 0), rows - 1);
+    return row * columns + column;
+  }
+
+  /**
+   * Finds the centroid closest to the given coordinates. Ties go to the centroid that was given
+   * first.
+   *
+   * @param x the x coord of the pixel
+   * @param y the y coord of the pixel
+   * @return the index of the closest centroid
+   */
+  int nearest(int x, int y) {
+    int column = Math.min(Math.max(x / cellSize, 0), columns - 1);
+    int row = Math.min(Math.max(y / cellSize, 0), rows - 1);
+    int closest = -1;
+    long distance = Long.MAX_VALUE;
+
+    for (int ring = 0; ; ring++) {
+      //every cell of this ring is at least (ring - 1) * cellSize + 1 away from the pixel, so once
+      //that is further than the closest centroid so far nothing closer can be found
+      if (closest != -1 && ring > 0) {
+        long gap = (long) (ring - 1) * cellSize + 1;
+        if (gap * gap > distance) {
+          return closest;
+        }
+      }
+      if (ring > columns && ring > rows) {
+        return closest;
+      }
+      for (int r = row - ring; r <= row + ring; r++) {
+        if (r < 0 || r >= rows) {
+          continue;
+        }
+        boolean edgeRow = r == row - ring || r == row + ring;
+        int step = edgeRow ? 1 : 2 * ring;
+        for (int col = column - ring; col <= column + ring; col += Math.max(step, 1)) {
+          if (col < 0 || col >= columns) {
+            continue;
+          }
+          int cell = r * columns + col;
+          for (int i = this.cellStart[cell]; i < this.cellStart[cell + 1]; i++) {
+            int c = this.cellItems[i];
+            long dx = this.centroidX[c] - x;
+            long dy = this.centroidY[c] - y;
+            long tentativeDistance = dx * dx + dy * dy;
+            if (tentativeDistance < distance || (tentativeDistance == distance && c < closest)) {
+              distance = tentativeDistance;
+              closest = c;
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,351 @@
+package filter;
+
+import imagemodel.RasterImage;
+import java.nio.IntBuffer;
+
+/**
+ * The Convolution class is the engine behind every {@link AFilter}. It keeps the kernel as a
+ * precomputed row-major {@code double[]} and convolves packed 0xRRGGBB rasters with it using only
+ * primitive locals, so no objects are created per pixel or per kernel tap. Kernel taps that fall
+ * outside of the image are skipped, and the remaining taps are summed in the same order as the
+ * original list based filter so the output is identical to it.
+ *
+ * <p>Kernels of rank 1 whose factors are exact in binary floating point (such as the default
+ * {@link Blur} kernel) are detected when the Convolution is created and applied as a horizontal
+ * pass followed by a vertical pass, which costs O(kernelWidth + kernelHeight) per pixel instead of
+ * O(kernelWidth * kernelHeight). Every partial sum of both passes is then exact, so the output is
+ * identical to the 2D kernel. Other rank 1 kernels (a 1/9 box blur or a gaussian) are applied as
+ * 2D kernels: their rounding errors differ between the two orders of summation, and a sum that
+ * lands just below a whole number is truncated to the intensity level under it.
+ */
+final class Convolution {
+
+  private final double[] kernel;
+  private final int kernelWidth;
+  private final int kernelHeight;
+  //the 1D factors of a separable kernel, null if the kernel is not separable
+  private double[] rowKernel;
+  private double[] columnKernel;
+
+  /**
+   * Instantiates a new Convolution for the given kernel.
+   *
+   * @param kernel the kernel which needs to be an odd x odd rectangle
+   * @throws IllegalArgumentException if the rows of the kernel are not all the same length
+   */
+  Convolution(double[][] kernel) {
+    this.kernelHeight = kernel.length;
+    this.kernelWidth = kernel[0].length;
+    this.kernel = new double[kernelWidth * kernelHeight];
+    for (int i = 0; i < kernelHeight; i++) {
+      if (kernel[i].length != kernelWidth) {
+        throw new IllegalArgumentException("Invalid kernel");
+      }
+      System.arraycopy(kernel[i], 0, this.kernel, i * kernelWidth, kernelWidth);
+    }
+    this.factorize();
+  }
+
+  /**
+   * Tries to split the kernel into a column vector times a row vector. The largest entry is used
+   * as the pivot, its row becomes the row kernel and its column divided by it becomes the column
+   * kernel. The kernel is only treated as separable if that product reproduces every entry
+   * exactly and every sum either pass can form is exact, see {@link #fractionBits(double[])}.
+   */
+  private void factorize() {
+    if (kernelWidth < 3 || kernelHeight < 3) {
+      return;
+    }
+    int pivot = 0;
+    for (int i = 1; i < kernel.length; i++) {
+      if (Math.abs(kernel[i]) > Math.abs(kernel[pivot])) {
+        pivot = i;
+      }
+    }
+    if (kernel[pivot] == 0.0 || !Double.isFinite(kernel[pivot])) {
+      return;
+    }
+    int pivotRow = pivot / kernelWidth;
+    int pivotCol = pivot % kernelWidth;
+
+    double[] row = new double[kernelWidth];
+    double[] column = new double[kernelHeight];
+    System.arraycopy(kernel, pivotRow * kernelWidth, row, 0, kernelWidth);
+    for (int i = 0; i < kernelHeight; i++) {
+      column[i] = kernel[i * kernelWidth + pivotCol] / kernel[pivot];
+    }
+
+    for (int i = 0; i < kernelHeight; i++) {
+      for (int j = 0; j < kernelWidth; j++) {
+        if (column[i] * row[j] != kernel[i * kernelWidth + j]) {
+          return;
+        }
+      }
+    }
+    int rowBits = fractionBits(row);
+    int columnBits = fractionBits(column);
+    if (rowBits < 0 || columnBits < 0) {
+      return;
+    }
+    //every sum is a multiple of 2^-(rowBits + columnBits) no larger than this bound, so it is
+    //exact as long as the bound still fits in the 53 bit significand at that scale
+    double bound = 255.0 * sumOfMagnitudes(row) * sumOfMagnitudes(column);
+    if (Math.scalb(bound, rowBits + columnBits) >= 0x1p53) {
+      return;
+    }
+    this.rowKernel = row;
+    this.columnKernel = column;
+  }
+
+  /**
+   * Finds the fewest binary fraction digits the factor needs, the smallest k such that every
+   * entry times 2^k is a whole number.
+   *
+   * @return k, or -1 if some entry is not a short binary fraction (like 1/3 or 1/9)
+   */
+  private static int fractionBits(double[] factor) {
+    for (int k = 0; k <= 32; k++) {
+      boolean whole = true;
+      for (double f : factor) {
+        double scaled = Math.scalb(f, k);
+        if (!Double.isFinite(scaled) || scaled != Math.rint(scaled)) {
+          whole = false;
+          break;
+        }
+      }
+      if (whole) {
+        return k;
+      }
+    }
+    return -1;
+  }
+
+  private static double sumOfMagnitudes(double[] factor) {
+    double sum = 0.0;
+    for (double f : factor) {
+      sum += Math.abs(f);
+    }
+    return sum;
+  }
+
+  /**
+   * Determines if this kernel is applied as two 1D passes.
+   *
+   * @return true if the kernel is separable
+   */
+  boolean isSeparable() {
+    return this.rowKernel != null;
+  }
+
+  /**
+   * Convolves the whole source raster and returns the result in a new raster.
+   *
+   * @param src    the packed source raster in row-major order
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @return the packed convolved raster
+   */
+  int[] apply(int[] src, int width, int height) {
+    int[] dst = new int[src.length];
+    this.apply(src, dst, width, height, 0, height);
+    return dst;
+  }
+
+  /**
+   * Convolves the rows {@code [fromRow, toRow)} of the source raster into the same rows of the
+   * destination raster. Rows outside of that range are read but never written.
+   *
+   * @param src     the packed source raster in row-major order
+   * @param dst     the packed destination raster, must not be the source raster
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param fromRow the first row to write, inclusive
+   * @param toRow   the last row to write, exclusive
+   */
+  void apply(int[] src, int[] dst, int width, int height, int fromRow, int toRow) {
+    this.convolveRows(src, 0, dst, width, height, fromRow, toRow);
+  }
+
+  /**
+   * Convolves the rows {@code [fromRow, toRow)} of a read-only view of the source pixels, such as
+   * {@link imagemodel.IImage#getPixelBuffer()}. Only those rows and the halo rows around them that
+   * the kernel reaches are read out of the view, with a single bulk get, so every band of a
+   * parallel pass reads its own rows instead of the whole image being copied up front.
+   *
+   * @param src     the packed source pixels in row-major order
+   * @param dst     the packed destination raster
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param fromRow the first row to write, inclusive
+   * @param toRow   the last row to write, exclusive
+   */
+  void apply(IntBuffer src, int[] dst, int width, int height, int fromRow, int toRow) {
+    int keyY = (kernelHeight - 1) / 2;
+    int haloFrom = Math.max(fromRow - keyY, 0);
+    int haloTo = Math.min(toRow + keyY, height);
+    this.convolveRows(rows(src, width, haloFrom, haloTo), haloFrom, dst, width, height, fromRow,
+            toRow);
+  }
+
+  private static int[] rows(IntBuffer src, int width, int fromRow, int toRow) {
+    int[] rows = new int[(toRow - fromRow) * width];
+    src.get(fromRow * width, rows);
+    return rows;
+  }
+
+  /**
+   * Convolves the rows {@code [fromRow, toRow)} of an image whose rows from firstRow on are held
+   * by src.
+   */
+  private void convolveRows(int[] src, int firstRow, int[] dst, int width, int height,
+                            int fromRow, int toRow) {
+    if (this.isSeparable()) {
+      this.applySeparable(src, firstRow, dst, width, height, fromRow, toRow);
+      return;
+    }
+    for (int y = fromRow; y < toRow; y++) {
+      int rowStart = y * width;
+      for (int x = 0; x < width; x++) {
+        dst[rowStart + x] = this.convolveAt(src, firstRow, width, height, x, y);
+      }
+    }
+  }
+
+  /**
+   * Convolves a single pixel of the source raster.
+   *
+   * @param src    the packed source raster in row-major order
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param x      the x coord of the pixel
+   * @param y      the y coord of the pixel
+   * @return the new packed pixel
+   */
+  int convolveAt(int[] src, int width, int height, int x, int y) {
+    return this.convolveAt(src, 0, width, height, x, y);
+  }
+
+  /**
+   * Convolves a single pixel of a read-only view of the source pixels, reading every tap with an
+   * absolute get so nothing is copied out of the view.
+   *
+   * @param src    the packed source pixels in row-major order
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param x      the x coord of the pixel
+   * @param y      the y coord of the pixel
+   * @return the new packed pixel
+   */
+  int convolveAt(IntBuffer src, int width, int height, int x, int y) {
+    int keyY = (kernelHeight - 1) / 2;
+    int keyX = (kernelWidth - 1) / 2;
+    int fromI = Math.max(-keyY, -y);
+    int toI = Math.min(keyY, height - 1 - y);
+    int fromJ = Math.max(-keyX, -x);
+    int toJ = Math.min(keyX, width - 1 - x);
+
+    double r = 0.0;
+    double g = 0.0;
+    double b = 0.0;
+    for (int i = fromI; i <= toI; i++) {
+      int srcRow = (y + i) * width + x;
+      int kRow = (i + keyY) * kernelWidth + keyX;
+      for (int j = fromJ; j <= toJ; j++) {
+        int rgb = src.get(srcRow + j);
+        double k = this.kernel[kRow + j];
+        r += ((rgb >> 16) & 0xFF) * k;
+        g += ((rgb >> 8) & 0xFF) * k;
+        b += (rgb & 0xFF) * k;
+      }
+    }
+    return RasterImage.pack((int) r, (int) g, (int) b);
+  }
+
+  private int convolveAt(int[] src, int firstRow, int width, int height, int x, int y) {
+    int keyY = (kernelHeight - 1) / 2;
+    int keyX = (kernelWidth - 1) / 2;
+    //clip the kernel to the image instead of testing every tap
+    int fromI = Math.max(-keyY, -y);
+    int toI = Math.min(keyY, height - 1 - y);
+    int fromJ = Math.max(-keyX, -x);
+    int toJ = Math.min(keyX, width - 1 - x);
+
+    double r = 0.0;
+    double g = 0.0;
+    double b = 0.0;
+    for (int i = fromI; i <= toI; i++) {
+      int srcRow = (y + i - firstRow) * width + x;
+      int kRow = (i + keyY) * kernelWidth + keyX;
+      for (int j = fromJ; j <= toJ; j++) {
+        int rgb = src[srcRow + j];
+        double k = this.kernel[kRow + j];
+        r += ((rgb >> 16) & 0xFF) * k;
+        g += ((rgb >> 8) & 0xFF) * k;
+        b += (rgb & 0xFF) * k;
+      }
+    }
+    return RasterImage.pack((int) r, (int) g, (int) b);
+  }
+
+  /**
+   * Applies a separable kernel to the rows {@code [fromRow, toRow)}. The horizontal pass is run
+   * over those rows plus the halo rows above and below them that the vertical pass reads, and is
+   * kept unrounded in per channel planes. The factors are exact, see {@link #factorize()}, so the
+   * result matches the 2D kernel.
+   */
+  private void applySeparable(int[] src, int firstRow, int[] dst, int width, int height,
+                              int fromRow, int toRow) {
+    int keyY = (kernelHeight - 1) / 2;
+    int keyX = (kernelWidth - 1) / 2;
+    int haloFrom = Math.max(fromRow - keyY, 0);
+    int haloTo = Math.min(toRow + keyY, height);
+
+    int planeSize = (haloTo - haloFrom) * width;
+    double[] planeR = new double[planeSize];
+    double[] planeG = new double[planeSize];
+    double[] planeB = new double[planeSize];
+
+    //horizontal pass
+    for (int y = haloFrom; y < haloTo; y++) {
+      int srcRow = (y - firstRow) * width;
+      int planeRow = (y - haloFrom) * width;
+      for (int x = 0; x < width; x++) {
+        int fromJ = Math.max(-keyX, -x);
+        int toJ = Math.min(keyX, width - 1 - x);
+        double r = 0.0;
+        double g = 0.0;
+        double b = 0.0;
+        for (int j = fromJ; j <= toJ; j++) {
+          int rgb = src[srcRow + x + j];
+          double k = this.rowKernel[j + keyX];
+          r += ((rgb >> 16) & 0xFF) * k;
+          g += ((rgb >> 8) & 0xFF) * k;
+          b += (rgb & 0xFF) * k;
+        }
+        planeR[planeRow + x] = r;
+        planeG[planeRow + x] = g;
+        planeB[planeRow + x] = b;
+      }
+    }
+
+    //vertical pass
+    for (int y = fromRow; y < toRow; y++) {
+      int fromI = Math.max(-keyY, -y);
+      int toI = Math.min(keyY, height - 1 - y);
+      int dstRow = y * width;
+      for (int x = 0; x < width; x++) {
+        double r = 0.0;
+        double g = 0.0;
+        double b = 0.0;
+        for (int i = fromI; i <= toI; i++) {
+          int planeIndex = (y + i - haloFrom) * width + x;
+          double k = this.columnKernel[i + keyY];
+          r += planeR[planeIndex] * k;
+          g += planeG[planeIndex] * k;
+          b += planeB[planeIndex] * k;
+        }
+        dst[dstRow + x] = RasterImage.pack((int) r, (int) g, (int) b);
+      }
+    }
+  }
+}
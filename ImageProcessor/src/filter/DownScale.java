@@ -2,8 +2,10 @@ package filter;
 
 import imagemodel.IImage;
 import imagemodel.IPixel;
+import imagemodel.ImageInfo;
 import imagemodel.Pixel;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,8 +40,9 @@ public class DownScale implements IModifier {
   @Override
   public List<IPixel> modify(IImage image) {
     List<IPixel> newPixels = new ArrayList<>();
-    final int currWidth = image.getProps().get(0);
-    final int currHeight = image.getProps().get(1);
+    ImageInfo info = image.getInfo();
+    final int currWidth = info.getWidth();
+    final int currHeight = info.getHeight();
 
     float xRatio = (1.0f * currWidth) / this.width;
     float yRatio = (1.0f * currHeight) / this.height;
@@ -59,4 +62,28 @@ public class DownScale implements IModifier {
     return newPixels;
 
   }
+
+  @Override
+  public int[] modifyRaster(IImage image) {
+    IntBuffer raster = image.getPixelBuffer();
+    int[] newRaster = new int[this.width * this.height];
+    ImageInfo info = image.getInfo();
+    final int currWidth = info.getWidth();
+    final int currHeight = info.getHeight();
+
+    float xRatio = (1.0f * currWidth) / this.width;
+    float yRatio = (1.0f * currHeight) / this.height;
+
+    for (int i = 0; i < this.height; i++) {
+      for (int j = 0; j < this.width; j++) {
+        int x = Math.round(j * xRatio);
+        int y = Math.round(i * yRatio);
+        if (x < currWidth && y < currHeight) {
+          newRaster[(i * this.width) + j] = raster.get((y * currWidth) + x);
+        }
+      }
+    }
+    image.changeCanvasSize(this.width, this.height);
+    return newRaster;
+  }
 }
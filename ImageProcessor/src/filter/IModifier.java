@@ -19,4 +19,13 @@ public interface IModifier {
    */
   List<IPixel> modify(IImage image);
 
+  /**
+   * Modify the packed raster of an image with this IModifier. The returned raster holds one
+   * 0xRRGGBB int per pixel in row-major order and no {@link IPixel} objects are created.
+   *
+   * @param image the image to be modified
+   * @return the packed raster of the modified image.
+   */
+  int[] modifyRaster(IImage image);
+
 }
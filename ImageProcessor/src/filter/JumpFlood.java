@@ -0,0 +1,106 @@
+package filter;
+
+import java.util.Arrays;
+
+/**
+ * The JumpFlood class computes the Voronoi partition of an image for all of the centroids of a
+ * {@link Mosaic} at once with the jump flooding algorithm. Every centroid starts out labelling its
+ * own pixel in an {@code int[]} label buffer, then each pass lets every pixel look at the labels of
+ * the 8 pixels at a distance of step away and keep whichever centroid is closest, with the step
+ * halving from about half the image size down to 1. One more pass with a step of 1 fixes most of
+ * the pixels the halving passes got wrong. The cost is O(pixels * log(size)) no matter how many
+ * centroids there are, and every pass runs in parallel bands of rows on the {@link TileExecutor}.
+ *
+ * <p>Jump flooding is an approximation, a small number of pixels near the edge between two cells
+ * can be labelled with the second closest centroid. Use the {@link CentroidGrid} for exact labels.
+ */
+final class JumpFlood {
+
+  private JumpFlood() {
+  }
+
+  /**
+   * Labels every pixel of a width x height image with the index of its closest centroid.
+   *
+   * @param centroidX the x coord of every centroid
+   * @param centroidY the y coord of every centroid
+   * @param width     the width of the image
+   * @param height    the height of the image
+   * @return the label of every pixel in row-major order
+   * @throws IllegalArgumentException if there are no centroids or the coords do not match up
+   */
+  static int[] label(int[] centroidX, int[] centroidY, int width, int height) {
+    if (centroidX.length == 0 || centroidX.length != centroidY.length) {
+      throw new IllegalArgumentException("Jump flooding needs at least one centroid.");
+    }
+    int[] labels = new int[width * height];
+    Arrays.fill(labels, -1);
+    for (int c = centroidX.length - 1; c >= 0; c--) {
+      labels[centroidY[c] * width + centroidX[c]] = c;
+    }
+    int[] next = new int[labels.length];
+
+    int size = Math.max(width, height);
+    int step = size > 1 ? Integer.highestOneBit(size - 1) : 1;
+    boolean extraPass = true;
+    while (step >= 1) {
+      int[] src = labels;
+      int[] dst = next;
+      int pass = step;
+      TileExecutor.getShared().forEachBand(width, height, (fromRow, toRow) ->
+              flood(src, dst, centroidX, centroidY, width, height, pass, fromRow, toRow));
+      next = labels;
+      labels = dst;
+      if (step == 1 && extraPass) {
+        extraPass = false;
+      } else {
+        step /= 2;
+      }
+    }
+    return labels;
+  }
+
+  /**
+   * Runs one pass over the rows {@code [fromRow, toRow)}, reading labels from src and writing the
+   * closest of them into dst.
+   */
+  private static void flood(int[] src, int[] dst, int[] centroidX, int[] centroidY, int width,
+                            int height, int step, int fromRow, int toRow) {
+    for (int y = fromRow; y < toRow; y++) {
+      for (int x = 0; x < width; x++) {
+        int best = src[y * width + x];
+        long bestDistance = best == -1 ? Long.MAX_VALUE
+                : distance(centroidX[best], centroidY[best], x, y);
+        for (int dy = -step; dy <= step; dy += step) {
+          int ny = y + dy;
+          if (ny < 0 || ny >= height) {
+            continue;
+          }
+          for (int dx = -step; dx <= step; dx += step) {
+            int nx = x + dx;
+            if (nx < 0 || nx >= width) {
+              continue;
+            }
+            int candidate = src[ny * width + nx];
+            if (candidate == -1 || candidate == best) {
+              continue;
+            }
+            long candidateDistance = distance(centroidX[candidate], centroidY[candidate], x, y);
+            if (candidateDistance < bestDistance
+                    || (candidateDistance == bestDistance && candidate < best)) {
+              best = candidate;
+              bestDistance = candidateDistance;
+            }
+          }
+        }
+        dst[y * width + x] = best;
+      }
+    }
+  }
+
+  private static long distance(int x1, int y1, int x2, int y2) {
+    long dx = x1 - x2;
+    long dy = y1 - y2;
+    return dx * dx + dy * dy;
+  }
+}
@@ -2,26 +2,43 @@ package filter;
 
 import imagemodel.IImage;
 import imagemodel.IPixel;
+import imagemodel.ImageInfo;
 import imagemodel.Pixel;
+import imagemodel.RasterImage;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Random;
 
 /**
  * This class represents a way to modify an image that creates a mosaic of it based on an input
  * seed. The class has a toString and a modify method. The modify method creates a new list of
  * pixels which implements the mosaic on the IImage this is implemented upon.
+ * The closest centroid to each pixel is found with a {@link CentroidGrid}, so the cost of a mosaic
+ * grows with the number of pixels rather than with pixels times seeds. A mosaic can instead use
+ * {@link Engine#JUMP_FLOOD}, which labels all of the pixels at once with {@link JumpFlood}.
  */
 public class Mosaic implements IModifier {
 
+  /**
+   * The ways a Mosaic can find the closest centroid to each pixel.
+   */
+  public enum Engine {
+    /**
+     * Looks up every pixel in a {@link CentroidGrid}, which is exact.
+     */
+    GRID,
+    /**
+     * Computes the whole Voronoi partition with {@link JumpFlood}, which is approximate along the
+     * edges between cells but does not depend on the number of seeds.
+     */
+    JUMP_FLOOD
+  }
+
   private final int seeds;
-  private final List<IPixel> centroids;
-  private final Map<IPixel, List<IPixel>> centroidToPixels;
-  private final Map<IPixel, List<Double>> centroidToColor;
+  private final Engine engine;
+  private final Random random;
 
   /**
    * Creates a Mosaic object.
@@ -29,13 +46,52 @@ public class Mosaic implements IModifier {
    * @param seeds an int that determines the number of clusters that will appear on the image.
    */
   public Mosaic(int seeds) {
+    this(seeds, new Random(), Engine.GRID);
+  }
+
+  /**
+   * Creates a Mosaic object that uses the given engine.
+   *
+   * @param seeds  an int that determines the number of clusters that will appear on the image.
+   * @param engine how the closest centroid to each pixel is found
+   */
+  public Mosaic(int seeds, Engine engine) {
+    this(seeds, new Random(), engine);
+  }
+
+  /**
+   * Creates a Mosaic object whose centroids are picked by a random number generator with the given
+   * seed, so the same image always gives the same mosaic.
+   *
+   * @param seeds      an int that determines the number of clusters that will appear on the image.
+   * @param randomSeed the seed of the random number generator
+   */
+  public Mosaic(int seeds, long randomSeed) {
+    this(seeds, new Random(randomSeed), Engine.GRID);
+  }
+
+  /**
+   * Creates a Mosaic object that uses the given engine and whose centroids are picked by a random
+   * number generator with the given seed.
+   *
+   * @param seeds      an int that determines the number of clusters that will appear on the image.
+   * @param randomSeed the seed of the random number generator
+   * @param engine     how the closest centroid to each pixel is found
+   */
+  public Mosaic(int seeds, long randomSeed, Engine engine) {
+    this(seeds, new Random(randomSeed), engine);
+  }
+
+  private Mosaic(int seeds, Random random, Engine engine) {
     if (seeds <= 0) {
       throw new IllegalArgumentException("Please enter seeds greater than 0.");
     }
+    if (engine == null) {
+      throw new IllegalArgumentException("Engine cannot be null.");
+    }
     this.seeds = seeds;
-    this.centroids = new ArrayList<>();
-    this.centroidToPixels = new HashMap<>();
-    this.centroidToColor = new HashMap<>();
+    this.engine = engine;
+    this.random = random;
   }
 
   @Override
@@ -45,126 +101,104 @@ public class Mosaic implements IModifier {
 
   @Override
   public List<IPixel> modify(IImage image) {
-    List<IPixel> pixels = image.getPixels();
-    List<IPixel> newPixels = new ArrayList<>();
-    int searchDist =
-            Math.min(image.getProps().get(0), image.getProps().get(1))
-                    / (int) Math.sqrt(this.seeds);
-
-    //generate random centroids based on this.seeds
-    this.sowSeeds(image.getPixels());
-    //go through every pixel => find closest seed
-    //associate pixel with seed = cluster
-    this.cluster(pixels, searchDist);
-    //find average color for each cluster
-    this.getAverage();
-
-    //go through every pixel => set color to average color for cluster
-    for (Map.Entry<IPixel, List<IPixel>> centroid : centroidToPixels.entrySet()) {
-      for (IPixel pixel : centroid.getValue()) {
-        newPixels.add(new Pixel(pixel.getCoords(), this.centroidToColor.get(centroid.getKey())));
-      }
+    ImageInfo info = image.getInfo();
+    int width = info.getWidth();
+
+    //every pixel is written into its own slot, so the list comes out in row-major order
+    int[] newRaster = this.mosaic(image.getPixelBuffer(), width, info.getHeight());
+    List<IPixel> newPixels = new ArrayList<>(newRaster.length);
+    for (int i = 0; i < newRaster.length; i++) {
+      newPixels.add(new Pixel(i % width, i / width, (newRaster[i] >> 16) & 0xFF,
+              (newRaster[i] >> 8) & 0xFF, newRaster[i] & 0xFF));
     }
-
-    //Sort pixels for the new image
-    newPixels.sort((o1, o2) -> {
-      if (o1.getCoords().get(1).equals(o2.getCoords().get(1))) {
-        return o1.getCoords().get(0) - o2.getCoords().get(0);
-      }
-      return o1.getCoords().get(1) - o2.getCoords().get(1);
-    });
     return newPixels;
   }
 
-  private void getAverage() {
-    for (Map.Entry<IPixel, List<IPixel>> centroid : centroidToPixels.entrySet()) {
-      List<Double> finalRGB = new ArrayList<>(Arrays.asList(0.0, 0.0, 0.0));
-      for (IPixel pixel : centroid.getValue()) {
-        finalRGB.set(0, finalRGB.get(0) + pixel.getColor().get(0));
-        finalRGB.set(1, finalRGB.get(1) + pixel.getColor().get(1));
-        finalRGB.set(2, finalRGB.get(2) + pixel.getColor().get(2));
-      }
-      for (int i = 0; i < finalRGB.size(); i++) {
-        finalRGB.set(i, finalRGB.get(i) / centroid.getValue().size());
-      }
-      this.centroidToColor.put(centroid.getKey(), finalRGB);
-    }
+  @Override
+  public int[] modifyRaster(IImage image) {
+    ImageInfo info = image.getInfo();
+    return this.mosaic(image.getPixelBuffer(), info.getWidth(), info.getHeight());
   }
 
-  private void cluster(List<IPixel> pixels, int searchDist) {
-    for (IPixel pixel : pixels) {
-      /*
-      set arbitrary distance
-      try and get centroid within that distance
-      if 1 --> CLOSEST!
-      if > 1 --> Pythagorean distance
-      if 0 --> expand distance
-       */
-
-      int incr = searchDist * 2;
-      int minX = pixel.getCoords().get(0) - searchDist;
-      int maxX = pixel.getCoords().get(0) + searchDist;
-      int minY = pixel.getCoords().get(1) - searchDist;
-      int maxY = pixel.getCoords().get(1) + searchDist;
-
-      IPixel closest = this.getClosestCentroid(this.clamp(minX, maxX, minY, maxY), pixel);
-
-      while (closest == null) {
-        closest = this.getClosestCentroid(this.clamp(minX - incr, maxX + incr,
-                minY - incr,
-                maxY + incr),
-                pixel);
-      }
-
-      centroidToPixels.get(closest).add(pixel);
+  /**
+   * Creates the mosaic of a packed raster. Each pixel is labelled with its closest centroid, the
+   * colors are summed per label in primitive arrays, and each pixel's average color is written
+   * straight into its row-major slot of the new raster.
+   */
+  private int[] mosaic(IntBuffer raster, int width, int height) {
+    //generate random centroids based on this.seeds, stored as row-major indexes
+    int[] centroidIdx = this.sowSeeds(raster.limit());
+    int[] centroidX = new int[centroidIdx.length];
+    int[] centroidY = new int[centroidIdx.length];
+    for (int c = 0; c < centroidIdx.length; c++) {
+      centroidX[c] = centroidIdx[c] % width;
+      centroidY[c] = centroidIdx[c] / width;
     }
-  }
 
-  private IPixel getClosestCentroid(List<IPixel> centroids, IPixel pixel) {
-    if (centroids.size() == 1) {
-      return centroids.get(0);
+    //go through every pixel => find closest seed and add its color to that cluster
+    int[] labels = this.label(centroidX, centroidY, width, height);
+    long[] sumR = new long[centroidIdx.length];
+    long[] sumG = new long[centroidIdx.length];
+    long[] sumB = new long[centroidIdx.length];
+    int[] counts = new int[centroidIdx.length];
+    for (int i = 0; i < labels.length; i++) {
+      int label = labels[i];
+      int rgb = raster.get(i);
+      sumR[label] += (rgb >> 16) & 0xFF;
+      sumG[label] += (rgb >> 8) & 0xFF;
+      sumB[label] += rgb & 0xFF;
+      counts[label]++;
     }
-    if (centroids.size() == 0) {
-      return null;
-    }
-    IPixel closestCentroid = null;
-    double distance = -1.0;
-
-    for (IPixel centroid : centroids) {
-      if (distance == -1) {
-        distance = this.findDistance(pixel.getCoords(), centroid.getCoords());
-        closestCentroid = centroid;
-      } else {
-        double tentativeDistance = this.findDistance(pixel.getCoords(), centroid.getCoords());
-        if (tentativeDistance < distance) {
-          distance = tentativeDistance;
-          closestCentroid = centroid;
-        }
+
+    //find average color for each cluster
+    int[] colors = new int[centroidIdx.length];
+    for (int c = 0; c < colors.length; c++) {
+      if (counts[c] > 0) {
+        colors[c] = RasterImage.pack((int) (sumR[c] / counts[c]), (int) (sumG[c] / counts[c]),
+                (int) (sumB[c] / counts[c]));
       }
     }
 
-    return closestCentroid;
-  }
-
-  private List<IPixel> clamp(int minX, int maxX, int minY, int maxY) {
-    return this.centroids.stream().filter(pixel -> pixel.getCoords().get(0) > minX
-            && pixel.getCoords().get(0) < maxX
-            && pixel.getCoords().get(1) > minY
-            && pixel.getCoords().get(1) < maxY).collect(Collectors.toList());
+    //go through every pixel => set color to average color for cluster, already in row-major order
+    int[] newRaster = new int[labels.length];
+    for (int i = 0; i < newRaster.length; i++) {
+      newRaster[i] = colors[labels[i]];
+    }
+    return newRaster;
   }
 
-  private double findDistance(List<Integer> p1, List<Integer> p2) {
-    return Math.hypot(Math.abs(p2.get(0) - p1.get(0)), Math.abs(p2.get(1) - p1.get(1)));
+  /**
+   * Labels every pixel with the index of its closest centroid using this mosaic's engine.
+   */
+  private int[] label(int[] centroidX, int[] centroidY, int width, int height) {
+    if (this.engine == Engine.JUMP_FLOOD) {
+      return JumpFlood.label(centroidX, centroidY, width, height);
+    }
+    CentroidGrid grid = new CentroidGrid(centroidX, centroidY, width, height);
+    int[] labels = new int[width * height];
+    TileExecutor.getShared().forEachBand(width, height, (fromRow, toRow) -> {
+      for (int i = fromRow * width; i < toRow * width; i++) {
+        labels[i] = grid.nearest(i % width, i / width);
+      }
+    });
+    return labels;
   }
 
-  private void sowSeeds(List<IPixel> pixels) {
-    Collections.shuffle(pixels);
-
-    for (int i = 0; i < this.seeds - 1; i++) {
-      IPixel centroid = pixels.get(i);
-      this.centroids.add(centroid);
-      this.centroidToPixels.put(centroid, new ArrayList<>());
+  /**
+   * Picks this.seeds distinct random pixel indexes (at most one per pixel) to act as centroids.
+   */
+  private int[] sowSeeds(int numPixels) {
+    int[] indexes = new int[numPixels];
+    for (int i = 0; i < numPixels; i++) {
+      indexes[i] = i;
     }
-
+    int count = Math.min(this.seeds, numPixels);
+    for (int i = 0; i < count; i++) {
+      int j = i + this.random.nextInt(numPixels - i);
+      int tmp = indexes[i];
+      indexes[i] = indexes[j];
+      indexes[j] = tmp;
+    }
+    return Arrays.copyOf(indexes, count);
   }
 }
@@ -0,0 +1,149 @@
+package filter;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The TileExecutor class runs the per-row work of a modifier in parallel over horizontal bands of
+ * rows on a fork-join pool. Every band reads from the same unchanged source raster and writes only
+ * its own rows of the destination raster, so kernel filters read their halo rows straight from the
+ * source and the output is deterministic and identical to running every row on one thread.
+ * A shared executor is used by every {@link AModifier}, and its parallelism can be changed with
+ * {@link #setParallelism(int)}.
+ */
+public final class TileExecutor {
+
+  //bands are never split below this many pixels so small images do not pay for forking
+  private static final int MIN_BAND_PIXELS = 1 << 14;
+
+  private static volatile TileExecutor shared =
+          new TileExecutor(Runtime.getRuntime().availableProcessors());
+
+  private final int parallelism;
+  private final ForkJoinPool pool;
+
+  /**
+   * Work done over a band of rows.
+   */
+  @FunctionalInterface
+  public interface RowBand {
+
+    /**
+     * Processes the rows {@code [fromRow, toRow)}.
+     *
+     * @param fromRow the first row, inclusive
+     * @param toRow   the last row, exclusive
+     */
+    void apply(int fromRow, int toRow);
+  }
+
+  /**
+   * Creates a TileExecutor that uses at most the given number of threads.
+   *
+   * @param parallelism the number of threads, 1 runs every band on the calling thread
+   * @throws IllegalArgumentException if parallelism is less than 1
+   */
+  public TileExecutor(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1.");
+    }
+    this.parallelism = parallelism;
+    this.pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+  }
+
+  /**
+   * Returns the executor shared by all modifiers.
+   *
+   * @return the shared TileExecutor
+   */
+  public static TileExecutor getShared() {
+    return shared;
+  }
+
+  /**
+   * Replaces the shared executor with one that uses the given number of threads and shuts down
+   * the pool of the old one once the modifiers running on it are done.
+   *
+   * @param parallelism the number of threads, 1 runs modifiers sequentially
+   * @throws IllegalArgumentException if parallelism is less than 1
+   */
+  public static synchronized void setParallelism(int parallelism) {
+    if (shared.parallelism != parallelism) {
+      TileExecutor old = shared;
+      shared = new TileExecutor(parallelism);
+      old.shutdown();
+    }
+  }
+
+  /**
+   * Stops the pool of this executor from taking new work, letting the work already on it finish.
+   * Work given to it afterwards runs on the calling thread.
+   */
+  public void shutdown() {
+    if (this.pool != null) {
+      this.pool.shutdown();
+    }
+  }
+
+  /**
+   * Returns the number of threads of this executor.
+   *
+   * @return the parallelism
+   */
+  public int getParallelism() {
+    return this.parallelism;
+  }
+
+  /**
+   * Splits the rows {@code [0, height)} into bands and runs the given work over each band,
+   * returning once every band is done.
+   *
+   * @param width  the width of a row, used to size the bands
+   * @param height the number of rows
+   * @param band   the work to run over each band
+   */
+  public void forEachBand(int width, int height, RowBand band) {
+    int minRows = Math.max(1, MIN_BAND_PIXELS / Math.max(width, 1));
+    if (this.pool == null || height <= minRows) {
+      band.apply(0, height);
+      return;
+    }
+    //a few bands per thread keeps every thread busy when bands take different times
+    int bandRows = Math.max(minRows, (height + parallelism * 4 - 1) / (parallelism * 4));
+    try {
+      this.pool.invoke(new BandTask(band, 0, height, bandRows));
+    } catch (RejectedExecutionException e) {
+      //the pool was shut down after this executor was taken, and no band has run yet
+      band.apply(0, height);
+    }
+  }
+
+  /**
+   * Recursively halves a range of rows until it is at most one band high.
+   */
+  private static final class BandTask extends RecursiveAction {
+    private final RowBand band;
+    private final int fromRow;
+    private final int toRow;
+    private final int bandRows;
+
+    BandTask(RowBand band, int fromRow, int toRow, int bandRows) {
+      this.band = band;
+      this.fromRow = fromRow;
+      this.toRow = toRow;
+      this.bandRows = bandRows;
+    }
+
+    @Override
+    protected void compute() {
+      if (toRow - fromRow <= bandRows) {
+        band.apply(fromRow, toRow);
+        return;
+      }
+      int mid = fromRow + (toRow - fromRow) / 2;
+      invokeAll(new BandTask(band, fromRow, mid, bandRows),
+              new BandTask(band, mid, toRow, bandRows));
+    }
+  }
+}
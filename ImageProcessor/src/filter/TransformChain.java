@@ -0,0 +1,102 @@
+package filter;
+
+import imagemodel.RasterImage;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The TransformChain class is an ATransform that applies several ATransforms back to back in a
+ * single pass over the image, so a chain like sepia followed by greyscale reads and writes every
+ * pixel once instead of once per transform. By default each pixel is truncated and clamped
+ * between the transforms exactly like applying them one at a time would. When clamping only at
+ * the end is chosen, the matrices are composed into one matrix up front and the pixel is only
+ * truncated and clamped once, which is faster and keeps more precision but may give slightly
+ * different colors.
+ */
+public class TransformChain extends ATransform {
+
+  private final double[][] stages;
+  private final boolean clampAtEnd;
+  private final String name;
+
+  /**
+   * Instantiates a new TransformChain.
+   *
+   * @param transforms the transforms in the order they are applied
+   * @param clampAtEnd true to compose the transforms into one matrix and only clamp at the end,
+   *                   false to clamp after every transform
+   * @throws IllegalArgumentException if transforms is null or empty
+   */
+  public TransformChain(List<ATransform> transforms, boolean clampAtEnd) {
+    super(compose(transforms));
+    List<double[]> stageList = new ArrayList<>();
+    StringBuilder names = new StringBuilder();
+    for (ATransform transform : transforms) {
+      //a chain that clamps between its stages keeps doing so inside this chain
+      if (transform instanceof TransformChain && !((TransformChain) transform).clampAtEnd) {
+        stageList.addAll(Arrays.asList(((TransformChain) transform).stages));
+      } else {
+        stageList.add(transform.matrix);
+      }
+      names.append(names.length() == 0 ? "" : "+").append(transform.toString());
+    }
+    this.stages = stageList.toArray(new double[0][]);
+    this.clampAtEnd = clampAtEnd;
+    this.name = names.toString();
+  }
+
+  /**
+   * Multiplies the matrices of the transforms so that applying the result once is the same as
+   * applying each transform in order without clamping in between.
+   *
+   * @param transforms the transforms in the order they are applied
+   * @return the composed 3 x 3 kernel
+   */
+  private static double[][] compose(List<ATransform> transforms) {
+    if (transforms == null || transforms.isEmpty()) {
+      throw new IllegalArgumentException("A chain needs at least one transform.");
+    }
+    double[] composed = transforms.get(0).matrix.clone();
+    for (int t = 1; t < transforms.size(); t++) {
+      double[] next = transforms.get(t).matrix;
+      double[] product = new double[9];
+      for (int i = 0; i < 3; i++) {
+        for (int j = 0; j < 3; j++) {
+          product[i * 3 + j] = next[i * 3] * composed[j]
+                  + next[i * 3 + 1] * composed[3 + j]
+                  + next[i * 3 + 2] * composed[6 + j];
+        }
+      }
+      composed = product;
+    }
+    return new double[][]{
+            {composed[0], composed[1], composed[2]},
+            {composed[3], composed[4], composed[5]},
+            {composed[6], composed[7], composed[8]}
+    };
+  }
+
+  @Override
+  protected int applyToRaster(IntBuffer raster, int index, int width, int height) {
+    if (this.clampAtEnd) {
+      return super.applyToRaster(raster, index, width, height);
+    }
+    int rgb = raster.get(index);
+    for (double[] m : this.stages) {
+      int r = (rgb >> 16) & 0xFF;
+      int g = (rgb >> 8) & 0xFF;
+      int b = rgb & 0xFF;
+      rgb = RasterImage.pack((int) (r * m[0] + g * m[1] + b * m[2]),
+              (int) (r * m[3] + g * m[4] + b * m[5]),
+              (int) (r * m[6] + g * m[7] + b * m[8]));
+    }
+    return rgb;
+  }
+
+  @Override
+  public String toString() {
+    return this.name;
+  }
+}
@@ -0,0 +1,129 @@
+package imagemodel;
+
+import filter.IModifier;
+import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The DeferredImage class is an {@link IImage} whose pixels are only decoded the first time they
+ * are needed. It knows its width, height and depth up front, so it can be added to a layer and
+ * checked against the other layers without decoding anything, and every other method decodes the
+ * packed raster once through the given decoder and then acts as a {@link RasterImage}. This lets a
+ * saved state be opened by decoding only the layers that are actually looked at.
+ */
+public class DeferredImage implements IImage {
+
+  private final int width;
+  private final int height;
+  private final int depth;
+  private Supplier<int[]> decoder;
+  private RasterImage image;
+
+  /**
+   * Instantiates a new DeferredImage.
+   *
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param depth   the color depth (usually 255)
+   * @param decoder decodes the packed 0xRRGGBB pixels in row-major order, called at most once
+   * @throws IllegalArgumentException if decoder is null or if width, height, or depth are less
+   *                                  than 1
+   */
+  public DeferredImage(int width, int height, int depth, Supplier<int[]> decoder) {
+    if (decoder == null || width <= 0 || height <= 0 || depth <= 0) {
+      throw new IllegalArgumentException("Invalid Parameters.");
+    }
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.decoder = decoder;
+  }
+
+  /**
+   * Determines if the pixels of this image have been decoded yet.
+   *
+   * @return true if the image has been decoded
+   */
+  public synchronized boolean isDecoded() {
+    return this.image != null;
+  }
+
+  private synchronized RasterImage decoded() {
+    if (this.image == null) {
+      this.image = new RasterImage(this.decoder.get(), width, height, depth);
+      //the decoder may hold on to the encoded pixels, which are not needed any more
+      this.decoder = null;
+    }
+    return this.image;
+  }
+
+  @Override
+  public void applyFilter(IModifier iModifier) throws IllegalArgumentException {
+    this.decoded().applyFilter(iModifier);
+  }
+
+  @Override
+  public List<IPixel> getPixels() {
+    return this.decoded().getPixels();
+  }
+
+  @Override
+  public IPixel getPixel(int x, int y) {
+    return this.decoded().getPixel(x, y);
+  }
+
+  @Override
+  public int[] getRaster() {
+    return this.decoded().getRaster();
+  }
+
+  @Override
+  public IntBuffer getPixelBuffer() {
+    return this.decoded().getPixelBuffer();
+  }
+
+  @Override
+  public int[] getRow(int y, int[] row) {
+    return this.decoded().getRow(y, row);
+  }
+
+  @Override
+  public void setRegion(int x, int y, int width, int height, int[] pixels) {
+    this.decoded().setRegion(x, y, width, height, pixels);
+  }
+
+  @Override
+  public synchronized List<Integer> getProps() {
+    if (this.image != null) {
+      return this.image.getProps();
+    }
+    return new ArrayList<>(Arrays.asList(this.width, this.height, this.depth));
+  }
+
+  @Override
+  public synchronized ImageInfo getInfo() {
+    if (this.image != null) {
+      return this.image.getInfo();
+    }
+    return new ImageInfo(this.width, this.height, this.depth);
+  }
+
+  @Override
+  public BufferedImage createImage() {
+    return this.decoded().createImage();
+  }
+
+  @Override
+  public void changeCanvasSize(int width, int height) throws IllegalArgumentException {
+    this.decoded().changeCanvasSize(width, height);
+  }
+
+  @Override
+  public String toString() {
+    return this.decoded().toString();
+  }
+}
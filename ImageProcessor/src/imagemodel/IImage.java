@@ -3,6 +3,7 @@ package imagemodel;
 import filter.IModifier;
 
 import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
 import java.util.List;
 
 /**
@@ -36,6 +37,50 @@ public interface IImage {
    */
   IPixel getPixel(int x, int y);
 
+  /**
+   * Returns a copy of the pixels of this image packed as 0xRRGGBB ints in row-major order, so the
+   * pixel at (x, y) is found at index (y * width) + x.
+   *
+   * @return the packed raster
+   */
+  int[] getRaster();
+
+  /**
+   * Returns a read-only view of the pixels of this image packed as 0xRRGGBB ints in row-major
+   * order, holding exactly width * height pixels. Unlike {@link #getRaster()} the pixels are not
+   * copied where the image already stores them packed, so the view shows later changes made with
+   * {@link #setRegion(int, int, int, int, int[])}. It should be read with the absolute
+   * {@code get} methods, which are safe to call from several threads at once.
+   *
+   * @return the read-only view of the packed pixels
+   */
+  IntBuffer getPixelBuffer();
+
+  /**
+   * Copies one row of the pixels of this image, packed as 0xRRGGBB ints, into the given array so
+   * an image can be read a row at a time without copying all of it.
+   *
+   * @param y   the row to copy
+   * @param row the array to copy into, reused if it holds at least width ints
+   * @return the array holding the row, a new one if row was null or too small
+   * @throws IllegalArgumentException if y is not a row of this image
+   */
+  int[] getRow(int y, int[] row);
+
+  /**
+   * Overwrites a rectangle of the pixels of this image with the given packed 0xRRGGBB pixels.
+   *
+   * @param x      the x coord of the top left corner of the rectangle
+   * @param y      the y coord of the top left corner of the rectangle
+   * @param width  the width of the rectangle
+   * @param height the height of the rectangle
+   * @param pixels the new pixels of the rectangle in row-major order
+   * @throws IllegalArgumentException if the rectangle does not fit in the image or there are too
+   *                                  few pixels
+   */
+  void setRegion(int x, int y, int width, int height, int[] pixels)
+          throws IllegalArgumentException;
+
   /**
    * Return a list of the properties (width, height, depth).
    *
@@ -43,6 +88,13 @@ public interface IImage {
    */
   List<Integer> getProps();
 
+  /**
+   * Returns the width, height and depth of this image without boxing them into a list.
+   *
+   * @return the width, height and depth
+   */
+  ImageInfo getInfo();
+
   /**
    * Creates a bufferedImage from this IImage.
    *
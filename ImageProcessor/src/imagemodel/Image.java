@@ -1,8 +1,8 @@
 package imagemodel;
 
 import filter.IModifier;
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -51,12 +51,13 @@ public class Image implements IImage {
 
   @Override
   public BufferedImage createImage() {
-    BufferedImage b = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] raster = new int[width * height];
     for (IPixel p : pixels) {
-      Color rgb = new Color(p.getColor().get(0), p.getColor().get(1), p.getColor().get(2));
-      b.setRGB(p.getCoords().get(0), p.getCoords().get(1), rgb.getRGB());
+      List<Integer> c = p.getColor();
+      raster[p.getCoords().get(1) * width + p.getCoords().get(0)] =
+              RasterImage.pack(c.get(0), c.get(1), c.get(2));
     }
-    return b;
+    return RasterImage.toBufferedImage(raster, width, height);
   }
 
   @Override
@@ -88,8 +89,59 @@ public class Image implements IImage {
     return this.pixels.get((y * width) + x);
   }
 
+  @Override
+  public int[] getRaster() {
+    int[] raster = new int[width * height];
+    for (int i = 0; i < raster.length; i++) {
+      List<Integer> c = this.pixels.get(i).getColor();
+      raster[i] = RasterImage.pack(c.get(0), c.get(1), c.get(2));
+    }
+    return raster;
+  }
+
+  /**
+   * Packs the pixels into a new buffer, as this image does not store them packed.
+   */
+  @Override
+  public IntBuffer getPixelBuffer() {
+    return IntBuffer.wrap(this.getRaster()).asReadOnlyBuffer();
+  }
+
+  @Override
+  public int[] getRow(int y, int[] row) {
+    if (y < 0 || y >= height) {
+      throw new IllegalArgumentException("Row " + y + " does not exist.");
+    }
+    int[] dst = row == null || row.length < width ? new int[width] : row;
+    for (int x = 0; x < width; x++) {
+      List<Integer> c = this.pixels.get(y * width + x).getColor();
+      dst[x] = RasterImage.pack(c.get(0), c.get(1), c.get(2));
+    }
+    return dst;
+  }
+
+  @Override
+  public void setRegion(int x, int y, int width, int height, int[] pixels) {
+    if (x < 0 || y < 0 || width < 0 || height < 0 || x + width > this.width
+            || y + height > this.height || pixels.length < width * height) {
+      throw new IllegalArgumentException("Region does not fit in the image.");
+    }
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        int rgb = pixels[row * width + col];
+        this.pixels.set((y + row) * this.width + x + col, new Pixel(x + col, y + row,
+                (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF));
+      }
+    }
+  }
+
   @Override
   public List<Integer> getProps() {
     return new ArrayList<>(Arrays.asList(this.width, this.height, this.depth));
   }
+
+  @Override
+  public ImageInfo getInfo() {
+    return new ImageInfo(this.width, this.height, this.depth);
+  }
 }
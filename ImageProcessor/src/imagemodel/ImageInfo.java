@@ -0,0 +1,102 @@
+package imagemodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The ImageInfo class holds the width, height and depth of an {@link IImage} as plain ints. It is
+ * what {@link IImage#getInfo()} returns so the size of an image can be read without building and
+ * unboxing a list of properties every time.
+ */
+public final class ImageInfo {
+
+  private final int width;
+  private final int height;
+  private final int depth;
+
+  /**
+   * Instantiates a new ImageInfo.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param depth  the color depth (usually 255)
+   * @throws IllegalArgumentException if width, height, or depth are less than 1
+   */
+  public ImageInfo(int width, int height, int depth) {
+    if (width <= 0 || height <= 0 || depth <= 0) {
+      throw new IllegalArgumentException("Invalid Parameters.");
+    }
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+  }
+
+  /**
+   * Returns the width of the image.
+   *
+   * @return the width
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns the height of the image.
+   *
+   * @return the height
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Returns the color depth of the image.
+   *
+   * @return the depth
+   */
+  public int getDepth() {
+    return this.depth;
+  }
+
+  /**
+   * Returns the number of pixels in the image.
+   *
+   * @return width * height
+   */
+  public int getSize() {
+    return this.width * this.height;
+  }
+
+  /**
+   * Returns the same properties as {@link IImage#getProps()}.
+   *
+   * @return a new list of the width, height and depth
+   */
+  public List<Integer> toList() {
+    return new ArrayList<>(Arrays.asList(this.width, this.height, this.depth));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ImageInfo)) {
+      return false;
+    }
+    ImageInfo other = (ImageInfo) o;
+    return this.width == other.width && this.height == other.height
+            && this.depth == other.depth;
+  }
+
+  @Override
+  public int hashCode() {
+    return (this.width * 31 + this.height) * 31 + this.depth;
+  }
+
+  @Override
+  public String toString() {
+    return this.width + "x" + this.height + "x" + this.depth;
+  }
+}
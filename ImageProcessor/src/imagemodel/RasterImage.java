@@ -0,0 +1,248 @@
+package imagemodel;
+
+import filter.IModifier;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The RasterImage class is an {@link IImage} that stores its pixels as a single packed
+ * {@code int[]} raster instead of a list of {@link IPixel} objects. Each entry holds one pixel as
+ * {@code 0xRRGGBB} and the coordinates of a pixel are implied by its index in row-major order
+ * ({@code index = y * width + x}). Modifiers are applied through
+ * {@link IModifier#modifyRaster(IImage)} so no {@link Pixel} objects are created while filtering.
+ */
+public class RasterImage implements IImage {
+
+  private int[] raster;
+  private int width;
+  private int height;
+  private final int depth;
+
+  /**
+   * Instantiates a new RasterImage from a packed raster.
+   *
+   * @param raster the packed 0xRRGGBB pixels in row-major order, this array is not copied
+   * @param width  the width of the image
+   * @param height the height
+   * @param depth  the color depth (usually 255)
+   * @throws IllegalArgumentException if raster is null, if width, height, or depth are less
+   *                                  than 1, or if the raster is smaller than width * height
+   */
+  public RasterImage(int[] raster, int width, int height, int depth) {
+    if (raster == null || width <= 0 || height <= 0 || depth <= 0
+            || raster.length < width * height) {
+      throw new IllegalArgumentException("Invalid Parameters.");
+    }
+    this.raster = raster;
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+  }
+
+  /**
+   * Creates a RasterImage from a BufferedImage. The common sRGB layouts ({@code TYPE_INT_RGB},
+   * {@code TYPE_INT_ARGB}, {@code TYPE_3BYTE_BGR} and {@code TYPE_4BYTE_ABGR}) are copied straight
+   * out of their data buffer, every other image is converted with a single bulk
+   * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)} call. Either way the pixels
+   * are the same as calling {@code getRGB(x, y)} on every pixel, without the alpha channel.
+   *
+   * @param image the image to copy
+   * @param depth the color depth of the new image
+   * @return the new RasterImage
+   * @throws IllegalArgumentException if image is null or depth is less than 1
+   */
+  public static RasterImage fromBufferedImage(BufferedImage image, int depth) {
+    if (image == null) {
+      throw new IllegalArgumentException("Invalid Parameters.");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] raster = new int[width * height];
+    WritableRaster data = image.getRaster();
+    boolean untranslated = data.getSampleModelTranslateX() == 0
+            && data.getSampleModelTranslateY() == 0;
+
+    int type = image.getType();
+    if (untranslated && (type == BufferedImage.TYPE_INT_RGB
+            || type == BufferedImage.TYPE_INT_ARGB)
+            && data.getDataBuffer() instanceof DataBufferInt
+            && data.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+      DataBufferInt buffer = (DataBufferInt) data.getDataBuffer();
+      int[] src = buffer.getData();
+      int stride = ((SinglePixelPackedSampleModel) data.getSampleModel()).getScanlineStride();
+      for (int y = 0; y < height; y++) {
+        int from = buffer.getOffset() + y * stride;
+        int to = y * width;
+        for (int x = 0; x < width; x++) {
+          raster[to + x] = src[from + x] & 0xFFFFFF;
+        }
+      }
+    } else if (untranslated && (type == BufferedImage.TYPE_3BYTE_BGR
+            || type == BufferedImage.TYPE_4BYTE_ABGR)
+            && data.getDataBuffer() instanceof DataBufferByte
+            && data.getSampleModel() instanceof PixelInterleavedSampleModel) {
+      DataBufferByte buffer = (DataBufferByte) data.getDataBuffer();
+      PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) data.getSampleModel();
+      byte[] src = buffer.getData();
+      int stride = model.getScanlineStride();
+      int pixelStride = model.getPixelStride();
+      int[] bands = model.getBandOffsets();
+      for (int y = 0; y < height; y++) {
+        int from = buffer.getOffset() + y * stride;
+        int to = y * width;
+        for (int x = 0; x < width; x++) {
+          int at = from + x * pixelStride;
+          raster[to + x] = ((src[at + bands[0]] & 0xFF) << 16)
+                  | ((src[at + bands[1]] & 0xFF) << 8) | (src[at + bands[2]] & 0xFF);
+        }
+      }
+    } else {
+      image.getRGB(0, 0, width, height, raster, 0, width);
+      for (int i = 0; i < raster.length; i++) {
+        raster[i] &= 0xFFFFFF;
+      }
+    }
+    return new RasterImage(raster, width, height, depth);
+  }
+
+  /**
+   * Copies a packed raster into a new {@code TYPE_INT_RGB} BufferedImage by writing straight into
+   * its data buffer.
+   *
+   * @param raster the packed 0xRRGGBB pixels in row-major order
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @return the new BufferedImage
+   */
+  static BufferedImage toBufferedImage(int[] raster, int width, int height) {
+    BufferedImage b = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] dst = ((DataBufferInt) b.getRaster().getDataBuffer()).getData();
+    System.arraycopy(raster, 0, dst, 0, width * height);
+    return b;
+  }
+
+  /**
+   * Packs the given channel values into a single 0xRRGGBB int. Each channel is clamped to be
+   * between 0 and 255 the same way {@link Pixel} clamps its values.
+   *
+   * @param r the r value
+   * @param g the g value
+   * @param b the b value
+   * @return the packed pixel
+   */
+  public static int pack(int r, int g, int b) {
+    return (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+  }
+
+  /**
+   * Clamps a channel value to be between 0 and 255.
+   *
+   * @param value the channel value
+   * @return the clamped value
+   */
+  public static int clamp(int value) {
+    return Math.max(Math.min(value, 255), 0);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder matrix = new StringBuilder(width + "\n" + height + "\n" + depth + "\n");
+    int size = width * height;
+    for (int i = 0; i < size; i++) {
+      int rgb = this.raster[i];
+      matrix.append((rgb >> 16) & 0xFF).append(' ')
+              .append((rgb >> 8) & 0xFF).append(' ')
+              .append(rgb & 0xFF).append("  ");
+    }
+    return matrix.append("\n").toString();
+  }
+
+  @Override
+  public BufferedImage createImage() {
+    return toBufferedImage(this.raster, width, height);
+  }
+
+  @Override
+  public void changeCanvasSize(int width, int height) throws IllegalArgumentException {
+    if (width > this.width || height > this.height) {
+      throw new IllegalArgumentException("Width and height must be less than current width and "
+              + "height.");
+    }
+    this.width = width;
+    this.height = height;
+  }
+
+  @Override
+  public void applyFilter(IModifier iModifier) {
+    if (iModifier == null) {
+      throw new IllegalArgumentException("Illegal modifier");
+    }
+    this.raster = iModifier.modifyRaster(this);
+  }
+
+  @Override
+  public List<IPixel> getPixels() {
+    List<IPixel> pixels = new ArrayList<>(width * height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        pixels.add(this.getPixel(x, y));
+      }
+    }
+    return pixels;
+  }
+
+  @Override
+  public IPixel getPixel(int x, int y) {
+    int rgb = this.raster[(y * width) + x];
+    return new Pixel(x, y, (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+  }
+
+  @Override
+  public int[] getRaster() {
+    return Arrays.copyOf(this.raster, width * height);
+  }
+
+  @Override
+  public IntBuffer getPixelBuffer() {
+    return IntBuffer.wrap(this.raster, 0, width * height).slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public int[] getRow(int y, int[] row) {
+    if (y < 0 || y >= height) {
+      throw new IllegalArgumentException("Row " + y + " does not exist.");
+    }
+    int[] dst = row == null || row.length < width ? new int[width] : row;
+    System.arraycopy(this.raster, y * width, dst, 0, width);
+    return dst;
+  }
+
+  @Override
+  public void setRegion(int x, int y, int width, int height, int[] pixels) {
+    if (x < 0 || y < 0 || width < 0 || height < 0 || x + width > this.width
+            || y + height > this.height || pixels.length < width * height) {
+      throw new IllegalArgumentException("Region does not fit in the image.");
+    }
+    for (int row = 0; row < height; row++) {
+      System.arraycopy(pixels, row * width, this.raster, (y + row) * this.width + x, width);
+    }
+  }
+
+  @Override
+  public List<Integer> getProps() {
+    return new ArrayList<>(Arrays.asList(this.width, this.height, this.depth));
+  }
+
+  @Override
+  public ImageInfo getInfo() {
+    return new ImageInfo(this.width, this.height, this.depth);
+  }
+}
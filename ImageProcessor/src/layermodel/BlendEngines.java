@@ -0,0 +1,41 @@
+package layermodel;
+
+/**
+ * The BlendEngines class picks the {@link IBlendEngine} shared by every {@link Layer}. The Vector
+ * API engine lives in its own source root, as it can only be compiled and run with the incubating
+ * {@code jdk.incubator.vector} module, so it is loaded by name and the scalar engine is used
+ * whenever it cannot be.
+ */
+final class BlendEngines {
+
+  private static final String VECTOR_ENGINE = "layermodel.VectorBlendEngine";
+
+  static final IBlendEngine SHARED = pickShared();
+
+  private BlendEngines() {
+  }
+
+  private static IBlendEngine pickShared() {
+    if ("scalar".equals(System.getProperty("imageprocessor.blend"))) {
+      return new ScalarBlendEngine();
+    }
+    IBlendEngine vector = loadVector();
+    return vector == null ? new ScalarBlendEngine() : vector;
+  }
+
+  /**
+   * Loads the Vector API engine.
+   *
+   * @return the engine, or null if the module or the engine is not available
+   */
+  static IBlendEngine loadVector() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      return null;
+    }
+    try {
+      return (IBlendEngine) Class.forName(VECTOR_ENGINE).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+}
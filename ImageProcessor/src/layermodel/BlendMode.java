@@ -0,0 +1,104 @@
+package layermodel;
+
+/**
+ * The BlendMode enum lists the ways a visible layer can be blended with the layers below it.
+ * Every layer starts out as {@link #AVERAGE}. The visible layers are blended in order from the
+ * lowest one up: an averaged layer is averaged with the layers below it, and any other layer is
+ * composited over them with its mode's {@link IBlendKernel} and its opacity. Each kernel is its
+ * own loop over packed pixels so the mode is chosen once per row, not once per pixel.
+ */
+public enum BlendMode {
+  /**
+   * Averages the layer with the layers below it, which is how layers have always been blended.
+   */
+  AVERAGE(null),
+  /**
+   * Covers the pixels below with the layer's.
+   */
+  NORMAL(BlendMode::normal),
+  /**
+   * Multiplies the channels of the layer with the ones below, which only ever darkens.
+   */
+  MULTIPLY(BlendMode::multiply),
+  /**
+   * Multiplies the inverted channels of the layer with the inverted ones below and inverts the
+   * result, which only ever lightens.
+   */
+  SCREEN(BlendMode::screen),
+  /**
+   * Adds the channels of the layer to the ones below, capped at 255.
+   */
+  ADDITIVE(BlendMode::additive);
+
+  private final IBlendKernel kernel;
+
+  BlendMode(IBlendKernel kernel) {
+    this.kernel = kernel;
+  }
+
+  /**
+   * Returns the kernel that composites a layer in this mode.
+   *
+   * @return the kernel, or null for {@link #AVERAGE}, whose layers are averaged by the
+   *         {@link IBlendEngine} instead
+   */
+  public IBlendKernel getKernel() {
+    return this.kernel;
+  }
+
+  /**
+   * Moves a channel from the one below towards the composited one by the opacity.
+   */
+  private static int mix(int below, int composited, int opacity) {
+    return below + (composited - below) * opacity / 255;
+  }
+
+  private static void normal(int[] below, int[] layer, int offset, int length, int opacity) {
+    for (int x = 0; x < length; x++) {
+      int b = below[offset + x];
+      int t = layer[x];
+      below[offset + x] = mix((b >> 16) & 0xFF, (t >> 16) & 0xFF, opacity) << 16
+              | mix((b >> 8) & 0xFF, (t >> 8) & 0xFF, opacity) << 8
+              | mix(b & 0xFF, t & 0xFF, opacity);
+    }
+  }
+
+  private static void multiply(int[] below, int[] layer, int offset, int length, int opacity) {
+    for (int x = 0; x < length; x++) {
+      int b = below[offset + x];
+      int t = layer[x];
+      int r = (b >> 16) & 0xFF;
+      int g = (b >> 8) & 0xFF;
+      int bl = b & 0xFF;
+      below[offset + x] = mix(r, r * ((t >> 16) & 0xFF) / 255, opacity) << 16
+              | mix(g, g * ((t >> 8) & 0xFF) / 255, opacity) << 8
+              | mix(bl, bl * (t & 0xFF) / 255, opacity);
+    }
+  }
+
+  private static void screen(int[] below, int[] layer, int offset, int length, int opacity) {
+    for (int x = 0; x < length; x++) {
+      int b = below[offset + x];
+      int t = layer[x];
+      int r = (b >> 16) & 0xFF;
+      int g = (b >> 8) & 0xFF;
+      int bl = b & 0xFF;
+      below[offset + x] = mix(r, 255 - (255 - r) * (255 - ((t >> 16) & 0xFF)) / 255, opacity) << 16
+              | mix(g, 255 - (255 - g) * (255 - ((t >> 8) & 0xFF)) / 255, opacity) << 8
+              | mix(bl, 255 - (255 - bl) * (255 - (t & 0xFF)) / 255, opacity);
+    }
+  }
+
+  private static void additive(int[] below, int[] layer, int offset, int length, int opacity) {
+    for (int x = 0; x < length; x++) {
+      int b = below[offset + x];
+      int t = layer[x];
+      int r = (b >> 16) & 0xFF;
+      int g = (b >> 8) & 0xFF;
+      int bl = b & 0xFF;
+      below[offset + x] = mix(r, Math.min(255, r + ((t >> 16) & 0xFF)), opacity) << 16
+              | mix(g, Math.min(255, g + ((t >> 8) & 0xFF)), opacity) << 8
+              | mix(bl, Math.min(255, bl + (t & 0xFF)), opacity);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package layermodel;
+
+/**
+ * The IBlendEngine interface represents the primitive loops that {@link Layer#blend()} runs over
+ * packed 0xRRGGBB channel arrays: adding a layer's pixels to running per-channel sums and turning
+ * the sums into the average of the visible layers. {@link #getShared()} returns an engine that uses
+ * the JDK Vector API when the {@code jdk.incubator.vector} module is present, and plain scalar
+ * loops otherwise.
+ */
+public interface IBlendEngine {
+
+  /**
+   * Adds the red, green and blue channels of the given pixels to the running sums, or subtracts
+   * them.
+   *
+   * @param pixels the packed 0xRRGGBB pixels
+   * @param length the number of pixels to use, starting from the first
+   * @param sumR   the running red sums
+   * @param sumG   the running green sums
+   * @param sumB   the running blue sums
+   * @param offset the index in the sums of the first pixel
+   * @param add    true to add the channels to the sums, false to subtract them
+   */
+  void accumulate(int[] pixels, int length, int[] sumR, int[] sumG, int[] sumB, int offset,
+                  boolean add);
+
+  /**
+   * Divides the running sums by the number of layers in them and packs the averages into pixels.
+   * The averages are rounded down.
+   *
+   * @param sumR    the running red sums
+   * @param sumG    the running green sums
+   * @param sumB    the running blue sums
+   * @param count   the number of layers in the sums, at least 1
+   * @param blended the packed 0xRRGGBB averages, as long as the sums
+   */
+  void average(int[] sumR, int[] sumG, int[] sumB, int count, int[] blended);
+
+  /**
+   * Returns the name of this engine, such as "scalar" or "vector".
+   *
+   * @return the name
+   */
+  String getName();
+
+  /**
+   * Returns the engine used by every {@link Layer}. It is the Vector API engine if the JVM was
+   * started with {@code --add-modules jdk.incubator.vector} and the engine is on the class path,
+   * unless the system property {@code imageprocessor.blend} is set to {@code scalar}.
+   *
+   * @return the shared engine
+   */
+  static IBlendEngine getShared() {
+    return BlendEngines.SHARED;
+  }
+
+  /**
+   * Returns an engine that uses plain scalar loops and works on every JVM.
+   *
+   * @return a scalar engine
+   */
+  static IBlendEngine scalar() {
+    return new ScalarBlendEngine();
+  }
+
+  /**
+   * Returns an engine that uses the JDK Vector API.
+   *
+   * @return a vector engine
+   * @throws UnsupportedOperationException if the Vector API or the engine is not available
+   */
+  static IBlendEngine vector() {
+    IBlendEngine engine = BlendEngines.loadVector();
+    if (engine == null) {
+      throw new UnsupportedOperationException("The vector blend engine is not available.");
+    }
+    return engine;
+  }
+}
@@ -0,0 +1,20 @@
+package layermodel;
+
+/**
+ * The IBlendKernel interface represents the loop that composites one row of a layer over the
+ * image blended from the layers below it, for one {@link BlendMode}.
+ */
+@FunctionalInterface
+public interface IBlendKernel {
+
+  /**
+   * Composites the pixels of a layer over the pixels below them, in place.
+   *
+   * @param below   the packed 0xRRGGBB pixels blended so far, which are overwritten
+   * @param layer   the packed 0xRRGGBB pixels of the layer being composited
+   * @param offset  the index in below of the first pixel
+   * @param length  the number of pixels to composite, starting from the first of layer
+   * @param opacity how much the layer covers the pixels below, from 0 (not at all) to 255
+   */
+  void composite(int[] below, int[] layer, int offset, int length, int opacity);
+}
@@ -46,6 +46,18 @@ public interface ILayer extends IROLayer {
    */
   void toggleVisibility(int index) throws IllegalArgumentException;
 
+  /**
+   * Sets how the layer at the index is blended with the layers below it.
+   *
+   * @param index   corresponds to the layer, counting from 1
+   * @param mode    the blend mode
+   * @param opacity how much the layer covers the ones below as a percentage, from 0 to 100, which
+   *                is ignored for {@link BlendMode#AVERAGE}
+   * @throws IllegalArgumentException if index is out of bounds, mode is null or opacity is not
+   *                                  between 0 and 100
+   */
+  void setBlendMode(int index, BlendMode mode, int opacity) throws IllegalArgumentException;
+
   /**
    * Applies the IModifier to the current layer.
    *
@@ -62,6 +74,47 @@ public interface ILayer extends IROLayer {
    */
   void alterLayer(IModifier modifier, int width, int height) throws IllegalArgumentException;
 
+  /**
+   * Turns lazy evaluation on or off. While lazy, {@link #applyToCurrent(IModifier)} only records
+   * the modifier against the current image, and the recorded modifiers of an image are run in one
+   * go the first time its pixels are needed. Turning lazy evaluation off runs every recorded
+   * modifier.
+   *
+   * @param lazy true to defer modifiers until their pixels are needed
+   */
+  void setLazy(boolean lazy);
+
+  /**
+   * Undoes the latest change made by {@link #addLayer(IImage)}, {@link #toggleVisibility(int)},
+   * {@link #applyToCurrent(IModifier)} or {@link #alterLayer(IModifier, int, int)} that has not
+   * been undone yet.
+   *
+   * @throws IllegalArgumentException if there is nothing to undo
+   */
+  void undo() throws IllegalArgumentException;
+
+  /**
+   * Redoes the latest undone change, as long as no other change was made since it was undone.
+   *
+   * @throws IllegalArgumentException if there is nothing to redo
+   */
+  void redo() throws IllegalArgumentException;
+
+  /**
+   * Forgets every change that could be undone or redone, such as the layers added while a state
+   * was being loaded.
+   */
+  void clearHistory();
+
+  /**
+   * Turns the recording of changes that can be undone on or off. Modifiers run faster and the
+   * pixels they changed are not kept while nothing is recorded, for when nothing will be undone.
+   * Turning recording off forgets every change recorded so far.
+   *
+   * @param history true to record changes so they can be undone
+   */
+  void setHistory(boolean history);
+
   /**
    * Creates a list of the number of layers, width, height, depth, and current index of the ILayer.
    *
@@ -21,6 +21,33 @@ public interface IROLayer {
    */
   IImage getLayer(int index) throws IllegalArgumentException;
 
+  /**
+   * Determines if the layer at the index is visible.
+   *
+   * @param index that corresponds to the layer, counting from 1
+   * @return true if the layer is visible
+   * @throws IllegalArgumentException if index is out of bounds
+   */
+  boolean isVisible(int index) throws IllegalArgumentException;
+
+  /**
+   * Returns how the layer at the index is blended with the layers below it.
+   *
+   * @param index that corresponds to the layer, counting from 1
+   * @return the blend mode of the layer
+   * @throws IllegalArgumentException if index is out of bounds
+   */
+  BlendMode getBlendMode(int index) throws IllegalArgumentException;
+
+  /**
+   * Returns the opacity the layer at the index is blended with, unless it is averaged.
+   *
+   * @param index that corresponds to the layer, counting from 1
+   * @return the opacity as a percentage, from 0 to 100
+   * @throws IllegalArgumentException if index is out of bounds
+   */
+  int getOpacity(int index) throws IllegalArgumentException;
+
   /**
    * Produces the IImage at the current index.
    *
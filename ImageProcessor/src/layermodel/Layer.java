@@ -1,14 +1,17 @@
 package layermodel;
 
+import filter.ATransform;
 import filter.IModifier;
+import filter.TransformChain;
 import imagemodel.IImage;
-import imagemodel.IPixel;
-import imagemodel.Image;
-import imagemodel.Pixel;
+import imagemodel.ImageInfo;
+import imagemodel.RasterImage;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -21,16 +24,255 @@ import java.util.Map;
  * One can also make a layer invisible and add more layers. One property that must be kept
  * is that any image loaded as a layer must have the same width, height, and depth as those
  * already in the Layer.
+ *
+ * <p>A Layer can also be made lazy, in which case the modifiers applied to an image are recorded
+ * and only run when that image's pixels are needed (by {@link #blend()}, {@link #getLayer(int)},
+ * {@link #getCurrent()}, {@link #getCurrentVisible()}, {@link #getVisible()} or
+ * {@link #toString()}). Consecutive recorded {@link ATransform}s are fused into one
+ * {@link TransformChain} pass, which clamps between stages so the pixels match running them one
+ * by one, and kernel filters run in parallel bands as they always do.
+ *
+ * <p>{@link #blend()} keeps a running sum of every channel of the visible layers between calls.
+ * Adding a layer, toggling its visibility or applying a modifier to it only takes that one layer
+ * out of the sums, and the next blend adds back just the layers that changed, so blending after a
+ * single change costs one pass over one layer instead of a pass over all of them. This relies on
+ * the images in a Layer only being changed through the Layer. The passes themselves run on the
+ * shared {@link IBlendEngine}, which uses the JDK Vector API when it is available.
+ *
+ * <p>The visible layers are blended in order, starting from the lowest one. Only the layers blended
+ * with {@link BlendMode#AVERAGE}, the default, at the bottom of the stack are kept in the sums. A
+ * visible layer with any other {@link BlendMode} is composited over the layers below it with its
+ * mode's kernel on every blend, and averaged layers above it are averaged with what was blended
+ * below them, which counts as one layer for each visible layer it holds.
+ *
+ * <p>Adding a layer, toggling a layer's visibility, applying a modifier to the current layer and
+ * altering every layer can be undone and redone. A modifier is undone by a {@link TileDiff}, which
+ * only keeps the side of the tiles the modifier changed that is not in the image, so undoing or
+ * redoing it only swaps those tiles and each step of the history only holds as much memory as it
+ * changed. The history is limited by the bytes of pixels it keeps rather than by its number of
+ * steps, and can be turned off with {@link #setHistory(boolean)} so nothing is kept at all. A
+ * modifier that is still recorded by a lazy Layer is undone by dropping it, and modifiers that ran
+ * together in one lazy pass are undone together, putting the earlier ones back as recorded.
  */
 public class Layer implements ILayer {
 
+  //only the latest changes that keep this many bytes of pixels between them can be undone
+  private static final long HISTORY_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
   private final List<IImage> layers;
-  private Map<IImage, Boolean> visibility;
+  private final List<Boolean> visibility;
+  private final List<BlendMode> modes;
+  private final List<Integer> opacities;
   private final List<Integer> currentHistory;
   private int current;
   private int height;
   private int width;
   private int depth;
+  private boolean lazy;
+  private boolean history;
+  private final Map<IImage, List<ModifyStep>> pending;
+  //which layers are in the running channel sums, which are null until the first blend
+  private final List<Boolean> summed;
+  private int[] sumR;
+  private int[] sumG;
+  private int[] sumB;
+  private final Deque<Step> undoSteps;
+  private final Deque<Step> redoSteps;
+
+  /**
+   * A change to a Layer that can be undone and redone.
+   */
+  private interface Step {
+
+    void undo();
+
+    void redo();
+
+    /**
+     * Returns how many bytes of pixels the step keeps to undo or redo it.
+     */
+    default long getBytes() {
+      return 0;
+    }
+  }
+
+  /**
+   * A modifier applied to one layer. While the modifier is recorded by a lazy Layer the step has
+   * no diff, once it runs the diff covers every modifier that ran in the same pass, and batch
+   * holds the earlier of those.
+   */
+  private final class ModifyStep implements Step {
+
+    private final int idx;
+    private final IModifier modifier;
+    private TileDiff diff;
+    private List<ModifyStep> batch;
+
+    ModifyStep(int idx, IModifier modifier) {
+      this.idx = idx;
+      this.modifier = modifier;
+      this.diff = null;
+      this.batch = Collections.emptyList();
+    }
+
+    void ran(TileDiff diff, List<ModifyStep> batch) {
+      this.diff = diff;
+      this.batch = batch;
+    }
+
+    @Override
+    public long getBytes() {
+      return this.diff == null ? 0 : this.diff.getBytes();
+    }
+
+    @Override
+    public void undo() {
+      IImage image = layers.get(this.idx);
+      if (this.diff == null) {
+        List<ModifyStep> steps = pending.get(image);
+        steps.remove(this);
+        if (steps.isEmpty()) {
+          pending.remove(image);
+        }
+        return;
+      }
+      unsum(this.idx);
+      IImage restored = this.diff.revert(image);
+      layers.set(this.idx, restored);
+      if (!this.batch.isEmpty()) {
+        pending.put(restored, new ArrayList<>(this.batch));
+        this.ran(null, Collections.emptyList());
+      }
+    }
+
+    @Override
+    public void redo() {
+      IImage image = layers.get(this.idx);
+      unsum(this.idx);
+      if (this.diff != null) {
+        layers.set(this.idx, this.diff.reapply(image));
+      } else {
+        pending.computeIfAbsent(image, img -> new ArrayList<>()).add(this);
+      }
+    }
+  }
+
+  /**
+   * A modifier applied to every layer, which also changed the size of the Layer.
+   */
+  private final class AlterStep implements Step {
+
+    private final List<TileDiff> diffs;
+    private final int oldWidth;
+    private final int oldHeight;
+    private final int newWidth;
+    private final int newHeight;
+
+    AlterStep(List<TileDiff> diffs, int oldWidth, int oldHeight, int newWidth, int newHeight) {
+      this.diffs = diffs;
+      this.oldWidth = oldWidth;
+      this.oldHeight = oldHeight;
+      this.newWidth = newWidth;
+      this.newHeight = newHeight;
+    }
+
+    @Override
+    public long getBytes() {
+      long bytes = 0;
+      for (TileDiff diff : this.diffs) {
+        bytes += diff.getBytes();
+      }
+      return bytes;
+    }
+
+    @Override
+    public void undo() {
+      clearSums();
+      for (int idx = 0; idx < this.diffs.size(); idx++) {
+        layers.set(idx, this.diffs.get(idx).revert(layers.get(idx)));
+      }
+      width = this.oldWidth;
+      height = this.oldHeight;
+    }
+
+    @Override
+    public void redo() {
+      clearSums();
+      for (int idx = 0; idx < this.diffs.size(); idx++) {
+        layers.set(idx, this.diffs.get(idx).reapply(layers.get(idx)));
+      }
+      width = this.newWidth;
+      height = this.newHeight;
+    }
+  }
+
+  /**
+   * An image added as the top layer.
+   */
+  private final class AddStep implements Step {
+
+    private final IImage image;
+    private final List<Integer> oldProps;
+
+    AddStep(IImage image, List<Integer> oldProps) {
+      this.image = image;
+      this.oldProps = oldProps;
+    }
+
+    @Override
+    public void undo() {
+      int idx = layers.size() - 1;
+      unsum(idx);
+      layers.remove(idx);
+      visibility.remove(idx);
+      modes.remove(idx);
+      opacities.remove(idx);
+      summed.remove(idx);
+      currentHistory.remove(Integer.valueOf(currentHistory.size() - 1));
+      if (current >= layers.size()) {
+        current = 0;
+        for (int entry : currentHistory) {
+          if (entry < layers.size()) {
+            current = entry;
+            break;
+          }
+        }
+      }
+      if (layers.isEmpty()) {
+        width = this.oldProps.get(0);
+        height = this.oldProps.get(1);
+        depth = this.oldProps.get(2);
+      }
+    }
+
+    @Override
+    public void redo() {
+      canAcceptImage(this.image);
+      insertLayer(this.image);
+    }
+  }
+
+  /**
+   * A layer whose visibility was toggled.
+   */
+  private final class ToggleStep implements Step {
+
+    private final int idx;
+
+    ToggleStep(int idx) {
+      this.idx = idx;
+    }
+
+    @Override
+    public void undo() {
+      toggle(this.idx);
+    }
+
+    @Override
+    public void redo() {
+      toggle(this.idx);
+    }
+  }
 
   public Layer() {
     this(new ArrayList<>(), -1, -1, -1);
@@ -65,33 +307,202 @@ public class Layer implements ILayer {
       throw new IllegalArgumentException("Invalid list of images provided");
     }
     this.layers = images;
-    this.visibility = this.createMappedVisibility(images);
+    this.visibility = new ArrayList<>(Collections.nCopies(images.size(), true));
+    this.modes = new ArrayList<>(Collections.nCopies(images.size(), BlendMode.AVERAGE));
+    this.opacities = new ArrayList<>(Collections.nCopies(images.size(), 100));
     this.height = height;
     this.width = width;
     this.depth = depth;
     this.current = 0;
     this.currentHistory = new ArrayList<>(Collections.singleton(0));
+    this.lazy = false;
+    this.history = true;
+    this.pending = new IdentityHashMap<>();
+    this.summed = new ArrayList<>(Collections.nCopies(images.size(), false));
+    this.undoSteps = new ArrayDeque<>();
+    this.redoSteps = new ArrayDeque<>();
   }
 
-  private Map<IImage, Boolean> createMappedVisibility(List<IImage> images) {
-    Map<IImage, Boolean> vis = new HashMap<>();
-    for (IImage img : images) {
-      vis.put(img, true);
+  /**
+   * Adds a change to the history, which can no longer be followed by the changes that were undone
+   * before it.
+   */
+  private void record(Step step) {
+    if (!this.history) {
+      return;
+    }
+    this.undoSteps.push(step);
+    this.redoSteps.clear();
+    this.trimHistory();
+  }
+
+  /**
+   * Forgets the oldest changes until the history keeps no more than {@link #HISTORY_BYTES} of
+   * pixels, though the latest change can always be undone.
+   */
+  private void trimHistory() {
+    long bytes = 0;
+    for (Step step : this.undoSteps) {
+      bytes += step.getBytes();
+    }
+    while (bytes > HISTORY_BYTES && this.undoSteps.size() > 1) {
+      bytes -= this.undoSteps.removeLast().getBytes();
+    }
+  }
+
+  /**
+   * Runs the modifiers recorded against the given image while this Layer was lazy, fusing each
+   * run of consecutive transforms into a single pass.
+   *
+   * @param image the image whose pixels are needed
+   * @return the same image, now up to date
+   */
+  private IImage evaluate(IImage image) {
+    List<ModifyStep> steps = this.pending.remove(image);
+    if (steps == null) {
+      return image;
+    }
+    ImageInfo info = image.getInfo();
+    int[] before = this.history ? image.getRaster() : null;
+    List<ATransform> transforms = new ArrayList<>();
+    for (ModifyStep step : steps) {
+      if (step.modifier instanceof ATransform) {
+        transforms.add((ATransform) step.modifier);
+      } else {
+        this.applyTransforms(image, transforms);
+        image.applyFilter(step.modifier);
+      }
+    }
+    this.applyTransforms(image, transforms);
+    if (before != null) {
+      steps.get(steps.size() - 1).ran(TileDiff.of(before, info, image),
+              new ArrayList<>(steps.subList(0, steps.size() - 1)));
+      this.trimHistory();
+    }
+    return image;
+  }
+
+  private void applyTransforms(IImage image, List<ATransform> transforms) {
+    if (transforms.size() == 1) {
+      image.applyFilter(transforms.get(0));
+    } else if (transforms.size() > 1) {
+      image.applyFilter(new TransformChain(new ArrayList<>(transforms), false));
+    }
+    transforms.clear();
+  }
+
+  private void evaluateAll() {
+    for (IImage img : this.layers) {
+      this.evaluate(img);
+    }
+  }
+
+  /**
+   * Adds the channels of the layer at the given index to the running sums, or takes them out of
+   * them, one row at a time.
+   *
+   * @param idx the index of the layer counting from 0
+   * @param add true to add the layer to the sums, false to take it out
+   */
+  private void accumulate(int idx, boolean add) {
+    IImage image = this.evaluate(this.layers.get(idx));
+    IBlendEngine engine = IBlendEngine.getShared();
+    int[] row = null;
+    for (int y = 0; y < this.height; y++) {
+      row = image.getRow(y, row);
+      engine.accumulate(row, this.width, this.sumR, this.sumG, this.sumB, y * this.width, add);
     }
-    return vis;
+    this.summed.set(idx, add);
+  }
+
+  /**
+   * Takes the layer at the given index out of the running sums before it changes, so the next
+   * blend adds it back as it is then.
+   */
+  private void unsum(int idx) {
+    IImage image = this.layers.get(idx);
+    for (int i = 0; i < this.layers.size(); i++) {
+      //the same image can be added more than once, and then every copy of it changes
+      if (this.summed.get(i) && this.layers.get(i) == image) {
+        this.accumulate(i, false);
+      }
+    }
+  }
+
+  /**
+   * Composites the layer at the given index over the pixels blended so far with its blend mode.
+   */
+  private void composite(int idx, int[] blended) {
+    IImage image = this.evaluate(this.layers.get(idx));
+    IBlendKernel kernel = this.modes.get(idx).getKernel();
+    int opacity = (this.opacities.get(idx) * 255 + 50) / 100;
+    int[] row = null;
+    for (int y = 0; y < this.height; y++) {
+      row = image.getRow(y, row);
+      kernel.composite(blended, row, y * this.width, this.width, opacity);
+    }
+  }
+
+  /**
+   * Averages a group of averaged layers with the pixels blended so far, which count as the given
+   * number of layers, so a stack of averaged layers is blended the same as the plain average of
+   * all of them.
+   */
+  private void average(List<Integer> group, int below, int[] blended) {
+    int[] sumR = new int[blended.length];
+    int[] sumG = new int[blended.length];
+    int[] sumB = new int[blended.length];
+    for (int i = 0; i < blended.length; i++) {
+      sumR[i] = ((blended[i] >> 16) & 0xFF) * below;
+      sumG[i] = ((blended[i] >> 8) & 0xFF) * below;
+      sumB[i] = (blended[i] & 0xFF) * below;
+    }
+    IBlendEngine engine = IBlendEngine.getShared();
+    int[] row = null;
+    for (int idx : group) {
+      IImage image = this.evaluate(this.layers.get(idx));
+      for (int y = 0; y < this.height; y++) {
+        row = image.getRow(y, row);
+        engine.accumulate(row, this.width, sumR, sumG, sumB, y * this.width, true);
+      }
+    }
+    engine.average(sumR, sumG, sumB, below + group.size(), blended);
+  }
+
+  /**
+   * Copies the pixels of the layer at the given index into the blended pixels.
+   */
+  private void copyRows(int idx, int[] blended) {
+    IImage image = this.evaluate(this.layers.get(idx));
+    int[] row = null;
+    for (int y = 0; y < this.height; y++) {
+      row = image.getRow(y, row);
+      System.arraycopy(row, 0, blended, y * this.width, this.width);
+    }
+  }
+
+  /**
+   * Drops the running sums, for when every layer changes at once.
+   */
+  private void clearSums() {
+    this.sumR = null;
+    this.sumG = null;
+    this.sumB = null;
+    Collections.fill(this.summed, false);
   }
 
   private boolean canAcceptImage(IImage image) {
+    ImageInfo info = image.getInfo();
     if (this.width == -1 || this.height == -1 || this.depth == -1) {
-      this.width = image.getProps().get(0);
-      this.height = image.getProps().get(1);
-      this.depth = image.getProps().get(2);
+      this.width = info.getWidth();
+      this.height = info.getHeight();
+      this.depth = info.getDepth();
       return true;
     }
 
-    return this.width == image.getProps().get(0)
-            && this.height == image.getProps().get(1)
-            && this.depth == image.getProps().get(2);
+    return this.width == info.getWidth()
+            && this.height == info.getHeight()
+            && this.depth == info.getDepth();
   }
 
   private boolean isValidImages(List<IImage> images) {
@@ -99,9 +510,9 @@ public class Layer implements ILayer {
       return true;
     }
 
-    List<Integer> props = images.get(0).getProps();
+    ImageInfo info = images.get(0).getInfo();
     for (IImage img : images) {
-      if (!img.getProps().equals(props)) {
+      if (!img.getInfo().equals(info)) {
         return false;
       }
     }
@@ -117,13 +528,22 @@ public class Layer implements ILayer {
 
   @Override
   public void addLayer(IImage image) throws IllegalArgumentException {
+    List<Integer> oldProps = Arrays.asList(this.width, this.height, this.depth);
     if (!canAcceptImage(image)) {
       throw new IllegalArgumentException("Image must have same properties as the one in the layer"
               + " below");
     }
+    this.insertLayer(image);
+    this.record(new AddStep(image, oldProps));
+  }
+
+  private void insertLayer(IImage image) {
     this.currentHistory.add(this.currentHistory.size());
     this.layers.add(image);
-    this.visibility.put(image, true);
+    this.visibility.add(true);
+    this.modes.add(BlendMode.AVERAGE);
+    this.opacities.add(100);
+    this.summed.add(false);
   }
 
   @Override
@@ -131,33 +551,111 @@ public class Layer implements ILayer {
     if (index <= 0 || index > this.layers.size()) {
       throw new IllegalArgumentException("Invalid index provided");
     }
-    return this.layers.get(index - 1);
+    return this.evaluate(this.layers.get(index - 1));
+  }
+
+  @Override
+  public boolean isVisible(int index) throws IllegalArgumentException {
+    if (index <= 0 || index > this.layers.size()) {
+      throw new IllegalArgumentException("Invalid index provided");
+    }
+    return this.visibility.get(index - 1);
+  }
+
+  @Override
+  public BlendMode getBlendMode(int index) throws IllegalArgumentException {
+    if (index <= 0 || index > this.layers.size()) {
+      throw new IllegalArgumentException("Invalid index provided");
+    }
+    return this.modes.get(index - 1);
+  }
+
+  @Override
+  public int getOpacity(int index) throws IllegalArgumentException {
+    if (index <= 0 || index > this.layers.size()) {
+      throw new IllegalArgumentException("Invalid index provided");
+    }
+    return this.opacities.get(index - 1);
+  }
+
+  @Override
+  public void setBlendMode(int index, BlendMode mode, int opacity)
+          throws IllegalArgumentException {
+    if (index <= 0 || index > this.layers.size()) {
+      throw new IllegalArgumentException("Image at " + index + " does not exist.");
+    }
+    if (mode == null) {
+      throw new IllegalArgumentException("Blend mode cannot be null.");
+    }
+    if (opacity < 0 || opacity > 100) {
+      throw new IllegalArgumentException("Opacity must be between 0 and 100.");
+    }
+    if (mode != BlendMode.AVERAGE) {
+      this.unsum(index - 1);
+    }
+    this.modes.set(index - 1, mode);
+    this.opacities.set(index - 1, opacity);
   }
 
   @Override
   public IImage blend() {
-    List<IPixel> pixels = new ArrayList<>();
-    int numOfVisibleLayers = this.getVisible().size();
-
-    for (int j = 0; j < height; j++) {
-      for (int i = 0; i < width; i++) {
-        double avgR = 0.0;
-        double avgG = 0.0;
-        double avgB = 0.0;
-
-        for (IImage layer : this.layers) {
-          if (visibility.get(layer)) {
-            IPixel p = layer.getPixel(i, j);
-            avgR += p.getColor().get(0);
-            avgG += p.getColor().get(1);
-            avgB += p.getColor().get(2);
-          }
+    if (this.sumR == null || this.sumR.length != width * height) {
+      this.clearSums();
+      this.sumR = new int[width * height];
+      this.sumG = new int[width * height];
+      this.sumB = new int[width * height];
+    }
+
+    //the averaged layers at the bottom of the stack are the only ones kept in the running sums
+    int bottom = 0;
+    while (bottom < this.layers.size() && !this.visibility.get(bottom)) {
+      bottom++;
+    }
+    int next = bottom;
+    int below = 0;
+    for (int idx = bottom; idx < this.layers.size(); idx++) {
+      boolean inBottom = next == idx && this.visibility.get(idx)
+              && this.modes.get(idx) == BlendMode.AVERAGE;
+      if (inBottom) {
+        below++;
+        if (!this.summed.get(idx)) {
+          this.accumulate(idx, true);
         }
-        pixels.add(new Pixel(i, j, avgR / numOfVisibleLayers, avgG / numOfVisibleLayers,
-                avgB / numOfVisibleLayers));
+      } else if (this.summed.get(idx)) {
+        this.accumulate(idx, false);
+      }
+      if (next == idx && (inBottom || !this.visibility.get(idx))) {
+        next++;
+      }
+    }
+
+    int[] blended = new int[width * height];
+    if (below > 0) {
+      IBlendEngine.getShared().average(sumR, sumG, sumB, below, blended);
+    } else if (bottom < this.layers.size()) {
+      //a lowest layer that is not averaged has nothing below it to blend with
+      this.copyRows(bottom, blended);
+      below = 1;
+      next = bottom + 1;
+    }
+    List<Integer> group = new ArrayList<>();
+    for (int idx = next; idx <= this.layers.size(); idx++) {
+      boolean visible = idx < this.layers.size() && this.visibility.get(idx);
+      if (visible && this.modes.get(idx) == BlendMode.AVERAGE) {
+        group.add(idx);
+        continue;
+      }
+      if (!group.isEmpty() && (visible || idx == this.layers.size())) {
+        this.average(group, below, blended);
+        below += group.size();
+        group.clear();
+      }
+      if (visible) {
+        this.composite(idx, blended);
+        below++;
       }
     }
-    return new Image(pixels, width, height, depth);
+    return new RasterImage(blended, width, height, depth);
   }
 
   @Override
@@ -175,7 +673,7 @@ public class Layer implements ILayer {
     if (this.layers.isEmpty()) {
       throw new IllegalArgumentException("No current image to get!");
     }
-    return this.layers.get(current);
+    return this.evaluate(this.layers.get(current));
   }
 
   @Override
@@ -183,17 +681,22 @@ public class Layer implements ILayer {
     if (index <= 0 || index > this.layers.size()) {
       throw new IllegalArgumentException("Image at " + index + " does not exist.");
     } else {
-      IImage img = this.layers.get(index - 1);
-      this.visibility.replace(img, !this.visibility.get(img));
+      this.toggle(index - 1);
+      this.record(new ToggleStep(index - 1));
     }
   }
 
+  private void toggle(int idx) {
+    this.unsum(idx);
+    this.visibility.set(idx, !this.visibility.get(idx));
+  }
+
   @Override
   public List<IImage> getVisible() {
     List<IImage> images = new ArrayList<>();
-    for (Map.Entry<IImage, Boolean> img : this.visibility.entrySet()) {
-      if (img.getValue()) {
-        images.add(img.getKey());
+    for (int idx = 0; idx < this.layers.size(); idx++) {
+      if (this.visibility.get(idx)) {
+        images.add(this.evaluate(this.layers.get(idx)));
       }
     }
     return images;
@@ -203,8 +706,65 @@ public class Layer implements ILayer {
   public void applyToCurrent(IModifier modifier) {
     if (layers.size() == 0) {
       throw new IllegalArgumentException("No image to apply filter to.");
+    }
+    this.unsum(current);
+    ModifyStep step = new ModifyStep(current, modifier);
+    if (this.lazy) {
+      this.pending.computeIfAbsent(this.layers.get(current), img -> new ArrayList<>())
+              .add(step);
     } else {
-      this.layers.get(current).applyFilter(modifier);
+      IImage image = this.layers.get(current);
+      if (!this.history) {
+        image.applyFilter(modifier);
+        return;
+      }
+      ImageInfo info = image.getInfo();
+      int[] before = image.getRaster();
+      image.applyFilter(modifier);
+      step.ran(TileDiff.of(before, info, image), Collections.emptyList());
+    }
+    this.record(step);
+  }
+
+  @Override
+  public void undo() throws IllegalArgumentException {
+    if (this.undoSteps.isEmpty()) {
+      throw new IllegalArgumentException("Nothing to undo.");
+    }
+    Step step = this.undoSteps.pop();
+    step.undo();
+    this.redoSteps.push(step);
+  }
+
+  @Override
+  public void redo() throws IllegalArgumentException {
+    if (this.redoSteps.isEmpty()) {
+      throw new IllegalArgumentException("Nothing to redo.");
+    }
+    Step step = this.redoSteps.pop();
+    step.redo();
+    this.undoSteps.push(step);
+  }
+
+  @Override
+  public void clearHistory() {
+    this.undoSteps.clear();
+    this.redoSteps.clear();
+  }
+
+  @Override
+  public void setHistory(boolean history) {
+    this.history = history;
+    if (!history) {
+      this.clearHistory();
+    }
+  }
+
+  @Override
+  public void setLazy(boolean lazy) {
+    this.lazy = lazy;
+    if (!lazy) {
+      this.evaluateAll();
     }
   }
 
@@ -212,8 +772,9 @@ public class Layer implements ILayer {
   public String toString() {
     StringBuilder matrix = new StringBuilder("LAYER\n" + this.layers.size() + "\n"
             + width + "\n" + height + "\n" + depth + "\n");
-    for (IImage img : this.layers) {
-      matrix.append(this.visibility.get(img)).append("\n").append(img.toString());
+    this.evaluateAll();
+    for (int idx = 0; idx < this.layers.size(); idx++) {
+      matrix.append(this.visibility.get(idx)).append("\n").append(this.layers.get(idx));
     }
     return matrix.toString();
   }
@@ -233,13 +794,13 @@ public class Layer implements ILayer {
   public IImage getCurrentVisible() {
     try {
       IImage current = this.getCurrent();
-      if (this.visibility.get(current)) {
+      if (this.visibility.get(this.current)) {
         return current;
       } else {
         for (int i = 1; i < this.currentHistory.size() - 1; i++) {
-          current = this.layers.get(this.currentHistory.get(i));
-          if (this.visibility.get(current)) {
-            return current;
+          int idx = this.currentHistory.get(i);
+          if (this.visibility.get(idx)) {
+            return this.evaluate(this.layers.get(idx));
           }
         }
       }
@@ -259,9 +820,18 @@ public class Layer implements ILayer {
     if (layers.size() == 0) {
       throw new IllegalArgumentException("No image to apply filter to.");
     } else {
+      this.clearSums();
+      List<TileDiff> diffs = new ArrayList<>();
       for (IImage img : this.layers) {
+        this.evaluate(img);
+        ImageInfo info = img.getInfo();
+        int[] before = this.history ? img.getRaster() : null;
         img.applyFilter(modifier);
+        if (before != null) {
+          diffs.add(TileDiff.of(before, info, img));
+        }
       }
+      this.record(new AlterStep(diffs, this.width, this.height, width, height));
     }
     this.width = width;
     this.height = height;
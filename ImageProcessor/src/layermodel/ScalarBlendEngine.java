@@ -0,0 +1,32 @@
+package layermodel;
+
+/**
+ * The ScalarBlendEngine class is the {@link IBlendEngine} that works on every JVM. Its loops only
+ * use primitive arrays, so the JIT can unroll them and often vectorizes them on its own.
+ */
+final class ScalarBlendEngine implements IBlendEngine {
+
+  @Override
+  public void accumulate(int[] pixels, int length, int[] sumR, int[] sumG, int[] sumB,
+                         int offset, boolean add) {
+    int sign = add ? 1 : -1;
+    for (int x = 0; x < length; x++) {
+      int rgb = pixels[x];
+      sumR[offset + x] += sign * ((rgb >> 16) & 0xFF);
+      sumG[offset + x] += sign * ((rgb >> 8) & 0xFF);
+      sumB[offset + x] += sign * (rgb & 0xFF);
+    }
+  }
+
+  @Override
+  public void average(int[] sumR, int[] sumG, int[] sumB, int count, int[] blended) {
+    for (int i = 0; i < blended.length; i++) {
+      blended[i] = (sumR[i] / count) << 16 | (sumG[i] / count) << 8 | sumB[i] / count;
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+}
@@ -0,0 +1,168 @@
+package layermodel;
+
+import imagemodel.IImage;
+import imagemodel.ImageInfo;
+import imagemodel.RasterImage;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The TileDiff class records how a modifier changed the pixels of one image so the change can be
+ * undone and redone. The image is split into square tiles and only the tiles with at least one
+ * changed pixel are kept, so a change that touches a small part of an image only costs memory for
+ * that part. Only the side of each tile that is not in the image is kept: its pixels from before
+ * the change until the change is undone, and its pixels from after the change until it is redone,
+ * as undoing or redoing swaps the kept tiles with the ones in the image. A change that resizes the
+ * image cannot be kept as tiles, so it keeps the whole image that is not in use and swaps it with
+ * the one that is instead.
+ */
+final class TileDiff {
+
+  static final int TILE_SIZE = 64;
+
+  private final int width;
+  private final int height;
+  private final int[] tiles;
+  private final int[][] kept;
+  private IImage keptImage;
+
+  private TileDiff(int width, int height, int[] tiles, int[][] kept, IImage keptImage) {
+    this.width = width;
+    this.height = height;
+    this.tiles = tiles;
+    this.kept = kept;
+    this.keptImage = keptImage;
+  }
+
+  /**
+   * Compares an image with its pixels from before a change.
+   *
+   * @param before     the packed pixels of the image before the change
+   * @param beforeInfo the width, height and depth of the image before the change
+   * @param image      the image after the change
+   * @return the change
+   */
+  static TileDiff of(int[] before, ImageInfo beforeInfo, IImage image) {
+    ImageInfo info = image.getInfo();
+    int width = info.getWidth();
+    int height = info.getHeight();
+    if (!info.equals(beforeInfo)) {
+      return new TileDiff(width, height, null, null,
+              new RasterImage(before, beforeInfo.getWidth(), beforeInfo.getHeight(),
+                      beforeInfo.getDepth()));
+    }
+
+    IntBuffer after = image.getPixelBuffer();
+    int tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+    int tilesDown = (height + TILE_SIZE - 1) / TILE_SIZE;
+    List<Integer> changed = new ArrayList<>();
+    List<int[]> beforeTiles = new ArrayList<>();
+    for (int tile = 0; tile < tilesAcross * tilesDown; tile++) {
+      int x = (tile % tilesAcross) * TILE_SIZE;
+      int y = (tile / tilesAcross) * TILE_SIZE;
+      int w = Math.min(TILE_SIZE, width - x);
+      int h = Math.min(TILE_SIZE, height - y);
+      if (differs(before, after, width, x, y, w, h)) {
+        changed.add(tile);
+        beforeTiles.add(copyTile(before, width, x, y, w, h));
+      }
+    }
+    return new TileDiff(width, height, changed.stream().mapToInt(Integer::intValue).toArray(),
+            beforeTiles.toArray(new int[0][]), null);
+  }
+
+  private static boolean differs(int[] before, IntBuffer after, int width, int x, int y, int w,
+                                 int h) {
+    for (int row = y; row < y + h; row++) {
+      int from = row * width + x;
+      if (IntBuffer.wrap(before, from, w).mismatch(after.slice(from, w)) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int[] copyTile(int[] raster, int width, int x, int y, int w, int h) {
+    int[] tile = new int[w * h];
+    for (int row = 0; row < h; row++) {
+      System.arraycopy(raster, (y + row) * width + x, tile, row * w, w);
+    }
+    return tile;
+  }
+
+  private static int[] copyTile(IntBuffer pixels, int width, int x, int y, int w, int h) {
+    int[] tile = new int[w * h];
+    for (int row = 0; row < h; row++) {
+      pixels.get((y + row) * width + x, tile, row * w, w);
+    }
+    return tile;
+  }
+
+  /**
+   * Returns the number of tiles this change kept, 0 if nothing changed or if the whole image was
+   * kept because the change resized it.
+   *
+   * @return the number of tiles
+   */
+  int getTileCount() {
+    return this.tiles == null ? 0 : this.tiles.length;
+  }
+
+  /**
+   * Returns how many bytes of pixels this change keeps.
+   *
+   * @return the number of bytes
+   */
+  long getBytes() {
+    if (this.keptImage != null) {
+      ImageInfo info = this.keptImage.getInfo();
+      return 4L * info.getWidth() * info.getHeight();
+    }
+    long bytes = 0;
+    for (int[] tile : this.kept) {
+      bytes += 4L * tile.length;
+    }
+    return bytes;
+  }
+
+  /**
+   * Undoes the change.
+   *
+   * @param image the image as it was after the change
+   * @return the image as it was before the change, the same image unless the change resized it
+   */
+  IImage revert(IImage image) {
+    return this.swap(image);
+  }
+
+  /**
+   * Redoes the change.
+   *
+   * @param image the image as it was before the change
+   * @return the image as it was after the change, the same image unless the change resized it
+   */
+  IImage reapply(IImage image) {
+    return this.swap(image);
+  }
+
+  private IImage swap(IImage image) {
+    if (this.keptImage != null) {
+      IImage other = this.keptImage;
+      this.keptImage = image;
+      return other;
+    }
+    IntBuffer pixels = image.getPixelBuffer();
+    int tilesAcross = (this.width + TILE_SIZE - 1) / TILE_SIZE;
+    for (int i = 0; i < this.tiles.length; i++) {
+      int x = (this.tiles[i] % tilesAcross) * TILE_SIZE;
+      int y = (this.tiles[i] / tilesAcross) * TILE_SIZE;
+      int w = Math.min(TILE_SIZE, this.width - x);
+      int h = Math.min(TILE_SIZE, this.height - y);
+      int[] replaced = copyTile(pixels, this.width, x, y, w, h);
+      image.setRegion(x, y, w, h, this.kept[i]);
+      this.kept[i] = replaced;
+    }
+    return image;
+  }
+}
@@ -18,6 +18,7 @@ import view.dialogs.DownscaleDetails;
 import view.dialogs.ExportImage;
 import view.dialogs.LoadFile;
 import view.dialogs.MosaicDetails;
+import view.dialogs.ParallelismDetails;
 import view.dialogs.SaveState;
 import view.dialogs.ToggleDetails;
 
@@ -42,6 +43,9 @@ public class GraphicalView implements IGraphicalView {
   private JButton setCurrentButton;
   private JButton toggleVisibilityButton;
   private JButton blendAllLayersButton;
+  private JButton parallelismButton;
+  private JButton undoButton;
+  private JButton redoButton;
   private JTextField layerToolsTextField;
   private JTextArea imageModifiersTextArea;
   private JScrollPane imageDisplay;
@@ -113,6 +117,8 @@ public class GraphicalView implements IGraphicalView {
         return new SaveState().getResults();
       case "export":
         return new ExportImage().getResults();
+      case "parallelism":
+        return new ParallelismDetails().getResults();
       default:
         return null;
     }
@@ -137,6 +143,9 @@ public class GraphicalView implements IGraphicalView {
     setCurrentButton.addActionListener(listener);
     toggleVisibilityButton.addActionListener(listener);
     blendAllLayersButton.addActionListener(listener);
+    parallelismButton.addActionListener(listener);
+    undoButton.addActionListener(listener);
+    redoButton.addActionListener(listener);
   }
 
   private void createUIComponents() {
@@ -35,7 +35,7 @@ public class LoadFile extends JDialog implements IDialogView {
     fileChooser.setAcceptAllFileFilterUsed(false);
     fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("Image", "jpg", "png", "ppm",
             "jpeg"));
-    fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("State", "txt"));
+    fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("State", "txt", "state"));
     res.add(fileChooser.getFileFilter().getDescription());
 
     int result = fileChooser.showOpenDialog(this.contentPane);
@@ -0,0 +1,299 @@
+package controller;
+
+import filecontroller.FileController;
+import filter.Sepia;
+import filter.TileExecutor;
+import imagemodel.IImage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the BatchController, which runs the same script over many image files.
+ */
+public class BatchControllerTest {
+  Path directory;
+  FileController fileController;
+  StringBuilder out;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("batch");
+    fileController = new FileController();
+    out = new StringBuilder();
+    Files.copy(Paths.get("res/check.ppm"), directory.resolve("check.ppm"));
+    Files.copy(Paths.get("res/sepia3x3.ppm"), directory.resolve("sepia3x3.ppm"));
+    Files.copy(Paths.get("res/road.ppm"), directory.resolve("road.ppm"));
+    Files.write(directory.resolve("notes.txt"), Collections.singletonList("not an image"));
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : directory.toFile().listFiles()) {
+      file.delete();
+    }
+    directory.toFile().delete();
+  }
+
+  private List<String> sepiaScript() {
+    return Arrays.asList("load image {input}", "", "apply sepia",
+            "export " + directory.resolve("{name}_out.ppm"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullScript() {
+    new BatchController(null, new ArrayList<>(), 1, out);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullSessionInputs() {
+    new BatchController(new ArrayList<>(), null, out);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoWorkers() {
+    new BatchController(new ArrayList<>(), new ArrayList<>(), 0, out);
+  }
+
+  @Test
+  public void testExpand() {
+    assertEquals("load image photos/a.b.ppm", BatchController.expand("load image {input}",
+            Paths.get("photos/a.b.ppm")));
+    assertEquals("export out/a.b.png", BatchController.expand("export out/{name}.png",
+            Paths.get("photos/a.b.ppm")));
+  }
+
+  @Test
+  public void testFindInputsInDirectory() throws IOException {
+    assertEquals(Arrays.asList(directory.resolve("check.ppm"), directory.resolve("road.ppm"),
+            directory.resolve("sepia3x3.ppm")), BatchController.findInputs(directory.toString()));
+  }
+
+  @Test
+  public void testFindInputsWithGlob() throws IOException {
+    assertEquals(Arrays.asList(directory.resolve("check.ppm"), directory.resolve("road.ppm")),
+            BatchController.findInputs(directory + "/[cr]*.ppm"));
+    assertEquals(new ArrayList<>(), BatchController.findInputs(directory + "/missing/*.ppm"));
+  }
+
+  @Test
+  public void testRunsScriptOverEveryFile() throws IOException {
+    List<Path> inputs = BatchController.findInputs(directory.toString());
+    BatchController batch = new BatchController(sepiaScript(), inputs, 2, out);
+    batch.start();
+
+    assertEquals(0, batch.getFailed());
+    for (Path input : inputs) {
+      IImage expected = fileController.readImage(input.toString());
+      expected.applyFilter(new Sepia());
+      String name = input.getFileName().toString().replace(".ppm", "_out.ppm");
+      assertEquals(expected.toString(),
+              fileController.readImage(directory.resolve(name).toString()).toString());
+      assertTrue(out.toString().contains(" ok " + input + " ("));
+    }
+    assertTrue(out.toString().contains("Processed 3 files: 3 succeeded, 0 failed."));
+    assertTrue(out.toString().contains("[3/3]"));
+  }
+
+  @Test
+  public void testSessionsMatchWorkers() throws IOException {
+    List<Path> inputs = BatchController.findInputs(directory.toString());
+    new BatchController(sepiaScript(), inputs, 1, out).start();
+    List<String> expected = new ArrayList<>();
+    for (Path input : inputs) {
+      String name = input.getFileName().toString().replace(".ppm", "_out.ppm");
+      expected.add(new String(Files.readAllBytes(directory.resolve(name))));
+      Files.delete(directory.resolve(name));
+    }
+
+    BatchController batch = new BatchController(sepiaScript(), inputs, out);
+    batch.start();
+    assertEquals(0, batch.getFailed());
+    for (int i = 0; i < inputs.size(); i++) {
+      String name = inputs.get(i).getFileName().toString().replace(".ppm", "_out.ppm");
+      assertEquals(expected.get(i), new String(Files.readAllBytes(directory.resolve(name))));
+    }
+    assertTrue(out.toString().contains(" threads with "));
+  }
+
+  @Test
+  public void testSessionsLazySaveMatchesWorkers() throws IOException {
+    List<String> script = Arrays.asList("set lazy on", "load image {input}", "apply sepia",
+            "apply blur", "save image current " + directory.resolve("{name}_out.ppm"));
+    List<Path> inputs = BatchController.findInputs(directory.toString());
+    new BatchController(script, inputs, 1, out).start();
+    List<String> expected = new ArrayList<>();
+    for (Path input : inputs) {
+      String name = input.getFileName().toString().replace(".ppm", "_out.ppm");
+      expected.add(new String(Files.readAllBytes(directory.resolve(name))));
+      Files.delete(directory.resolve(name));
+    }
+
+    BatchController batch = new BatchController(script, inputs, out);
+    batch.start();
+    assertEquals(0, batch.getFailed());
+    for (int i = 0; i < inputs.size(); i++) {
+      String name = inputs.get(i).getFileName().toString().replace(".ppm", "_out.ppm");
+      assertEquals(expected.get(i), new String(Files.readAllBytes(directory.resolve(name))));
+    }
+  }
+
+  @Test
+  public void testMoreSessionsThanLimit() throws IOException {
+    List<Path> inputs = Collections.nCopies(2 * Sessions.getSessionLimit() + 1,
+            directory.resolve("sepia3x3.ppm"));
+    BatchController batch = new BatchController(Arrays.asList("load image {input}",
+            "apply sepia", "apply blur"), inputs, out);
+    batch.start();
+    assertEquals(0, batch.getFailed());
+    assertTrue(out.toString().contains("Processed " + inputs.size() + " files: "
+            + inputs.size() + " succeeded, 0 failed."));
+    assertTrue(out.toString().contains(" on up to " + Sessions.getSessionLimit() + " "));
+  }
+
+  @Test
+  public void testPipelineMatchesWorkers() throws IOException {
+    List<Path> inputs = BatchController.findInputs(directory.toString());
+    new BatchController(sepiaScript(), inputs, 1, out).start();
+    List<String> expected = new ArrayList<>();
+    for (Path input : inputs) {
+      String name = input.getFileName().toString().replace(".ppm", "_out.ppm");
+      expected.add(new String(Files.readAllBytes(directory.resolve(name))));
+      Files.delete(directory.resolve(name));
+    }
+
+    out.setLength(0);
+    BatchController batch = BatchController.pipelined(sepiaScript(), inputs, out);
+    batch.start();
+    assertEquals(0, batch.getFailed());
+    for (int i = 0; i < inputs.size(); i++) {
+      String name = inputs.get(i).getFileName().toString().replace(".ppm", "_out.ppm");
+      assertEquals(expected.get(i), new String(Files.readAllBytes(directory.resolve(name))));
+      assertTrue(out.toString().contains("[" + (i + 1) + "/3] ok " + inputs.get(i) + " ("));
+    }
+    assertTrue(out.toString().contains(" pipeline, "));
+  }
+
+  @Test
+  public void testPipelineLoadsImagesItExported() throws IOException {
+    List<Path> inputs = BatchController.findInputs(directory.toString());
+    List<String> script = Arrays.asList("load image {input}", "apply blur",
+            "export " + directory.resolve("{name}_blur.ppm"),
+            "load image " + directory.resolve("{name}_blur.ppm"), "set 2", "apply sepia",
+            "save image current " + directory.resolve("{name}_again.ppm"));
+    new BatchController(script, inputs, 1, out).start();
+    List<String> expected = new ArrayList<>();
+    for (Path input : inputs) {
+      String name = input.getFileName().toString().replace(".ppm", "_again.ppm");
+      expected.add(new String(Files.readAllBytes(directory.resolve(name))));
+      Files.delete(directory.resolve(name));
+      Files.delete(directory.resolve(name.replace("_again", "_blur")));
+    }
+
+    BatchController batch = BatchController.pipelined(script, inputs, out);
+    batch.start();
+    assertEquals(0, batch.getFailed());
+    for (int i = 0; i < inputs.size(); i++) {
+      String name = inputs.get(i).getFileName().toString().replace(".ppm", "_again.ppm");
+      assertEquals(expected.get(i), new String(Files.readAllBytes(directory.resolve(name))));
+    }
+  }
+
+  @Test
+  public void testWrittenImages() {
+    assertEquals(new HashSet<>(Arrays.asList(Paths.get("a.ppm").toAbsolutePath().toString(),
+            Paths.get("b.png").toAbsolutePath().toString())),
+            BatchController.writtenImages(Arrays.asList("load image c.ppm", "export a.ppm",
+                    "save image 2 out/../b.png", "save state d", "export")));
+  }
+
+  @Test
+  public void testPipelineReportsFailedExport() throws IOException {
+    Path broken = directory.resolve("broken.ppm");
+    Files.write(broken, Collections.singletonList("P3\n2 2\n255\n1 2"));
+    List<Path> inputs = Arrays.asList(directory.resolve("missing.ppm"), broken,
+            directory.resolve("check.ppm"), directory.resolve("road.ppm"));
+    BatchController batch = BatchController.pipelined(Arrays.asList("load image {input}",
+            "export " + directory.resolve("missing/{name}.ppm")), inputs, out);
+    batch.start();
+
+    assertEquals(4, batch.getFailed());
+    assertTrue(out.toString().contains(" failed " + directory.resolve("missing.ppm") + " ("));
+    assertTrue(out.toString().contains(" failed " + broken + " ("));
+    assertTrue(out.toString().contains(" failed " + directory.resolve("check.ppm")
+            + " (") && out.toString().contains("): export: "));
+  }
+
+  @Test
+  public void testLoadedImages() {
+    assertEquals(Arrays.asList("a.ppm", "b.png"), BatchController.loadedImages(Arrays.asList(
+            "load image a.ppm", "load state a.txt", "apply blur", " load image b.png", "load")));
+  }
+
+  @Test
+  public void testUndoes() {
+    assertFalse(BatchController.undoes(Arrays.asList("load image a.ppm", "apply blur",
+            "save image current undo.ppm")));
+    assertTrue(BatchController.undoes(Arrays.asList("load image a.ppm", "apply blur",
+            " undo ")));
+    assertTrue(BatchController.undoes(Arrays.asList("redo")));
+  }
+
+  @Test
+  public void testFailedFileDoesNotStopOthers() throws IOException {
+    Path broken = directory.resolve("broken.ppm");
+    Files.write(broken, Collections.singletonList("P3\n2 2\n255\n1 2"));
+    List<Path> inputs = Arrays.asList(directory.resolve("missing.ppm"), broken,
+            directory.resolve("check.ppm"));
+    BatchController batch = new BatchController(sepiaScript(), inputs, 3, out);
+    batch.start();
+
+    assertEquals(2, batch.getFailed());
+    assertTrue(out.toString().contains(" failed " + directory.resolve("missing.ppm")
+            + " ("));
+    assertTrue(out.toString().contains(" failed " + broken + " ("));
+    assertTrue(Files.exists(directory.resolve("check_out.ppm")));
+    assertFalse(Files.exists(directory.resolve("missing_out.ppm")));
+    assertTrue(out.toString().contains("Processed 3 files: 1 succeeded, 2 failed."));
+  }
+
+  @Test
+  public void testCommandErrorsFailTheFile() throws IOException {
+    BatchController batch = new BatchController(Arrays.asList("load image {input}",
+            "apply nothing", "exit", "apply nothing"), Collections.singletonList(
+                    directory.resolve("check.ppm")), 1, out);
+    batch.start();
+
+    assertEquals(1, batch.getFailed());
+    assertTrue(out.toString().contains(": apply nothing: Cannot apply that modifier!"));
+  }
+
+  @Test
+  public void testParallelismCannotBeSet() throws IOException {
+    int parallelism = TileExecutor.getShared().getParallelism();
+    BatchController batch = new BatchController(Arrays.asList("load image {input}",
+            "set parallelism " + (parallelism + 1), "apply sepia"), Collections.singletonList(
+                    directory.resolve("check.ppm")), out);
+    batch.start();
+
+    assertEquals(1, batch.getFailed());
+    assertTrue(out.toString().contains(": set parallelism " + (parallelism + 1)
+            + ": Parallelism cannot be changed while other images are being processed."));
+    assertEquals(parallelism, TileExecutor.getShared().getParallelism());
+  }
+}
@@ -0,0 +1,151 @@
+package controller;
+
+import controller.ScriptPlan.Command;
+import controller.ScriptPlan.Kind;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests the ScriptCompiler, which checks and optimizes a whole script before it runs.
+ */
+public class ScriptCompilerTest {
+
+  private static List<String> lines(ScriptPlan plan) {
+    List<String> lines = new ArrayList<>();
+    for (Command command : plan.getCommands()) {
+      lines.add(command.toString());
+    }
+    return lines;
+  }
+
+  private static String errors(String... script) {
+    try {
+      ScriptCompiler.compile(Arrays.asList(script));
+      fail("The script compiled.");
+      return null;
+    } catch (IllegalArgumentException e) {
+      return e.getMessage();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullScript() {
+    ScriptCompiler.compile(null);
+  }
+
+  @Test
+  public void testParsesCommands() {
+    ScriptPlan plan = ScriptCompiler.compile(Arrays.asList("load image res/flower.ppm", "",
+            "  apply   sharpen ", "set encoding binary", "export out/flower.png", "exit",
+            "apply nothing"));
+    List<Command> commands = plan.getCommands();
+    assertEquals(Arrays.asList(Kind.LOAD_IMAGE, Kind.APPLY, Kind.SET, Kind.EXPORT, Kind.EXIT),
+            Arrays.asList(commands.get(0).getKind(), commands.get(1).getKind(),
+                    commands.get(2).getKind(), commands.get(3).getKind(),
+                    commands.get(4).getKind()));
+    assertArrayEquals(new String[]{"apply", "sharpen"}, commands.get(1).getArgs());
+    assertEquals(3, commands.get(1).getLine());
+    assertEquals(0, plan.getDropped());
+  }
+
+  @Test
+  public void testReportsEveryError() {
+    assertEquals("The script has errors:" + System.lineSeparator()
+            + "Line 1: Cannot apply that modifier!" + System.lineSeparator()
+            + "Line 2: File res/missing.ppm not found!" + System.lineSeparator()
+            + "Line 3: We cannot read that file type." + System.lineSeparator()
+            + "Line 5: Mosaic requires an integer input." + System.lineSeparator()
+            + "Line 6: Downscale requires integers for width and height."
+            + System.lineSeparator() + "Line 7: Image at 2 does not exist."
+            + System.lineSeparator() + "Line 8: Must enter integer after toggle."
+            + System.lineSeparator() + "Line 9: Enter valid image file type."
+            + System.lineSeparator() + "Line 10: Invalid file extension on out/flower."
+            + System.lineSeparator() + "Line 11: Encoding must be followed by 'plain', "
+            + "'binary' or 'binary16'." + System.lineSeparator()
+            + "Line 12: Unable to perform that operation!" + System.lineSeparator()
+            + "Line 13: Invalid number of arguments.",
+            errors("apply nothing", "load image res/missing.ppm", "load image res/script1.txt",
+                    "load image res/flower.ppm", "apply mosaic", "apply downscale 10",
+                    "set 2", "toggle one", "export out/flower.bmp", "export out/flower",
+                    "set encoding ascii", "rotate image", "load"));
+  }
+
+  @Test
+  public void testLayersCountedAsLoaded() {
+    assertEquals("The script has errors:" + System.lineSeparator()
+            + "Line 1: No image to apply filter to." + System.lineSeparator()
+            + "Line 2: No image to export.", errors("apply blur", "export out/none.png"));
+    ScriptCompiler.compile(Arrays.asList("load image res/flower.ppm",
+            "load image res/flower_sepia.ppm", "set 2", "toggle 1", "save image 2 out/a.png"));
+  }
+
+  @Test
+  public void testLoadsFilesWrittenEarlier() {
+    ScriptCompiler.compile(Arrays.asList("load image res/flower.ppm", "export out/new.png",
+            "load image out/new.png", "save state out/layers", "load state out/layers.txt"));
+    assertEquals("The script has errors:" + System.lineSeparator()
+            + "Line 1: File out/new.png not found!", errors("load image out/new.png",
+            "load image res/flower.ppm", "export out/new.png"));
+  }
+
+  @Test
+  public void testDropsModifiersThatAreNeverSeen() {
+    ScriptPlan plan = ScriptCompiler.compile(Arrays.asList("load image res/flower.ppm",
+            "load image res/flower_sepia.ppm", "apply blur", "set 2", "apply sharpen",
+            "save image 1 out/blurred.png", "apply sepia", "set 1", "apply mosaic 10"));
+    assertEquals(Arrays.asList("load image res/flower.ppm", "load image res/flower_sepia.ppm",
+            "apply blur", "set 2", "save image 1 out/blurred.png", "set 1"), lines(plan));
+    assertEquals(3, plan.getDropped());
+  }
+
+  @Test
+  public void testKeepsModifiersBeforeExportsAndDownscale() {
+    List<String> script = Arrays.asList("load image res/flower.ppm",
+            "load image res/flower_sepia.ppm", "apply blur", "set 2", "apply sharpen",
+            "apply downscale 10 10", "apply sepia", "save image 2 out/small.png");
+    assertEquals(script, lines(ScriptCompiler.compile(script)));
+    script = Arrays.asList("load image res/flower.ppm", "apply blur", "export out/blur.png",
+            "apply sepia", "save state out/sepia");
+    assertEquals(script, lines(ScriptCompiler.compile(script)));
+  }
+
+  @Test
+  public void testNothingDroppedAfterUndoOrLoadState() {
+    List<String> script = Arrays.asList("load image res/flower.ppm", "apply blur", "undo",
+            "apply sepia");
+    assertEquals(script, lines(ScriptCompiler.compile(script)));
+    script = Arrays.asList("load image res/flower.ppm", "save state out/flowers",
+            "load state out/flowers.txt", "apply blur", "set encoding binary",
+            "apply sepia");
+    assertEquals(script, lines(ScriptCompiler.compile(script)));
+  }
+
+  @Test
+  public void testFindsUndo() {
+    assertFalse(ScriptCompiler.compile(Arrays.asList("load image res/flower.ppm",
+            "set history off", "apply blur")).hasUndo());
+    assertTrue(ScriptCompiler.compile(Arrays.asList("load image res/flower.ppm",
+            "apply blur", "redo")).hasUndo());
+    assertEquals("The script has errors:" + System.lineSeparator()
+            + "Line 1: History must be followed by 'on' or 'off'.", errors("set history"));
+  }
+
+  @Test
+  public void testMergesTransformsAcrossFileSettings() {
+    ScriptPlan plan = ScriptCompiler.compile(Arrays.asList("load image res/flower.ppm",
+            "apply sepia", "set encoding binary", "set state text", "apply greyscale",
+            "set clamp end", "apply sepia", "export out/flower.ppm"));
+    assertEquals(Arrays.asList("load image res/flower.ppm", "apply sepia", "apply greyscale",
+            "set encoding binary", "set state text", "set clamp end", "apply sepia",
+            "export out/flower.ppm"), lines(plan));
+  }
+}
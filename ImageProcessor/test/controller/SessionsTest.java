@@ -0,0 +1,47 @@
+package controller;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the Sessions class, which provides the threads concurrent controllers run on.
+ */
+public class SessionsTest {
+
+  @Test
+  public void testSessionExecutorRunsEveryTaskOnItsOwnThread() throws Exception {
+    ExecutorService sessions = Sessions.newSessionExecutor();
+    try {
+      Thread caller = Thread.currentThread();
+      Thread first = sessions.submit(Thread::currentThread).get();
+      assertNotSame(caller, first);
+      assertTrue(first.isDaemon() || Sessions.hasVirtualThreads());
+    } finally {
+      sessions.shutdown();
+    }
+  }
+
+  @Test
+  public void testSessionLimitCoversComputePool() {
+    assertTrue(Sessions.getSessionLimit()
+            > ((ThreadPoolExecutor) Sessions.getComputePool()).getMaximumPoolSize());
+  }
+
+  @Test
+  public void testComputePoolIsSharedAndBounded() throws ExecutionException,
+          InterruptedException {
+    assertSame(Sessions.getComputePool(), Sessions.getComputePool());
+    assertEquals(Runtime.getRuntime().availableProcessors(),
+            ((ThreadPoolExecutor) Sessions.getComputePool()).getMaximumPoolSize());
+    assertTrue(Sessions.getComputePool().submit(() -> Thread.currentThread().getName()).get()
+            .startsWith("compute-"));
+  }
+}
@@ -2,7 +2,12 @@ package controller;
 
 import filecontroller.FileController;
 import filecontroller.IFileController;
+import filter.Blur;
+import filter.DownScale;
+import filter.Greyscale;
+import filter.Sepia;
 import imagemodel.IImage;
+import layermodel.BlendMode;
 import layermodel.ILayer;
 import layermodel.Layer;
 import org.junit.Before;
@@ -12,11 +17,18 @@ import view.TextView;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * This class tests the Controller class and ensures that it is working as it supposed to in
@@ -58,6 +70,11 @@ public class TextControllerTest {
     new TextController(view, null);
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullFileController() {
+    new TextController(view, model, (IFileController) null);
+  }
+
   @Test
   public void testInvalidFirstWordInputted() throws IOException {
     input = "grow image 3 \nexit";
@@ -201,6 +218,282 @@ public class TextControllerTest {
             "Enter input: All unsaved changes will be lost.\n", this.ap.toString());
   }
 
+  @Test
+  public void testSetParallelismWithNotAnInteger() throws IOException {
+    input = "set parallelism a\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    assertEquals("", this.ap.toString());
+    textController.start();
+    assertEquals("Enter input: Must enter integer after parallelism.\n" +
+            "Enter input: All unsaved changes will be lost.\n", this.ap.toString());
+  }
+
+  @Test
+  public void testSetParallelismWithInvalidInteger() throws IOException {
+    input = "set parallelism 0\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    assertEquals("", this.ap.toString());
+    textController.start();
+    assertEquals("Enter input: Parallelism must be at least 1." + System.lineSeparator() +
+            "Enter input: All unsaved changes will be lost.\n", this.ap.toString());
+  }
+
+
+  @Test
+  public void testConsecutiveTransformsMatchSeparatePasses() throws IOException {
+    input = "apply sepia\napply greyscale\nset 1\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    textController.start();
+    IImage expected = fileController.readImage("res/flower.ppm");
+    expected.applyFilter(new Sepia());
+    expected.applyFilter(new Greyscale());
+    assertEquals(expected.toString(), model.getCurrent().toString());
+  }
+
+  @Test
+  public void testUndoStepsBackOneTransform() throws IOException {
+    input = "apply sepia\napply greyscale\nundo\nexit";
+    view = new TextView(new StringReader(input), ap);
+    textController = new TextController(view, model);
+    textController.start();
+    IImage expected = fileController.readImage("res/flower.ppm");
+    expected.applyFilter(new Sepia());
+    assertEquals(expected.toString(), model.getCurrent().toString());
+  }
+
+  @Test
+  public void testSetClampWithInvalidMode() throws IOException {
+    input = "set clamp sometimes\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    textController.start();
+    assertEquals("Enter input: Clamp must be followed by 'end' or 'each'.\n" +
+            "Enter input: All unsaved changes will be lost.\n", this.ap.toString());
+  }
+
+  @Test
+  public void testSetLazyWithInvalidMode() throws IOException {
+    input = "set lazy maybe\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    textController.start();
+    assertEquals("Enter input: Lazy must be followed by 'on' or 'off'.\n" +
+            "Enter input: All unsaved changes will be lost.\n", this.ap.toString());
+  }
+
+  @Test
+  public void testApplyMosaicWithInvalidEngine() throws IOException {
+    input = "apply mosaic 10 voronoi\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    textController.start();
+    assertEquals("Enter input: Mosaic engine must be 'grid' or 'jfa'.\n" +
+            "Enter input: All unsaved changes will be lost.\n", this.ap.toString());
+  }
+
+  @Test
+  public void testUndoRedo() throws IOException {
+    String original = model.getCurrent().toString();
+    input = "apply blur\nundo\nundo\nredo\nredo\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    textController.start();
+    assertEquals("Enter input: Enter input: Enter input: Nothing to undo."
+            + System.lineSeparator() + "Enter input: Enter input: Nothing to redo."
+            + System.lineSeparator() + "Enter input: All unsaved changes will be lost.\n",
+            this.ap.toString());
+    IImage expected = fileController.readImage("res/flower.ppm");
+    expected.applyFilter(new Blur());
+    assertEquals(expected.toString(), model.getCurrent().toString());
+    model.undo();
+    assertEquals(original, model.getCurrent().toString());
+  }
+
+  @Test
+  public void testRunCompiledPlan() throws IOException {
+    Path out = Files.createTempDirectory("plan").resolve("out");
+    ScriptPlan plan = ScriptCompiler.compile(Arrays.asList("load image res/flower.ppm",
+            "apply sepia", "set encoding binary", "apply greyscale", "apply blur",
+            "save image current " + out + ".ppm", "apply sharpen", "exit", "apply nothing"));
+    model = new Layer();
+    textController = new TextController(new TextView(new StringReader(""), ap), model);
+    textController.run(plan);
+
+    //the sharpen is dropped as nothing saves it afterwards
+    IImage expected = fileController.readImage("res/flower.ppm");
+    expected.applyFilter(new Sepia());
+    expected.applyFilter(new Greyscale());
+    expected.applyFilter(new Blur());
+    assertEquals(expected.toString(), model.getCurrent().toString());
+    assertEquals(expected.toString(), fileController.readImage(out + ".ppm").toString());
+    assertEquals("All unsaved changes will be lost.\n", ap.toString());
+    Files.delete(Paths.get(out + ".ppm"));
+    Files.delete(out.getParent());
+  }
+
+  @Test
+  public void testPlanWithoutUndoRecordsNothing() throws IOException {
+    model = new Layer();
+    textController = new TextController(new TextView(new StringReader(""), ap), model);
+    textController.run(ScriptCompiler.compile(Arrays.asList("load image res/flower.ppm",
+            "apply blur", "toggle 1")));
+    try {
+      model.undo();
+      fail("The plan recorded its changes.");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Nothing to undo.", e.getMessage());
+    }
+
+    model = new Layer();
+    textController = new TextController(new TextView(new StringReader(""), ap), model);
+    textController.run(ScriptCompiler.compile(Arrays.asList("load image res/flower.ppm",
+            "apply blur", "undo")));
+    assertEquals(fileController.readImage("res/flower.ppm").toString(),
+            model.getCurrent().toString());
+  }
+
+  @Test
+  public void testSetHistory() throws IOException {
+    input = "set history off\napply blur\nundo\nset history on\napply sepia\nundo\n"
+            + "set history\nexit";
+    view = new TextView(new StringReader(input), ap);
+    new TextController(view, model).start();
+    assertEquals("Enter input: Enter input: Enter input: Nothing to undo."
+            + System.lineSeparator() + "Enter input: Enter input: Enter input: Enter input: "
+            + "History must be followed by 'on' or 'off'.\nEnter input: "
+            + "All unsaved changes will be lost.\n", ap.toString());
+    IImage expected = fileController.readImage("res/flower.ppm");
+    expected.applyFilter(new Blur());
+    assertEquals(expected.toString(), model.getCurrent().toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRunNullPlan() throws IOException {
+    new TextController(new TextView(new StringReader(""), ap), model).run(null);
+  }
+
+  @Test
+  public void testModifiersRunOnComputeExecutor() throws IOException {
+    List<String> threads = new ArrayList<>();
+    ExecutorService compute = Executors.newSingleThreadExecutor(task ->
+            new Thread(task, "test-compute"));
+    try {
+      input = "apply sepia\napply blur\napply downscale 50 40\napply downscale 60 60\nexit";
+      rd = new StringReader(input);
+      view = new TextView(rd, ap);
+      textController = new TextController(view, model, task -> compute.execute(() -> {
+        threads.add(Thread.currentThread().getName());
+        task.run();
+      }));
+      textController.start();
+    } finally {
+      compute.shutdown();
+    }
+    assertEquals(Arrays.asList("test-compute", "test-compute", "test-compute", "test-compute"),
+            threads);
+    IImage expected = fileController.readImage("res/flower.ppm");
+    expected.applyFilter(new Sepia());
+    expected.applyFilter(new Blur());
+    expected.applyFilter(new DownScale(50, 40));
+    assertEquals(expected.toString(), model.getCurrent().toString());
+    //errors thrown on the compute executor are reported like any other
+    assertEquals("Enter input: Enter input: Enter input: Enter input: \"Width and height must be "
+            + "less than current width and height." + System.lineSeparator()
+            + "Enter input: All unsaved changes will be lost.\n", this.ap.toString());
+  }
+
+  @Test
+  public void testLazySaveRunsOnComputeExecutor() throws IOException {
+    List<String> threads = new ArrayList<>();
+    ExecutorService compute = Executors.newSingleThreadExecutor(task ->
+            new Thread(task, "test-compute"));
+    Path out = Files.createTempDirectory("lazy");
+    try {
+      input = "set lazy on\napply sepia\nsave image current " + out.resolve("a.ppm")
+              + "\nsave image 1 " + out.resolve("b.ppm") + "\napply greyscale\nsave state "
+              + out.resolve("c") + "\nexit";
+      view = new TextView(new StringReader(input), ap);
+      textController = new TextController(view, model, task -> compute.execute(() -> {
+        threads.add(Thread.currentThread().getName());
+        task.run();
+      }));
+      textController.start();
+    } finally {
+      compute.shutdown();
+    }
+    //the applies only queue the transforms, which are run by the saves on the compute thread
+    assertEquals(Collections.nCopies(5, "test-compute"), threads);
+    IImage expected = fileController.readImage("res/flower.ppm");
+    expected.applyFilter(new Sepia());
+    assertEquals(expected.toString(),
+            fileController.readImage(out.resolve("a.ppm").toString()).toString());
+    assertEquals(expected.toString(),
+            fileController.readImage(out.resolve("b.ppm").toString()).toString());
+    expected.applyFilter(new Greyscale());
+    assertEquals(expected.toString(), fileController.readState(out.resolve("c.txt").toString())
+            .getCurrent().toString());
+    Files.delete(out.resolve("a.ppm"));
+    Files.delete(out.resolve("b.ppm"));
+    Files.delete(out.resolve("c.txt"));
+    Files.delete(out);
+  }
+
+  @Test
+  public void testSetBlend() throws IOException {
+    input = "set blend multiply 30\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    textController.start();
+    assertEquals(BlendMode.MULTIPLY, model.getBlendMode(1));
+    assertEquals(30, model.getOpacity(1));
+  }
+
+  @Test
+  public void testSetBlendWithInvalidMode() throws IOException {
+    input = "set blend overlay\nset blend screen 101\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    textController.start();
+    assertEquals("Enter input: Blend must be followed by 'average', 'normal', 'multiply', "
+            + "'screen' or 'additive'.\n"
+            + "Enter input: Opacity must be between 0 and 100." + System.lineSeparator()
+            + "Enter input: All unsaved changes will be lost.\n", this.ap.toString());
+    assertEquals(BlendMode.AVERAGE, model.getBlendMode(1));
+  }
+
+  @Test
+  public void testSetEncodingWithInvalidMode() throws IOException {
+    input = "set encoding ascii\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    textController.start();
+    assertEquals("Enter input: Encoding must be followed by 'plain', 'binary' or 'binary16'.\n"
+            + "Enter input: All unsaved changes will be lost.\n", this.ap.toString());
+  }
+
+  @Test
+  public void testSetStateWithInvalidFormat() throws IOException {
+    input = "set state zip\nexit";
+    rd = new StringReader(input);
+    view = new TextView(rd, ap);
+    textController = new TextController(view, model);
+    textController.start();
+    assertEquals("Enter input: State must be followed by 'text', 'binary' or 'compressed'.\n"
+            + "Enter input: All unsaved changes will be lost.\n", this.ap.toString());
+  }
 
   @Test
   public void testInvalidSecondWordForSave() throws IOException {
@@ -1,12 +1,28 @@
 package filecontroller;
 
+import imagemodel.DeferredImage;
+import imagemodel.IImage;
 import imagemodel.Image;
+import imagemodel.RasterImage;
+import layermodel.BlendMode;
+import layermodel.ILayer;
+import layermodel.Layer;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * This class allows for the testing of the FileController which reads and parses, and writes image
@@ -30,6 +46,241 @@ public class FileTextControllerTest {
     ut.readState("loud.doc");
   }
 
+  @Test
+  public void testReadPPM() throws IOException {
+    IImage img = ut.readImage("res/check.ppm");
+    assertEquals(Arrays.asList(3, 3, 255), img.getProps());
+    assertEquals(Arrays.asList(255, 255, 255), img.getPixel(1, 0).getColor());
+    assertEquals(Arrays.asList(0, 0, 0), img.getPixel(2, 2).getColor());
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testReadPPMWithWrongMagicNumber() throws IOException {
+    File ppm = File.createTempFile("notplain", ".ppm");
+    ppm.deleteOnExit();
+    ut.writeTextOrPPM(ppm.getPath().substring(0, ppm.getPath().length() - 4), "ppm",
+            "P7\n1 1\n255\n0 0 0\n");
+    ut.readImage(ppm.getPath());
+  }
+
+  @Test
+  public void testReadStateKeepsVisibility() throws IOException {
+    IImage img = ut.readImage("res/check.ppm");
+    ILayer layer = new Layer(img.getProps());
+    layer.addLayer(img);
+    layer.addLayer(ut.readImage("res/sepia3x3.ppm"));
+    layer.toggleVisibility(1);
+    File state = File.createTempFile("state", ".txt");
+    state.deleteOnExit();
+    String name = state.getPath().substring(0, state.getPath().length() - 4);
+    ut.writeTextOrPPM(name, "txt", layer.toString());
+
+    ILayer read = ut.readState(state.getPath());
+    assertEquals(layer.toString(), read.toString());
+    assertEquals(1, read.getVisible().size());
+  }
+
+  private String tempName(String extension) throws IOException {
+    File file = File.createTempFile("image", "." + extension);
+    file.deleteOnExit();
+    return file.getPath().substring(0, file.getPath().length() - extension.length() - 1);
+  }
+
+  @Test
+  public void testWriteAndReadEveryEncoding() throws IOException {
+    IImage img = ut.readImage("res/road.ppm");
+    for (PnmEncoding encoding : PnmEncoding.values()) {
+      ut.setEncoding(encoding);
+      String name = tempName("ppm");
+      ut.writeImage(name, "ppm", img);
+      assertEquals(img.toString(), ut.readImage(name + ".ppm").toString());
+    }
+  }
+
+  @Test
+  public void testPgmEncodingsAgree() throws IOException {
+    IImage img = ut.readImage("res/road.ppm");
+    String expected = null;
+    for (PnmEncoding encoding : PnmEncoding.values()) {
+      ut.setEncoding(encoding);
+      String name = tempName("pgm");
+      ut.writeImage(name, "pgm", img);
+      String read = ut.readImage(name + ".pgm").toString();
+      if (expected == null) {
+        expected = read;
+      }
+      assertEquals(expected, read);
+    }
+  }
+
+  @Test
+  public void testReadLargeBinaryFile() throws IOException {
+    int[] raster = new int[800 * 600];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = (int) (i * 2654435761L % (1 << 24));
+    }
+    IImage img = new RasterImage(raster, 800, 600, 255);
+    ut.setEncoding(PnmEncoding.BINARY);
+    String name = tempName("ppm");
+    ut.writeImage(name, "ppm", img);
+    assertArrayEquals(raster, ut.readImage(name + ".ppm").getRaster());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullEncoding() {
+    ut.setEncoding(null);
+  }
+
+  private ILayer sampleLayer() throws IOException {
+    IImage img = ut.readImage("res/road.ppm");
+    ILayer layer = new Layer(img.getProps());
+    layer.addLayer(img);
+    layer.addLayer(ut.readImage("res/road_sepia.ppm"));
+    layer.addLayer(ut.readImage("res/road_blur.ppm"));
+    layer.toggleVisibility(2);
+    layer.setCurrent(3);
+    return layer;
+  }
+
+  @Test
+  public void testWriteAndReadEveryStateFormat() throws IOException {
+    ILayer layer = sampleLayer();
+    for (StateFormat format : StateFormat.values()) {
+      ut.setStateFormat(format);
+      String name = tempName("state");
+      ut.writeState(name, layer);
+      String extension = format == StateFormat.TEXT ? ".txt" : ".state";
+      new File(name + extension).deleteOnExit();
+      ILayer read = ut.readState(name + extension);
+      assertEquals(layer.toString(), read.toString());
+      if (format != StateFormat.TEXT) {
+        //only the binary formats keep which layer is current
+        assertEquals(layer.getProps(), read.getProps());
+      }
+    }
+  }
+
+  @Test
+  public void testCompressedStateIsSmaller() throws IOException {
+    ILayer layer = sampleLayer();
+    String name = tempName("state");
+    ut.setStateFormat(StateFormat.BINARY);
+    ut.writeState(name + "raw", layer);
+    ut.setStateFormat(StateFormat.COMPRESSED);
+    ut.writeState(name + "deflated", layer);
+    File raw = new File(name + "raw.state");
+    File deflated = new File(name + "deflated.state");
+    raw.deleteOnExit();
+    deflated.deleteOnExit();
+    assertEquals(32 + 3 * 15 + 3 * (3 * 120 * 80), raw.length());
+    assertTrue(deflated.length() < raw.length());
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testReadStateWithUnknownVersion() throws IOException {
+    String name = tempName("state");
+    try (FileOutputStream out = new FileOutputStream(name + ".state")) {
+      out.write(new byte[]{'I', 'P', 'L', 'S', 0, 0, 0, 99});
+    }
+    new File(name + ".state").deleteOnExit();
+    ut.readState(name + ".state");
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testReadTruncatedState() throws IOException {
+    ut.setStateFormat(StateFormat.COMPRESSED);
+    String name = tempName("state");
+    ut.writeState(name, sampleLayer());
+    File state = new File(name + ".state");
+    state.deleteOnExit();
+    byte[] bytes = Files.readAllBytes(state.toPath());
+    try (FileOutputStream out = new FileOutputStream(state)) {
+      out.write(bytes, 0, bytes.length / 2);
+    }
+    ut.readState(state.getPath());
+  }
+
+  @Test
+  public void testStateLayersAreDecodedWhenNeeded() throws IOException {
+    ILayer layer = sampleLayer();
+    ut.setStateFormat(StateFormat.COMPRESSED);
+    String name = tempName("state");
+    ut.writeState(name, layer);
+    new File(name + ".state").deleteOnExit();
+
+    ILayer read = ut.readState(name + ".state");
+    assertFalse(((DeferredImage) read.getLayer(1)).isDecoded());
+    assertEquals(layer.getCurrentVisible().toString(), read.getCurrentVisible().toString());
+    assertTrue(((DeferredImage) read.getLayer(3)).isDecoded());
+    assertFalse(((DeferredImage) read.getLayer(1)).isDecoded());
+    assertFalse(((DeferredImage) read.getLayer(2)).isDecoded());
+    assertEquals(layer.blend().toString(), read.blend().toString());
+    assertFalse(((DeferredImage) read.getLayer(2)).isDecoded());
+  }
+
+  @Test
+  public void testLoadedStateHasNoHistory() throws IOException {
+    ILayer layer = sampleLayer();
+    for (StateFormat format : StateFormat.values()) {
+      ut.setStateFormat(format);
+      String name = tempName("state");
+      ut.writeState(name, layer);
+      String extension = format == StateFormat.TEXT ? ".txt" : ".state";
+      new File(name + extension).deleteOnExit();
+      ILayer read = ut.readState(name + extension);
+      try {
+        read.undo();
+        fail("Loading " + format + " state could be undone.");
+      } catch (IllegalArgumentException e) {
+        assertEquals("Nothing to undo.", e.getMessage());
+      }
+      assertFalse(read.isVisible(2));
+      assertEquals(layer.toString(), read.toString());
+    }
+  }
+
+  @Test
+  public void testSaveOverLoadedState() throws IOException {
+    ILayer layer = sampleLayer();
+    ut.setStateFormat(StateFormat.BINARY);
+    String name = tempName("state");
+    ut.writeState(name, layer);
+    new File(name + ".state").deleteOnExit();
+
+    //the layers read are still mapped from the file that is saved over
+    ILayer read = ut.readState(name + ".state");
+    assertFalse(((DeferredImage) read.getLayer(1)).isDecoded());
+    ut.writeState(name, read);
+    assertEquals(layer.blend().toString(), read.blend().toString());
+    assertEquals(layer.blend().toString(), ut.readState(name + ".state").blend().toString());
+    File state = new File(name + ".state");
+    assertEquals(0, state.getParentFile().listFiles((dir, file) ->
+            file.startsWith(state.getName()) && file.endsWith(".tmp")).length);
+  }
+
+  @Test
+  public void testBlendModesAreSaved() throws IOException {
+    ILayer layer = sampleLayer();
+    layer.setBlendMode(2, BlendMode.MULTIPLY, 40);
+    layer.setBlendMode(3, BlendMode.SCREEN, 100);
+    ut.setStateFormat(StateFormat.COMPRESSED);
+    String name = tempName("state");
+    ut.writeState(name, layer);
+    new File(name + ".state").deleteOnExit();
+
+    ILayer read = ut.readState(name + ".state");
+    assertEquals(BlendMode.AVERAGE, read.getBlendMode(1));
+    assertEquals(BlendMode.MULTIPLY, read.getBlendMode(2));
+    assertEquals(40, read.getOpacity(2));
+    assertEquals(BlendMode.SCREEN, read.getBlendMode(3));
+    assertEquals(layer.blend().toString(), read.blend().toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullStateFormat() {
+    ut.setStateFormat(null);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testWriteImageWithUnknownExtension() throws IOException {
     ut.writeImage("cow", "doc",
@@ -0,0 +1,273 @@
+package filecontroller;
+
+import imagemodel.IImage;
+import imagemodel.RasterImage;
+import layermodel.ILayer;
+import layermodel.IROLayer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests the PipelinedFileController, which decodes and encodes images on stages of
+ * their own.
+ */
+public class PipelinedFileControllerTest {
+  Path directory;
+  RecordingController recorder;
+  PipelinedFileController ut;
+
+  /**
+   * A controller that reads and writes through a FileController, recording which files were read
+   * and failing the writes it is told to.
+   */
+  static class RecordingController implements IFileController {
+    final FileController files = new FileController();
+    final List<String> reads = new ArrayList<>();
+    final List<String> writes = new ArrayList<>();
+    String failWrite;
+    CountDownLatch gate;
+
+    @Override
+    public synchronized IImage readImage(String filename) throws IOException {
+      this.reads.add(filename);
+      return this.files.readImage(filename);
+    }
+
+    @Override
+    public ILayer readState(String filename) throws FileNotFoundException {
+      return this.files.readState(filename);
+    }
+
+    @Override
+    public void writeImage(String filename, String extension, IImage image) throws IOException {
+      if (filename.equals(this.failWrite)) {
+        throw new IOException("Cannot write " + filename);
+      }
+      if (this.gate != null) {
+        try {
+          this.gate.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      this.files.writeImage(filename, extension, image);
+      synchronized (this) {
+        this.writes.add(filename);
+      }
+    }
+
+    @Override
+    public void setEncoding(PnmEncoding encoding) {
+      this.files.setEncoding(encoding);
+    }
+
+    @Override
+    public void setStateFormat(StateFormat format) {
+      this.files.setStateFormat(format);
+    }
+
+    @Override
+    public void writeState(String filename, IROLayer layer) throws IOException {
+      this.files.writeState(filename, layer);
+    }
+
+    @Override
+    public void writeTextOrPPM(String filename, String extension, String contents)
+            throws IOException {
+      this.files.writeTextOrPPM(filename, extension, contents);
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("pipeline");
+    recorder = new RecordingController();
+    ut = new PipelinedFileController(recorder, 2);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (recorder.gate != null) {
+      recorder.gate.countDown();
+    }
+    ut.close();
+    for (File file : directory.toFile().listFiles()) {
+      file.delete();
+    }
+    directory.toFile().delete();
+  }
+
+  private IImage image(int width, int height) {
+    int[] raster = new int[width * height];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = i * 0x010203;
+    }
+    return new RasterImage(raster, width, height, 255);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullDelegate() {
+    new PipelinedFileController(null, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoCapacity() {
+    new PipelinedFileController(new FileController(), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullSharedDelegate() {
+    ut.withDelegate(null);
+  }
+
+  @Test
+  public void testPrefetchedImageIsReadOnce() throws IOException {
+    assertTrue(ut.prefetch("res/check.ppm"));
+    assertTrue(ut.prefetch("res/check.ppm"));
+    IImage image = ut.readImage("res/check.ppm");
+    assertEquals(new FileController().readImage("res/check.ppm").toString(), image.toString());
+
+    //a second read is not prefetched, so it reads the file again
+    ut.readImage("res/check.ppm");
+    assertEquals(2, recorder.reads.size());
+  }
+
+  @Test
+  public void testPrefetchSkippedWhenFull() throws IOException {
+    assertTrue(ut.prefetch("res/check.ppm"));
+    assertTrue(ut.prefetch("res/road.ppm"));
+    assertFalse(ut.prefetch("res/sepia3x3.ppm"));
+    ut.discard("res/road.ppm");
+    assertTrue(ut.prefetch("res/sepia3x3.ppm"));
+    ut.readImage("res/check.ppm");
+    ut.readImage("res/sepia3x3.ppm");
+    assertEquals(1, Collections.frequency(recorder.reads, "res/check.ppm"));
+    assertEquals(1, Collections.frequency(recorder.reads, "res/sepia3x3.ppm"));
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testPrefetchFailureThrownOnRead() throws IOException {
+    ut.prefetch("res/missing.ppm");
+    ut.readImage("res/missing.ppm");
+  }
+
+  @Test
+  public void testWritesAreEncodedByFlush() throws IOException {
+    IImage image = image(4, 3);
+    String first = directory.resolve("first").toString();
+    String second = directory.resolve("second").toString();
+    ut.writeImage(first, "ppm", image);
+    //changes made after writing are not part of the written image
+    image.setRegion(0, 0, 1, 1, new int[]{0xFFFFFF});
+    ut.writeImage(second, "png", image);
+    ut.flush();
+
+    assertArrayEquals(image(4, 3).getRaster(),
+            new FileController().readImage(first + ".ppm").getRaster());
+    assertArrayEquals(image.getRaster(),
+            new FileController().readImage(second + ".png").getRaster());
+    assertEquals(List.of(first, second), recorder.writes);
+  }
+
+  @Test
+  public void testFailedWriteReportedByFlush() throws IOException {
+    recorder.failWrite = directory.resolve("bad").toString();
+    ut.writeImage(recorder.failWrite, "ppm", image(2, 2));
+    ut.writeImage(directory.resolve("good").toString(), "ppm", image(2, 2));
+    try {
+      ut.flush();
+      fail("The failed write was not reported.");
+    } catch (IOException e) {
+      assertEquals("Cannot write " + recorder.failWrite, e.getMessage());
+    }
+    assertTrue(Files.exists(directory.resolve("good.ppm")));
+    //the failure is only reported once
+    ut.flush();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownExtensionRejectedStraightAway() throws IOException {
+    ut.writeImage(directory.resolve("image").toString(), "bmp", image(2, 2));
+  }
+
+  @Test
+  public void testReadWaitsForWrites() throws IOException {
+    IImage image = image(5, 5);
+    String name = directory.resolve("written").toString();
+    ut.writeImage(name, "ppm", image);
+    assertArrayEquals(image.getRaster(), ut.readImage(name + ".ppm").getRaster());
+  }
+
+  @Test
+  public void testSharedStagesKeepSeparateWrites() throws IOException {
+    PipelinedFileController other = ut.withDelegate(new FileController());
+    other.writeImage(directory.resolve("other").toString(), "ppm", image(2, 2));
+    other.flush();
+    assertTrue(Files.exists(directory.resolve("other.ppm")));
+    assertTrue(recorder.writes.isEmpty());
+
+    assertTrue(ut.prefetch("res/check.ppm"));
+    other.readImage("res/check.ppm");
+    assertEquals(List.of("res/check.ppm"), recorder.reads);
+  }
+
+  @Test
+  public void testPrefetchMatchesNormalizedPath() throws IOException {
+    assertTrue(ut.prefetch("res/../res/check.ppm"));
+    ut.readImage("res/check.ppm");
+    assertEquals(List.of("res/../res/check.ppm"), recorder.reads);
+  }
+
+  @Test
+  public void testWriteDropsStalePrefetch() throws IOException {
+    String name = directory.resolve("stale").toString();
+    new FileController().writeImage(name, "ppm", image(3, 3));
+    assertTrue(ut.prefetch(name + ".ppm"));
+    IImage fresh = image(4, 2);
+    ut.writeImage(name, "ppm", fresh);
+    assertArrayEquals(fresh.getRaster(), ut.readImage(name + ".ppm").getRaster());
+  }
+
+  @Test
+  public void testReadWaitsForSameFileWrittenByOtherController() throws Exception {
+    recorder.gate = new CountDownLatch(1);
+    String name = directory.resolve("pending").toString();
+    IImage image = image(3, 2);
+    ut.writeImage(name, "ppm", image);
+    //the file is not decoded ahead of time while it is being written
+    assertFalse(ut.prefetch(name + ".ppm"));
+
+    PipelinedFileController other = ut.withDelegate(new FileController());
+    ExecutorService reader = Executors.newSingleThreadExecutor();
+    try {
+      Future<IImage> read = reader.submit(() -> other.readImage(name + ".ppm"));
+      Thread.sleep(100);
+      assertFalse(read.isDone());
+      recorder.gate.countDown();
+      assertArrayEquals(image.getRaster(), read.get().getRaster());
+    } finally {
+      reader.shutdown();
+    }
+    ut.flush();
+  }
+}
@@ -0,0 +1,123 @@
+package filecontroller;
+
+import imagemodel.IImage;
+import imagemodel.RasterImage;
+import imagemodel.TestImages;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class tests the PnmCodec which reads and writes binary P5 and P6 files.
+ */
+public class PnmCodecTest {
+  int width;
+  int height;
+  int[] raster;
+  IImage image;
+
+  @Before
+  public void setUp() {
+    width = 5;
+    height = 4;
+    raster = TestImages.pattern(width, height);
+    image = new RasterImage(raster, width, height, 255);
+  }
+
+  private byte[] encode(boolean grey, boolean wide) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PnmCodec.encode(out, image, grey, wide);
+    return out.toByteArray();
+  }
+
+  /**
+   * Decodes a whole file the way FileController does, by reading the magic number first.
+   */
+  private IImage decode(byte[] file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(file);
+    String magic = new String(file, 0, 2, StandardCharsets.US_ASCII);
+    buffer.position(2);
+    return PnmCodec.decode(buffer, magic.equals("P5"));
+  }
+
+  @Test
+  public void testRoundTrip8Bit() throws IOException {
+    byte[] file = encode(false, false);
+    assertEquals(11 + width * height * 3, file.length);
+    IImage read = decode(file);
+    assertEquals(Arrays.asList(width, height, 255), read.getProps());
+    assertArrayEquals(raster, read.getRaster());
+  }
+
+  @Test
+  public void testRoundTrip16Bit() throws IOException {
+    byte[] file = encode(false, true);
+    assertEquals(13 + width * height * 6, file.length);
+    IImage read = decode(file);
+    assertEquals(Arrays.asList(width, height, 255), read.getProps());
+    assertArrayEquals(raster, read.getRaster());
+  }
+
+  @Test
+  public void testGreyRoundTrip() throws IOException {
+    IImage read = decode(encode(true, false));
+    int[] readRaster = read.getRaster();
+    for (int i = 0; i < raster.length; i++) {
+      int rgb = raster[i];
+      int luma = (int) (((rgb >> 16) & 0xFF) * 0.2126 + ((rgb >> 8) & 0xFF) * 0.7152
+              + (rgb & 0xFF) * 0.0722);
+      assertEquals(RasterImage.pack(luma, luma, luma), readRaster[i]);
+    }
+    assertArrayEquals(readRaster, decode(encode(true, true)).getRaster());
+  }
+
+  @Test
+  public void testDepthDoesNotClampSamples() throws IOException {
+    int[] white = {RasterImage.pack(255, 255, 255), RasterImage.pack(255, 0, 191)};
+    image = new RasterImage(white, 2, 1, 191);
+    for (boolean wide : new boolean[]{false, true}) {
+      IImage read = decode(encode(false, wide));
+      assertEquals(Arrays.asList(2, 1, 255), read.getProps());
+      assertArrayEquals(white, read.getRaster());
+    }
+  }
+
+  @Test
+  public void testHeaderWithComments() throws IOException {
+    byte[] header = "P6 # binary\n# size next\n2 1\n255\n".getBytes(StandardCharsets.US_ASCII);
+    byte[] file = Arrays.copyOf(header, header.length + 6);
+    file[header.length] = (byte) 200;
+    file[header.length + 5] = (byte) 7;
+    IImage read = decode(file);
+    assertArrayEquals(new int[]{RasterImage.pack(200, 0, 0), RasterImage.pack(0, 0, 7)},
+            read.getRaster());
+  }
+
+  @Test
+  public void testScales16BitWithSmallerMaximum() throws IOException {
+    byte[] header = "P5\n1 1\n1023\n".getBytes(StandardCharsets.US_ASCII);
+    byte[] file = Arrays.copyOf(header, header.length + 2);
+    file[header.length] = (byte) 0x03;
+    file[header.length + 1] = (byte) 0xFF;
+    assertEquals(RasterImage.pack(255, 255, 255), decode(file).getRaster()[0]);
+  }
+
+  @Test(expected = IOException.class)
+  public void testTooFewSamples() throws IOException {
+    byte[] file = encode(false, false);
+    decode(Arrays.copyOf(file, file.length - 1));
+  }
+
+  @Test(expected = IOException.class)
+  public void testMaximumValueTooLarge() throws IOException {
+    decode("P6\n1 1\n65536\n".getBytes(StandardCharsets.US_ASCII));
+  }
+}
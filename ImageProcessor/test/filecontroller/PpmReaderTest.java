@@ -0,0 +1,70 @@
+package filecontroller;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class tests the PpmReader tokenizer used to read plain PPM files and layer states.
+ */
+public class PpmReaderTest {
+
+  private PpmReader reader(String contents) {
+    return new PpmReader(new ByteArrayInputStream(contents.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  @Test
+  public void testReadsTokensAndIntegers() throws IOException {
+    PpmReader reader = reader("P3\n3 2\n255\n0 12  255\r\n\t7");
+    assertEquals("P3", reader.next());
+    assertEquals(3, reader.nextInt());
+    assertEquals(2, reader.nextInt());
+    assertEquals(255, reader.nextInt());
+    assertEquals(0, reader.nextInt());
+    assertEquals(12, reader.nextInt());
+    assertEquals(255, reader.nextInt());
+    assertEquals(7, reader.nextInt());
+  }
+
+  @Test
+  public void testSkipsComments() throws IOException {
+    PpmReader reader = reader("# made by a camera\nP3#magic\n4 # width\n#\n# height next\n5\n");
+    assertEquals("P3", reader.next());
+    assertEquals(4, reader.nextInt());
+    assertEquals(5, reader.nextInt());
+  }
+
+  @Test
+  public void testReadsAcrossBufferBoundaries() throws IOException {
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      contents.append(i % 256).append(i % 7 == 0 ? "\n" : " ");
+    }
+    PpmReader reader = reader(contents.toString());
+    for (int i = 0; i < 100000; i++) {
+      assertEquals(i % 256, reader.nextInt());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testNotAnInteger() throws IOException {
+    reader("12a").nextInt();
+  }
+
+  @Test(expected = IOException.class)
+  public void testNegativeInteger() throws IOException {
+    reader("-1").nextInt();
+  }
+
+  @Test(expected = EOFException.class)
+  public void testEndOfFile() throws IOException {
+    PpmReader reader = reader("1 # trailing comment");
+    reader.nextInt();
+    reader.nextInt();
+  }
+}
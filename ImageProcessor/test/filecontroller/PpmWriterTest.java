@@ -0,0 +1,55 @@
+package filecontroller;
+
+import imagemodel.IImage;
+import imagemodel.IPixel;
+import imagemodel.Image;
+import imagemodel.Pixel;
+import imagemodel.RasterImage;
+import imagemodel.TestImages;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class tests the PpmWriter which streams plain P3 and P2 files.
+ */
+public class PpmWriterTest {
+
+  private String write(IImage image, boolean grey) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new PpmWriter(out).writePlain(image, grey);
+    return out.toString(StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  public void testMatchesToString() throws IOException {
+    IImage image = TestImages.image(300, 200);
+    assertEquals("P3\n" + image.toString(), write(image, false));
+  }
+
+  @Test
+  public void testMatchesToStringOfListImage() throws IOException {
+    List<IPixel> pixels = new ArrayList<>();
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 3; x++) {
+        pixels.add(new Pixel(x, y, x * 100, y * 9, 5));
+      }
+    }
+    IImage image = new Image(pixels, 3, 2, 255);
+    assertEquals("P3\n" + image.toString(), write(image, false));
+  }
+
+  @Test
+  public void testGrey() throws IOException {
+    IImage image = new RasterImage(new int[]{RasterImage.pack(255, 255, 255),
+        RasterImage.pack(0, 0, 0), RasterImage.pack(100, 100, 100), RasterImage.pack(0, 10, 0)},
+            2, 2, 255);
+    assertEquals("P2\n2\n2\n255\n254 0\n100 7\n", write(image, true));
+  }
+}
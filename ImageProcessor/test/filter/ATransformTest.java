@@ -21,4 +21,10 @@ public abstract class ATransformTest extends AModifierTest {
   public void testObjectCreatedIsAnATransform() {
     assertTrue(objectTransformCreator() instanceof ATransform);
   }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKernelThatIsNot3x3() {
+    new ATransform(new double[][]{{1, 0, 0, 0, 0}, {0, 1, 0, 0, 0}, {0, 0, 1, 0, 0},
+            {0, 0, 0, 1, 0}, {0, 0, 0, 0, 1}});
+  }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package filter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class tests the {@link CentroidGrid} used by {@link Mosaic}. Every lookup is checked
+ * against a scan over all of the centroids.
+ */
+public class CentroidGridTest {
+
+  private int bruteForce(int[] centroidX, int[] centroidY, int x, int y) {
+    int closest = -1;
+    long distance = Long.MAX_VALUE;
+    for (int c = 0; c < centroidX.length; c++) {
+      long dx = centroidX[c] - x;
+      long dy = centroidY[c] - y;
+      if (dx * dx + dy * dy < distance) {
+        distance = dx * dx + dy * dy;
+        closest = c;
+      }
+    }
+    return closest;
+  }
+
+  private void checkAgainstBruteForce(int numCentroids, int width, int height, long seed) {
+    Random random = new Random(seed);
+    int[] centroidX = new int[numCentroids];
+    int[] centroidY = new int[numCentroids];
+    for (int c = 0; c < numCentroids; c++) {
+      centroidX[c] = random.nextInt(width);
+      centroidY[c] = random.nextInt(height);
+    }
+    CentroidGrid grid = new CentroidGrid(centroidX, centroidY, width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        assertEquals(bruteForce(centroidX, centroidY, x, y), grid.nearest(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testSingleCentroid() {
+    checkAgainstBruteForce(1, 37, 23, 1);
+  }
+
+  @Test
+  public void testManyCentroids() {
+    checkAgainstBruteForce(100, 64, 48, 2);
+    checkAgainstBruteForce(1000, 97, 61, 3);
+  }
+
+  @Test
+  public void testMoreCentroidsThanCells() {
+    checkAgainstBruteForce(500, 20, 20, 4);
+  }
+
+  @Test
+  public void testThinImage() {
+    checkAgainstBruteForce(5, 200, 1, 5);
+    checkAgainstBruteForce(5, 1, 200, 6);
+  }
+
+  @Test
+  public void testTiesGoToFirstCentroid() {
+    CentroidGrid grid = new CentroidGrid(new int[]{4, 0}, new int[]{0, 0}, 5, 1);
+    assertEquals(0, grid.nearest(2, 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoCentroids() {
+    new CentroidGrid(new int[0], new int[0], 5, 5);
+  }
+}
@@ -0,0 +1,184 @@
+package filter;
+
+import imagemodel.RasterImage;
+import imagemodel.TestImages;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the {@link Convolution} engine behind {@link AFilter}. It checks the engine
+ * against a straightforward kernel loop that tests every tap against the image bounds.
+ */
+public class ConvolutionTest {
+  int width;
+  int height;
+  int[] raster;
+  double[][] sharpen;
+  double[][] blur;
+  double[][] gaussian;
+  double[][] box;
+  double[][] pyramid;
+
+  @Before
+  public void setUp() {
+    width = 7;
+    height = 5;
+    raster = TestImages.pattern(width, height);
+    sharpen = new double[][]{
+            {-1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0},
+            {-1.0 / 8.0, 1.0 / 4.0, 1.0 / 4.0, 1.0 / 4.0, -1.0 / 8.0},
+            {-1.0 / 8.0, 1.0 / 4.0, 1, 1.0 / 4.0, -1.0 / 8.0},
+            {-1.0 / 8.0, 1.0 / 4.0, 1.0 / 4.0, 1.0 / 4.0, -1.0 / 8.0},
+            {-1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0, -1.0 / 8.0}
+    };
+    blur = new double[][]{
+            {1.0 / 16.0, 1.0 / 8.0, 1.0 / 16.0},
+            {1.0 / 8.0, 1.0 / 4.0, 1.0 / 8.0},
+            {1.0 / 16.0, 1.0 / 8.0, 1.0 / 16.0}
+    };
+    gaussian = new double[15][15];
+    for (int i = 0; i < 15; i++) {
+      for (int j = 0; j < 15; j++) {
+        gaussian[i][j] = Math.exp(-((i - 7) * (i - 7) + (j - 7) * (j - 7)) / 18.0) / 56.0;
+      }
+    }
+    box = new double[3][3];
+    for (double[] row : box) {
+      Arrays.fill(row, 1.0 / 9.0);
+    }
+    double[] taps = {1, 2, 4, 2, 1};
+    pyramid = new double[5][5];
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 5; j++) {
+        pyramid[i][j] = taps[i] * taps[j] / 128.0;
+      }
+    }
+  }
+
+  private int[] reference(double[][] kernel) {
+    int[] out = new int[raster.length];
+    int key = (kernel.length - 1) / 2;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        double r = 0;
+        double g = 0;
+        double b = 0;
+        for (int i = -key; i <= key; i++) {
+          for (int j = -key; j <= key; j++) {
+            if (x + j >= 0 && y + i >= 0 && x + j < width && y + i < height) {
+              int rgb = raster[(y + i) * width + x + j];
+              r += ((rgb >> 16) & 0xFF) * kernel[i + key][j + key];
+              g += ((rgb >> 8) & 0xFF) * kernel[i + key][j + key];
+              b += (rgb & 0xFF) * kernel[i + key][j + key];
+            }
+          }
+        }
+        out[y * width + x] = RasterImage.pack((int) r, (int) g, (int) b);
+      }
+    }
+    return out;
+  }
+
+  @Test
+  public void testMatchesReference() {
+    assertArrayEquals(reference(sharpen), new Convolution(sharpen).apply(raster, width, height));
+  }
+
+  @Test
+  public void testRowRangeOnlyWritesThoseRows() {
+    int[] dst = new int[raster.length];
+    new Convolution(sharpen).apply(raster, dst, width, height, 1, 3);
+    int[] expected = reference(sharpen);
+    for (int i = 0; i < dst.length; i++) {
+      int row = i / width;
+      assertEquals(row >= 1 && row < 3 ? expected[i] : 0, dst[i]);
+    }
+  }
+
+  @Test
+  public void testConvolveAtCorner() {
+    assertEquals(reference(sharpen)[0], new Convolution(sharpen).convolveAt(raster, width,
+            height, 0, 0));
+  }
+
+  @Test
+  public void testBufferRowRangesMatchReference() {
+    IntBuffer view = IntBuffer.wrap(raster).asReadOnlyBuffer();
+    for (double[][] kernel : new double[][][]{sharpen, blur}) {
+      int[] dst = new int[raster.length];
+      Convolution convolution = new Convolution(kernel);
+      for (int row = 0; row < height; row++) {
+        convolution.apply(view, dst, width, height, row, row + 1);
+      }
+      assertArrayEquals(reference(kernel), dst);
+    }
+  }
+
+  @Test
+  public void testBufferConvolveAtMatchesReference() {
+    IntBuffer view = IntBuffer.wrap(raster).asReadOnlyBuffer();
+    int[] expected = reference(sharpen);
+    Convolution convolution = new Convolution(sharpen);
+    for (int i = 0; i < raster.length; i++) {
+      assertEquals(expected[i], convolution.convolveAt(view, width, height, i % width,
+              i / width));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testJaggedKernel() {
+    new Convolution(new double[][]{{1, 1, 1}, {1}, {1, 1, 1}});
+  }
+
+  @Test
+  public void testSeparableDetection() {
+    assertTrue(new Convolution(blur).isSeparable());
+    assertTrue(new Convolution(pyramid).isSeparable());
+    assertFalse(new Convolution(gaussian).isSeparable());
+    assertFalse(new Convolution(box).isSeparable());
+    assertFalse(new Convolution(sharpen).isSeparable());
+    assertFalse(new Convolution(new double[][]{{1}}).isSeparable());
+  }
+
+  @Test
+  public void testSeparableBlurMatchesReference() {
+    assertArrayEquals(reference(blur), new Convolution(blur).apply(raster, width, height));
+  }
+
+  @Test
+  public void testSeparableRowRangeUsesHalo() {
+    int[] dst = new int[raster.length];
+    new Convolution(blur).apply(raster, dst, width, height, 2, 4);
+    int[] expected = reference(blur);
+    for (int i = 2 * width; i < 4 * width; i++) {
+      assertEquals(expected[i], dst[i]);
+    }
+  }
+
+  @Test
+  public void testSeparablePyramidMatchesReference() {
+    assertArrayEquals(reference(pyramid), new Convolution(pyramid).apply(raster, width,
+            height));
+  }
+
+  @Test
+  public void testInexactRankOneKernelsMatchReference() {
+    //a flat 255 image is where a box blur computed in two passes truncates to 254
+    int[] flat = new int[raster.length];
+    Arrays.fill(flat, RasterImage.pack(255, 255, 255));
+    for (int[] src : new int[][]{raster, flat}) {
+      raster = src;
+      for (double[][] kernel : new double[][][]{box, gaussian}) {
+        assertArrayEquals(reference(kernel), new Convolution(kernel).apply(raster, width,
+                height));
+      }
+    }
+  }
+}
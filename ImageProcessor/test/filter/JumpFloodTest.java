@@ -0,0 +1,81 @@
+package filter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the {@link JumpFlood} labelling used by {@link Mosaic}. Jump flooding is
+ * approximate, so the labels are compared against a scan over all of the centroids with a small
+ * allowance for wrong labels.
+ */
+public class JumpFloodTest {
+
+  private long distance(int[] centroidX, int[] centroidY, int c, int x, int y) {
+    long dx = centroidX[c] - x;
+    long dy = centroidY[c] - y;
+    return dx * dx + dy * dy;
+  }
+
+  private void checkAgainstBruteForce(int numCentroids, int width, int height, long seed) {
+    Random random = new Random(seed);
+    int[] centroidX = new int[numCentroids];
+    int[] centroidY = new int[numCentroids];
+    for (int c = 0; c < numCentroids; c++) {
+      centroidX[c] = random.nextInt(width);
+      centroidY[c] = random.nextInt(height);
+    }
+    int[] labels = JumpFlood.label(centroidX, centroidY, width, height);
+    int wrong = 0;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        long best = Long.MAX_VALUE;
+        for (int c = 0; c < numCentroids; c++) {
+          best = Math.min(best, distance(centroidX, centroidY, c, x, y));
+        }
+        int label = labels[y * width + x];
+        assertTrue(label >= 0 && label < numCentroids);
+        if (distance(centroidX, centroidY, label, x, y) != best) {
+          wrong++;
+        }
+      }
+    }
+    assertTrue(wrong <= width * height / 100);
+  }
+
+  @Test
+  public void testSingleCentroidLabelsEverything() {
+    int[] labels = JumpFlood.label(new int[]{3}, new int[]{7}, 33, 20);
+    for (int label : labels) {
+      assertEquals(0, label);
+    }
+  }
+
+  @Test
+  public void testCentroidsLabelThemselves() {
+    int[] labels = JumpFlood.label(new int[]{0, 9, 4}, new int[]{0, 9, 5}, 10, 10);
+    assertEquals(0, labels[0]);
+    assertEquals(1, labels[99]);
+    assertEquals(2, labels[54]);
+  }
+
+  @Test
+  public void testCloseToExact() {
+    checkAgainstBruteForce(10, 64, 48, 1);
+    checkAgainstBruteForce(200, 97, 61, 2);
+    checkAgainstBruteForce(50, 150, 3, 3);
+  }
+
+  @Test
+  public void testOnePixel() {
+    assertEquals(0, JumpFlood.label(new int[]{0}, new int[]{0}, 1, 1)[0]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoCentroids() {
+    JumpFlood.label(new int[0], new int[0], 5, 5);
+  }
+}
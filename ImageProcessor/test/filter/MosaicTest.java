@@ -0,0 +1,121 @@
+package filter;
+
+import imagemodel.IImage;
+import imagemodel.IPixel;
+import imagemodel.Image;
+import imagemodel.RasterImage;
+import imagemodel.TestImages;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the Mosaic class. Its centroids are random, so these tests use the seeded
+ * constructor and check properties every mosaic has.
+ */
+public class MosaicTest {
+  int width;
+  int height;
+  int[] raster;
+
+  @Before
+  public void setUp() {
+    width = 40;
+    height = 30;
+    raster = TestImages.pattern(width, height);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSeeds() {
+    new Mosaic(0);
+  }
+
+  @Test
+  public void testSameRandomSeedSameMosaic() {
+    IImage image = new RasterImage(raster, width, height, 255);
+    assertArrayEquals(new Mosaic(25, 7L).modifyRaster(image),
+            new Mosaic(25, 7L).modifyRaster(image));
+  }
+
+  @Test
+  public void testNumberOfColorsAtMostSeeds() {
+    int[] mosaic = new Mosaic(25, 3L).modifyRaster(new RasterImage(raster, width, height, 255));
+    Set<Integer> colors = new HashSet<>();
+    for (int rgb : mosaic) {
+      colors.add(rgb);
+    }
+    assertTrue(colors.size() <= 25);
+    assertTrue(colors.size() > 1);
+  }
+
+  @Test
+  public void testUniformImageStaysUniform() {
+    int[] uniform = new int[width * height];
+    Arrays.fill(uniform, RasterImage.pack(10, 20, 30));
+    int[] mosaic = new Mosaic(50, 1L).modifyRaster(new RasterImage(uniform, width, height, 255));
+    assertArrayEquals(uniform, mosaic);
+  }
+
+  @Test
+  public void testMoreSeedsThanPixels() {
+    int[] mosaic = new Mosaic(width * height * 2, 5L)
+            .modifyRaster(new RasterImage(raster, width, height, 255));
+    assertArrayEquals(raster, mosaic);
+  }
+
+  @Test
+  public void testListModifyKeepsEveryPixel() {
+    IImage image = new Image(new RasterImage(raster, width, height, 255).getPixels(), width,
+            height, 255);
+    List<IPixel> mosaic = new Mosaic(25, 3L).modify(image);
+    assertEquals(width * height, mosaic.size());
+    for (int i = 0; i < mosaic.size(); i++) {
+      assertEquals(Arrays.asList(i % width, i / width), mosaic.get(i).getCoords());
+    }
+  }
+
+  @Test
+  public void testJumpFloodSameRandomSeedSameMosaic() {
+    IImage image = new RasterImage(raster, width, height, 255);
+    assertArrayEquals(new Mosaic(25, 7L, Mosaic.Engine.JUMP_FLOOD).modifyRaster(image),
+            new Mosaic(25, 7L, Mosaic.Engine.JUMP_FLOOD).modifyRaster(image));
+  }
+
+  @Test
+  public void testJumpFloodUniformImageStaysUniform() {
+    int[] uniform = new int[width * height];
+    Arrays.fill(uniform, RasterImage.pack(10, 20, 30));
+    int[] mosaic = new Mosaic(50, 1L, Mosaic.Engine.JUMP_FLOOD)
+            .modifyRaster(new RasterImage(uniform, width, height, 255));
+    assertArrayEquals(uniform, mosaic);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullEngine() {
+    new Mosaic(5, null);
+  }
+
+  @Test
+  public void testListModifyMatchesRaster() {
+    IImage image = new RasterImage(raster, width, height, 255);
+    int[] expected = new Mosaic(25, 11L).modifyRaster(image);
+    List<IPixel> mosaic = new Mosaic(25, 11L).modify(image);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(Arrays.asList((expected[i] >> 16) & 0xFF, (expected[i] >> 8) & 0xFF,
+              expected[i] & 0xFF), mosaic.get(i).getColor());
+    }
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("mosaic", new Mosaic(3).toString());
+  }
+}
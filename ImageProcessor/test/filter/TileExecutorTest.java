@@ -0,0 +1,95 @@
+package filter;
+
+import imagemodel.IImage;
+import imagemodel.RasterImage;
+import imagemodel.TestImages;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class tests the {@link TileExecutor}. These tests ensure that every row is processed
+ * exactly once and that modifiers produce the same raster in parallel as they do sequentially.
+ */
+public class TileExecutorTest {
+  int width;
+  int height;
+  int[] raster;
+
+  @Before
+  public void setUp() {
+    width = 320;
+    height = 240;
+    raster = TestImages.pattern(width, height);
+  }
+
+  @After
+  public void tearDown() {
+    TileExecutor.setParallelism(Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() {
+    new TileExecutor(0);
+  }
+
+  @Test
+  public void testEveryRowOnce() {
+    AtomicIntegerArray rows = new AtomicIntegerArray(height);
+    new TileExecutor(4).forEachBand(width, height, (fromRow, toRow) -> {
+      for (int y = fromRow; y < toRow; y++) {
+        rows.incrementAndGet(y);
+      }
+    });
+    for (int y = 0; y < height; y++) {
+      assertEquals(1, rows.get(y));
+    }
+  }
+
+  @Test
+  public void testSetParallelism() {
+    TileExecutor.setParallelism(3);
+    assertEquals(3, TileExecutor.getShared().getParallelism());
+  }
+
+  @Test
+  public void testShutDownExecutorRunsOnCaller() {
+    TileExecutor.setParallelism(2);
+    TileExecutor old = TileExecutor.getShared();
+    TileExecutor.setParallelism(3);
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    AtomicIntegerArray rows = new AtomicIntegerArray(height);
+    old.forEachBand(width, height, (fromRow, toRow) -> {
+      threads.add(Thread.currentThread());
+      for (int y = fromRow; y < toRow; y++) {
+        rows.incrementAndGet(y);
+      }
+    });
+    assertEquals(Collections.singleton(Thread.currentThread()), threads);
+    for (int y = 0; y < height; y++) {
+      assertEquals(1, rows.get(y));
+    }
+  }
+
+  @Test
+  public void testParallelMatchesSequential() {
+    IModifier[] modifiers = {new Blur(), new Sharpen(), new Sepia(), new Greyscale()};
+    for (IModifier modifier : modifiers) {
+      TileExecutor.setParallelism(1);
+      IImage sequential = new RasterImage(raster.clone(), width, height, 255);
+      sequential.applyFilter(modifier);
+      TileExecutor.setParallelism(4);
+      IImage parallel = new RasterImage(raster.clone(), width, height, 255);
+      parallel.applyFilter(modifier);
+      assertArrayEquals(sequential.getRaster(), parallel.getRaster());
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package filter;
+
+import imagemodel.IImage;
+import imagemodel.RasterImage;
+import imagemodel.TestImages;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class tests the {@link TransformChain}, an {@link ATransform} made of other transforms,
+ * and extends {@link ATransformTest}. It checks that a chain gives the same image as applying its
+ * transforms one at a time, and that the composed matrix is used when clamping at the end.
+ */
+public class TransformChainTest extends ATransformTest {
+  int width;
+  int height;
+  int[] raster;
+  List<ATransform> transforms;
+
+  @Before
+  public void initData() {
+    width = 16;
+    height = 9;
+    raster = TestImages.pattern(width, height);
+    transforms = new ArrayList<>(Arrays.asList(new Sepia(), new Greyscale(), new Sepia()));
+  }
+
+  @Override
+  public IModifier objectCreator() {
+    return new TransformChain(transforms, false);
+  }
+
+  @Override
+  public ATransform objectTransformCreator() {
+    return new TransformChain(transforms, false);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyChain() {
+    new TransformChain(new ArrayList<>(), false);
+  }
+
+  @Test
+  public void testChainMatchesSequential() {
+    IImage sequential = new RasterImage(raster.clone(), width, height, 255);
+    for (ATransform transform : transforms) {
+      sequential.applyFilter(transform);
+    }
+    IImage chained = new RasterImage(raster.clone(), width, height, 255);
+    chained.applyFilter(new TransformChain(transforms, false));
+    assertArrayEquals(sequential.getRaster(), chained.getRaster());
+  }
+
+  @Test
+  public void testClampAtEndUsesComposedMatrix() {
+    IImage chained = new RasterImage(raster.clone(), width, height, 255);
+    chained.applyFilter(new TransformChain(
+            new ArrayList<>(Arrays.asList(new Greyscale(), new Sepia())), true));
+    double[][] sepia = {
+            {0.393, 0.769, 0.189},
+            {0.349, 0.686, 0.168},
+            {0.272, 0.534, 0.131}
+    };
+    for (int i = 0; i < raster.length; i++) {
+      int r = (raster[i] >> 16) & 0xFF;
+      int g = (raster[i] >> 8) & 0xFF;
+      int b = raster[i] & 0xFF;
+      double grey = 0.2126 * r + 0.7152 * g + 0.0722 * b;
+      int expected = RasterImage.pack(
+              (int) Math.round(grey * (sepia[0][0] + sepia[0][1] + sepia[0][2])),
+              (int) Math.round(grey * (sepia[1][0] + sepia[1][1] + sepia[1][2])),
+              (int) Math.round(grey * (sepia[2][0] + sepia[2][1] + sepia[2][2])));
+      int actual = chained.getRaster()[i];
+      for (int shift = 0; shift <= 16; shift += 8) {
+        assertEquals((expected >> shift) & 0xFF, (actual >> shift) & 0xFF, 1);
+      }
+    }
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("sepia+greyscale+sepia", this.objectTransformCreator().toString());
+  }
+}
@@ -0,0 +1,76 @@
+package imagemodel;
+
+import filter.Sepia;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the DeferredImage class, which only decodes its pixels when they are needed.
+ */
+public class DeferredImageTest {
+  int[] raster;
+  int decodes;
+  DeferredImage img;
+
+  @Before
+  public void setUp() {
+    raster = new int[]{RasterImage.pack(1, 2, 3), RasterImage.pack(40, 50, 60),
+        RasterImage.pack(200, 100, 0), RasterImage.pack(9, 9, 9), RasterImage.pack(0, 0, 0),
+        RasterImage.pack(255, 255, 255)};
+    decodes = 0;
+    img = new DeferredImage(3, 2, 255, () -> {
+      decodes++;
+      return raster.clone();
+    });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullDecoder() {
+    new DeferredImage(3, 2, 255, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidWidth() {
+    new DeferredImage(0, 2, 255, () -> raster);
+  }
+
+  @Test
+  public void testPropsDoNotDecode() {
+    assertEquals(Arrays.asList(3, 2, 255), img.getProps());
+    assertFalse(img.isDecoded());
+    assertEquals(0, decodes);
+  }
+
+  @Test
+  public void testInfoDoesNotDecode() {
+    assertEquals(new ImageInfo(3, 2, 255), img.getInfo());
+    assertFalse(img.isDecoded());
+    assertEquals(0, decodes);
+  }
+
+  @Test
+  public void testDecodesOnce() {
+    assertArrayEquals(raster, img.getRaster());
+    assertTrue(img.isDecoded());
+    assertEquals(new RasterImage(raster, 3, 2, 255).toString(), img.toString());
+    img.getPixel(1, 1);
+    assertEquals(1, decodes);
+  }
+
+  @Test
+  public void testActsLikeRasterImage() {
+    RasterImage expected = new RasterImage(raster.clone(), 3, 2, 255);
+    expected.applyFilter(new Sepia());
+    img.applyFilter(new Sepia());
+    assertArrayEquals(expected.getRaster(), img.getRaster());
+    img.changeCanvasSize(2, 1);
+    assertEquals(Arrays.asList(2, 1, 255), img.getProps());
+  }
+}
@@ -0,0 +1,42 @@
+package imagemodel;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * This class tests the ImageInfo value class.
+ */
+public class ImageInfoTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidWidth() {
+    new ImageInfo(0, 2, 255);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDepth() {
+    new ImageInfo(3, 2, 0);
+  }
+
+  @Test
+  public void testGetters() {
+    ImageInfo info = new ImageInfo(3, 2, 255);
+    assertEquals(3, info.getWidth());
+    assertEquals(2, info.getHeight());
+    assertEquals(255, info.getDepth());
+    assertEquals(6, info.getSize());
+    assertEquals(Arrays.asList(3, 2, 255), info.toList());
+  }
+
+  @Test
+  public void testEquals() {
+    assertEquals(new ImageInfo(3, 2, 255), new ImageInfo(3, 2, 255));
+    assertEquals(new ImageInfo(3, 2, 255).hashCode(), new ImageInfo(3, 2, 255).hashCode());
+    assertNotEquals(new ImageInfo(3, 2, 255), new ImageInfo(2, 3, 255));
+    assertNotEquals(new ImageInfo(3, 2, 255), new ImageInfo(3, 2, 1));
+  }
+}
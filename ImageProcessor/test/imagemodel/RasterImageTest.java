@@ -0,0 +1,228 @@
+package imagemodel;
+
+import filter.Blur;
+import filter.DownScale;
+import filter.Greyscale;
+import filter.IModifier;
+import filter.Sepia;
+import filter.Sharpen;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the RasterImage class. These tests ensure that a packed raster image behaves
+ * exactly like the list based {@link Image} it replaces, including the output of every modifier.
+ */
+public class RasterImageTest {
+  int width;
+  int height;
+  int depth;
+  int[] raster;
+  List<IPixel> pixels;
+  IImage img;
+  IImage listImg;
+
+  @Before
+  public void setUp() {
+    width = 4;
+    height = 3;
+    depth = 255;
+    raster = new int[width * height];
+    pixels = new ArrayList<>();
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int r = (x * 60 + y * 7) % 256;
+        int g = (y * 90 + x * 13) % 256;
+        int b = (x * y * 31 + 40) % 256;
+        raster[(y * width) + x] = RasterImage.pack(r, g, b);
+        pixels.add(new Pixel(x, y, r, g, b));
+      }
+    }
+    img = new RasterImage(raster.clone(), width, height, depth);
+    listImg = new Image(pixels, width, height, depth);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidRaster() {
+    new RasterImage(null, width, height, depth);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRasterTooSmall() {
+    new RasterImage(new int[5], width, height, depth);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidWidth() {
+    new RasterImage(raster, 0, height, depth);
+  }
+
+  @Test
+  public void testGetRowMatchesListImage() {
+    int[] row = new int[width + 2];
+    for (int y = 0; y < height; y++) {
+      assertArrayEquals(listImg.getRow(y, null), Arrays.copyOf(img.getRow(y, row), width));
+      assertArrayEquals(Arrays.copyOfRange(raster, y * width, (y + 1) * width),
+              img.getRow(y, null));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetRowOutOfBounds() {
+    img.getRow(height, null);
+  }
+
+  @Test
+  public void testPixelBufferMatchesListImage() {
+    int[] viewed = new int[width * height];
+    img.getPixelBuffer().get(viewed);
+    assertArrayEquals(raster, viewed);
+    int[] listViewed = new int[width * height];
+    listImg.getPixelBuffer().get(listViewed);
+    assertArrayEquals(raster, listViewed);
+  }
+
+  @Test
+  public void testPixelBufferIsAReadOnlyView() {
+    IntBuffer view = img.getPixelBuffer();
+    assertTrue(view.isReadOnly());
+    assertEquals(width * height, view.remaining());
+    img.setRegion(1, 1, 1, 1, new int[]{0x123456});
+    assertEquals(0x123456, view.get(width + 1));
+  }
+
+  @Test(expected = ReadOnlyBufferException.class)
+  public void testPixelBufferCannotBeWritten() {
+    img.getPixelBuffer().put(0, 0);
+  }
+
+  @Test
+  public void testPixelBufferAfterDownScale() {
+    img.applyFilter(new DownScale(2, 2));
+    assertEquals(4, img.getPixelBuffer().remaining());
+    assertEquals(new ImageInfo(2, 2, depth), img.getInfo());
+  }
+
+  @Test
+  public void testInfoMatchesProps() {
+    assertEquals(img.getProps(), img.getInfo().toList());
+    assertEquals(listImg.getInfo(), img.getInfo());
+  }
+
+  private BufferedImage paint(int type) {
+    BufferedImage b = new BufferedImage(width, height, type);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        b.setRGB(x, y, 0x80000000 | raster[y * width + x]);
+      }
+    }
+    return b;
+  }
+
+  @Test
+  public void testFromBufferedImageMatchesGetRGB() {
+    for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY,
+        BufferedImage.TYPE_USHORT_565_RGB}) {
+      BufferedImage b = paint(type);
+      int[] expected = new int[width * height];
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          expected[y * width + x] = b.getRGB(x, y) & 0xFFFFFF;
+        }
+      }
+      assertArrayEquals(expected, RasterImage.fromBufferedImage(b, 255).getRaster());
+    }
+  }
+
+  @Test
+  public void testFromBufferedSubimage() {
+    BufferedImage sub = paint(BufferedImage.TYPE_INT_RGB).getSubimage(1, 1, 2, 2);
+    assertArrayEquals(new int[]{raster[width + 1], raster[width + 2], raster[2 * width + 1],
+        raster[2 * width + 2]}, RasterImage.fromBufferedImage(sub, 255).getRaster());
+  }
+
+  @Test
+  public void testCreateImageRoundTrip() {
+    assertArrayEquals(raster, RasterImage.fromBufferedImage(img.createImage(), 255).getRaster());
+    assertArrayEquals(raster,
+            RasterImage.fromBufferedImage(listImg.createImage(), 255).getRaster());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFromNullBufferedImage() {
+    RasterImage.fromBufferedImage(null, 255);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidApplyFilter() {
+    img.applyFilter(null);
+  }
+
+  @Test
+  public void testPackClamps() {
+    assertEquals(0xFF0010, RasterImage.pack(300, -4, 16));
+  }
+
+  @Test
+  public void testToStringMatchesImage() {
+    assertEquals(listImg.toString(), img.toString());
+  }
+
+  @Test
+  public void testGetPixel() {
+    assertEquals(listImg.getPixel(2, 1).toString(), img.getPixel(2, 1).toString());
+    assertEquals("[2, 1]", img.getPixel(2, 1).getCoords().toString());
+  }
+
+  @Test
+  public void testGetPixels() {
+    assertEquals(pixels.toString(), img.getPixels().toString());
+  }
+
+  @Test
+  public void testGetRaster() {
+    assertArrayEquals(raster, img.getRaster());
+    assertArrayEquals(raster, listImg.getRaster());
+  }
+
+  @Test
+  public void testGetProps() {
+    assertEquals("[4, 3, 255]", img.getProps().toString());
+  }
+
+  @Test
+  public void testModifiersMatchImage() {
+    IModifier[] raster = {new Blur(), new Sharpen(), new Sepia(), new Greyscale()};
+    IModifier[] list = {new Blur(), new Sharpen(), new Sepia(), new Greyscale()};
+    for (int i = 0; i < raster.length; i++) {
+      img.applyFilter(raster[i]);
+      listImg.applyFilter(list[i]);
+      assertEquals(listImg.toString(), img.toString());
+    }
+  }
+
+  @Test
+  public void testDownScale() {
+    img.applyFilter(new DownScale(2, 2));
+    listImg.applyFilter(new DownScale(2, 2));
+    assertEquals("[2, 2, 255]", img.getProps().toString());
+    assertEquals(listImg.toString(), img.toString());
+  }
+
+  @Test
+  public void testCreateImage() {
+    assertEquals(raster[(2 * width) + 3], img.createImage().getRGB(3, 2) & 0xFFFFFF);
+  }
+}
@@ -0,0 +1,38 @@
+package imagemodel;
+
+/**
+ * This class holds the patterned images that the tests of the raster based classes share. Every
+ * channel of the pattern changes from one pixel to the next, so a pixel that is read from or
+ * written to the wrong place shows up in the result.
+ */
+public final class TestImages {
+
+  private TestImages() {
+  }
+
+  /**
+   * Creates a packed raster with a different color in every pixel.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @return the packed 0xRRGGBB pixels in row-major order
+   */
+  public static int[] pattern(int width, int height) {
+    int[] raster = new int[width * height];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = RasterImage.pack((i * 37) % 256, (i * 91) % 256, (i * 13 + 50) % 256);
+    }
+    return raster;
+  }
+
+  /**
+   * Creates an image of {@link #pattern(int, int)} with a depth of 255.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @return the image
+   */
+  public static RasterImage image(int width, int height) {
+    return new RasterImage(pattern(width, height), width, height, 255);
+  }
+}
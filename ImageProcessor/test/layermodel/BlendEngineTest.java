@@ -0,0 +1,111 @@
+package layermodel;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * This class tests the blend engines. The vector engine is only tested when the JVM was started
+ * with the jdk.incubator.vector module and the engine is on the class path.
+ */
+public class BlendEngineTest {
+
+  private static int[][] randomLayers(int layers, int pixels) {
+    Random random = new Random(7);
+    int[][] rasters = new int[layers][pixels];
+    for (int[] raster : rasters) {
+      for (int i = 0; i < pixels; i++) {
+        raster[i] = random.nextInt(1 << 24);
+      }
+    }
+    return rasters;
+  }
+
+  private static int[] blend(IBlendEngine engine, int[][] rasters) {
+    int n = rasters[0].length;
+    int[] sumR = new int[n];
+    int[] sumG = new int[n];
+    int[] sumB = new int[n];
+    for (int[] raster : rasters) {
+      engine.accumulate(raster, n, sumR, sumG, sumB, 0, true);
+    }
+    int[] blended = new int[n];
+    engine.average(sumR, sumG, sumB, rasters.length, blended);
+    return blended;
+  }
+
+  private static int[] expected(int[][] rasters) {
+    int[] blended = new int[rasters[0].length];
+    for (int i = 0; i < blended.length; i++) {
+      int r = 0;
+      int g = 0;
+      int b = 0;
+      for (int[] raster : rasters) {
+        r += (raster[i] >> 16) & 0xFF;
+        g += (raster[i] >> 8) & 0xFF;
+        b += raster[i] & 0xFF;
+      }
+      blended[i] = (int) (r / (double) rasters.length) << 16
+              | (int) (g / (double) rasters.length) << 8 | (int) (b / (double) rasters.length);
+    }
+    return blended;
+  }
+
+  @Test
+  public void testScalarAverages() {
+    int[][] rasters = {{0x0A141E, 0xFFFFFF}, {0x0B151F, 0x000000}, {0x0C1620, 0xFFFFFF}};
+    assertArrayEquals(new int[]{0x0B151F, 0xAAAAAA}, blend(IBlendEngine.scalar(), rasters));
+  }
+
+  @Test
+  public void testScalarMatchesExactAverage() {
+    for (int layers : new int[]{1, 2, 3, 7, 32}) {
+      int[][] rasters = randomLayers(layers, 1000);
+      assertArrayEquals(expected(rasters), blend(IBlendEngine.scalar(), rasters));
+    }
+  }
+
+  @Test
+  public void testSubtractUndoesAdd() {
+    IBlendEngine engine = IBlendEngine.getShared();
+    int[][] rasters = randomLayers(2, 101);
+    int[] sumR = new int[106];
+    int[] sumG = new int[106];
+    int[] sumB = new int[106];
+    engine.accumulate(rasters[0], 101, sumR, sumG, sumB, 5, true);
+    engine.accumulate(rasters[1], 101, sumR, sumG, sumB, 5, true);
+    engine.accumulate(rasters[0], 101, sumR, sumG, sumB, 5, false);
+    for (int i = 0; i < 101; i++) {
+      assertEquals((rasters[1][i] >> 16) & 0xFF, sumR[i + 5]);
+      assertEquals((rasters[1][i] >> 8) & 0xFF, sumG[i + 5]);
+      assertEquals(rasters[1][i] & 0xFF, sumB[i + 5]);
+    }
+    assertEquals(0, sumR[0] | sumG[4] | sumB[2]);
+  }
+
+  @Test
+  public void testSharedEngineExists() {
+    assertNotNull(IBlendEngine.getShared().getName());
+  }
+
+  @Test
+  public void testVectorMatchesScalar() {
+    IBlendEngine vector;
+    try {
+      vector = IBlendEngine.vector();
+    } catch (UnsupportedOperationException e) {
+      vector = null;
+    }
+    Assume.assumeNotNull(vector);
+    //odd sizes also cover the scalar tail after the last full vector
+    for (int layers : new int[]{1, 2, 3, 7, 8, 32, 255}) {
+      int[][] rasters = randomLayers(layers, 1037);
+      assertArrayEquals(blend(IBlendEngine.scalar(), rasters), blend(vector, rasters));
+    }
+  }
+}
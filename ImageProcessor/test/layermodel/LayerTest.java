@@ -2,6 +2,8 @@ package layermodel;
 
 import filter.Blur;
 import filter.DownScale;
+import filter.Greyscale;
+import filter.Sepia;
 import imagemodel.IImage;
 import imagemodel.IPixel;
 import imagemodel.Image;
@@ -16,6 +18,7 @@ import java.util.List;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * This class tests the LayerModel class and determine if it was implemented correctly.
@@ -230,6 +233,253 @@ public class LayerTest {
     assertEquals(img2.toString(), layer.blend().toString());
   }
 
+  @Test
+  public void testBlendAfterChangesMatchesFreshBlend() {
+    layer.blend();
+    layer.applyToCurrent(new Sepia());
+    layer.toggleVisibility(2);
+    layer.blend();
+    layer.addLayer(img3);
+    layer.toggleVisibility(2);
+    layer.setCurrent(3);
+    layer.applyToCurrent(new Blur());
+
+    ILayer fresh = new Layer(new ArrayList<>(Arrays.asList(layer.getLayer(1),
+            layer.getLayer(2), layer.getLayer(3))), width, height, depth);
+    assertEquals(fresh.blend().toString(), layer.blend().toString());
+  }
+
+  @Test
+  public void testLazyBlendAfterChangesMatchesEager() {
+    ILayer eager = new Layer(new ArrayList<>(Arrays.asList(new Image(pixels, width, height, depth),
+            new Image(pixels2, width, height, depth))), width, height, depth);
+    layer.setLazy(true);
+    for (ILayer l : Arrays.asList(eager, layer)) {
+      l.blend();
+      l.applyToCurrent(new Blur());
+      l.blend();
+      l.setCurrent(2);
+      l.applyToCurrent(new Greyscale());
+      l.toggleVisibility(1);
+      l.blend();
+      l.toggleVisibility(1);
+    }
+    assertEquals(eager.blend().toString(), layer.blend().toString());
+  }
+
+  @Test
+  public void testBlendAfterAlterLayer() {
+    layer.blend();
+    layer.alterLayer(new DownScale(2, 2), 2, 2);
+    ILayer fresh = new Layer(new ArrayList<>(Arrays.asList(layer.getLayer(1),
+            layer.getLayer(2))), 2, 2, depth);
+    assertEquals(fresh.blend().toString(), layer.blend().toString());
+  }
+
+  @Test
+  public void testDefaultBlendModeIsAverage() {
+    assertEquals(BlendMode.AVERAGE, layer.getBlendMode(2));
+    assertEquals(100, layer.getOpacity(2));
+  }
+
+  @Test
+  public void testBlendModes() {
+    //img is (100, 100, 100) and img2 is (0, 100, 100) everywhere
+    int[][] expected = {{0, 100, 100}, {50, 100, 100}, {0, 39, 39}, {100, 161, 161},
+        {100, 200, 200}};
+    BlendMode[] modes = {BlendMode.NORMAL, BlendMode.NORMAL, BlendMode.MULTIPLY,
+        BlendMode.SCREEN, BlendMode.ADDITIVE};
+    int[] opacities = {100, 50, 100, 100, 100};
+    for (int i = 0; i < modes.length; i++) {
+      layer.setBlendMode(2, modes[i], opacities[i]);
+      assertEquals(modes[i].toString(), expected[i][0] << 16 | expected[i][1] << 8
+              | expected[i][2], layer.blend().getRaster()[4]);
+    }
+    layer.setBlendMode(2, BlendMode.AVERAGE, 100);
+    assertEquals(new Image(pixelsBlended, width, height, depth).toString(),
+            layer.blend().toString());
+  }
+
+  @Test
+  public void testOnlyCompositedLayersVisible() {
+    layer.setBlendMode(1, BlendMode.ADDITIVE, 100);
+    layer.setBlendMode(2, BlendMode.ADDITIVE, 100);
+    assertEquals(100 << 16 | 200 << 8 | 200, layer.blend().getRaster()[0]);
+    layer.toggleVisibility(2);
+    assertEquals(img.toString(), layer.blend().toString());
+  }
+
+  @Test
+  public void testBlendsInLayerOrder() {
+    //a normal layer at the bottom does not cover the averaged layers above it
+    layer.setBlendMode(1, BlendMode.NORMAL, 100);
+    assertEquals(new Image(pixelsBlended, width, height, depth).toString(),
+            layer.blend().toString());
+    layer.addLayer(img2);
+    assertEquals(33 << 16 | 100 << 8 | 100, layer.blend().getRaster()[0]);
+    layer.setBlendMode(3, BlendMode.NORMAL, 100);
+    assertEquals(img2.toString(), layer.blend().toString());
+  }
+
+  @Test
+  public void testMultipliedLayersAreNotBlack() {
+    layer.setBlendMode(1, BlendMode.MULTIPLY, 100);
+    layer.setBlendMode(2, BlendMode.MULTIPLY, 100);
+    assertEquals(39 << 8 | 39, layer.blend().getRaster()[0]);
+  }
+
+  @Test
+  public void testBlendAfterModeChangesMatchesFreshBlend() {
+    layer.addLayer(img);
+    layer.blend();
+    layer.setBlendMode(2, BlendMode.SCREEN, 60);
+    layer.blend();
+    layer.toggleVisibility(1);
+    layer.blend();
+    layer.toggleVisibility(1);
+    layer.setBlendMode(2, BlendMode.AVERAGE, 100);
+    layer.setBlendMode(1, BlendMode.MULTIPLY, 100);
+    ILayer fresh = new Layer(new ArrayList<>(Arrays.asList(img, img2, img)), width, height,
+            depth);
+    fresh.setBlendMode(1, BlendMode.MULTIPLY, 100);
+    assertEquals(fresh.blend().toString(), layer.blend().toString());
+    layer.setBlendMode(1, BlendMode.AVERAGE, 100);
+    assertEquals(new Layer(new ArrayList<>(Arrays.asList(img, img2, img)), width, height,
+            depth).blend().toString(), layer.blend().toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetBlendModeInvalidOpacity() {
+    layer.setBlendMode(1, BlendMode.NORMAL, 101);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetBlendModeOutOfBounds() {
+    layer.setBlendMode(3, BlendMode.NORMAL, 100);
+  }
+
+  @Test
+  public void testUndoRedoApplyToCurrent() {
+    String original = layer.getLayer(1).toString();
+    String blend = layer.blend().toString();
+    layer.applyToCurrent(new Blur());
+    layer.undo();
+    assertEquals(original, layer.getLayer(1).toString());
+    assertEquals(blend, layer.blend().toString());
+    layer.redo();
+    assertEquals(blurredImage, layer.getLayer(1).toString());
+  }
+
+  @Test
+  public void testNothingRecordedWithoutHistory() {
+    layer.applyToCurrent(new Blur());
+    layer.setHistory(false);
+    layer.toggleVisibility(2);
+    layer.applyToCurrent(new Sepia());
+    layer.alterLayer(new DownScale(2, 2), 2, 2);
+    try {
+      layer.undo();
+      fail("A change was recorded without history.");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Nothing to undo.", e.getMessage());
+    }
+    assertFalse(layer.isVisible(2));
+
+    layer.setHistory(true);
+    layer.toggleVisibility(2);
+    layer.undo();
+    assertFalse(layer.isVisible(2));
+  }
+
+  @Test
+  public void testLazyModifiersWithoutHistory() {
+    layer.setLazy(true);
+    layer.setHistory(false);
+    layer.applyToCurrent(new Blur());
+    assertEquals(blurredImage, layer.getLayer(1).toString());
+  }
+
+  @Test
+  public void testUndoRedoToggleAndAdd() {
+    layer.toggleVisibility(2);
+    layer.addLayer(img3);
+    layer.undo();
+    assertEquals(2, (int) layer.getProps().get(0));
+    layer.undo();
+    assertTrue(layer.isVisible(2));
+    layer.redo();
+    layer.redo();
+    assertFalse(layer.isVisible(2));
+    assertEquals(img3, layer.getLayer(3));
+  }
+
+  @Test
+  public void testUndoAddOfCurrentLayer() {
+    layer.addLayer(img3);
+    layer.setCurrent(3);
+    layer.undo();
+    assertEquals(0, (int) layer.getProps().get(4));
+    assertEquals(img.toString(), layer.getCurrent().toString());
+  }
+
+  @Test
+  public void testUndoAlterLayer() {
+    String before = layer.toString();
+    layer.alterLayer(new DownScale(2, 2), 2, 2);
+    String after = layer.toString();
+    layer.undo();
+    assertEquals(before, layer.toString());
+    assertEquals(Arrays.asList(2, 3, 3, 255, 0), layer.getProps());
+    layer.redo();
+    assertEquals(after, layer.toString());
+  }
+
+  @Test
+  public void testUndoLazyModifiers() {
+    ILayer eager = new Layer(new ArrayList<>(Arrays.asList(new Image(pixels, width, height, depth),
+            new Image(pixels2, width, height, depth))), width, height, depth);
+    eager.applyToCurrent(new Sepia());
+    eager.applyToCurrent(new Blur());
+
+    layer.setLazy(true);
+    layer.applyToCurrent(new Sepia());
+    layer.applyToCurrent(new Blur());
+    layer.applyToCurrent(new Greyscale());
+    //greyscale is dropped while still recorded
+    layer.undo();
+    assertEquals(eager.toString(), layer.toString());
+
+    layer.applyToCurrent(new Greyscale());
+    layer.getCurrent();
+    layer.undo();
+    assertEquals(eager.toString(), layer.toString());
+    //sepia and blur ran in one pass, so undoing blur puts sepia back as recorded
+    layer.undo();
+    layer.undo();
+    assertEquals(img.toString(), layer.getLayer(1).toString());
+    assertEquals(new Image(pixelsBlended, width, height, depth).toString(),
+            layer.blend().toString());
+  }
+
+  @Test
+  public void testNewChangeClearsRedo() {
+    layer.toggleVisibility(1);
+    layer.undo();
+    layer.toggleVisibility(2);
+    try {
+      layer.redo();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Nothing to redo.", e.getMessage());
+      return;
+    }
+    throw new AssertionError("redo should have failed");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUndoWithNoHistory() {
+    layer.undo();
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testSetCurrentOutOfBounds() {
     layer.setCurrent(25);
@@ -256,6 +506,19 @@ public class LayerTest {
     assertEquals(0, layer.getVisible().size());
   }
 
+  @Test
+  public void testIsVisible() {
+    assertTrue(layer.isVisible(1));
+    layer.toggleVisibility(1);
+    assertFalse(layer.isVisible(1));
+    assertTrue(layer.isVisible(2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIsVisibleOutOfBounds() {
+    layer.isVisible(3);
+  }
+
   @Test
   public void testGetVisible() {
     assertEquals(layers, layer.getVisible().toString());
@@ -270,6 +533,38 @@ public class LayerTest {
     assertEquals(blurredImage, layer.getLayer(1).toString());
   }
 
+  @Test
+  public void testLazyApplyToCurrentIsDeferred() {
+    String original = img.toString();
+    layer.setLazy(true);
+    layer.applyToCurrent(new Blur());
+    assertEquals(original, img.toString());
+    assertEquals(blurredImage, layer.getCurrent().toString());
+  }
+
+  @Test
+  public void testLazyMatchesEager() {
+    ILayer eager = new Layer(new ArrayList<>(Arrays.asList(new Image(pixels, width, height, depth),
+            new Image(pixels2, width, height, depth))), width, height, depth);
+    layer.setLazy(true);
+    for (ILayer l : Arrays.asList(eager, layer)) {
+      l.applyToCurrent(new Sepia());
+      l.applyToCurrent(new Blur());
+      l.applyToCurrent(new Greyscale());
+      l.applyToCurrent(new Sepia());
+    }
+    assertEquals(eager.blend().toString(), layer.blend().toString());
+    assertEquals(eager.toString(), layer.toString());
+  }
+
+  @Test
+  public void testTurningLazyOffEvaluates() {
+    layer.setLazy(true);
+    layer.applyToCurrent(new Blur());
+    layer.setLazy(false);
+    assertEquals(blurredImage, img.toString());
+  }
+
   @Test
   public void testToString() {
     layer.toggleVisibility(2);
@@ -0,0 +1,101 @@
+package layermodel;
+
+import filter.DownScale;
+import imagemodel.IImage;
+import imagemodel.ImageInfo;
+import imagemodel.TestImages;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * This class tests the TileDiff class.
+ */
+public class TileDiffTest {
+
+  @Test
+  public void testOnlyChangedTilesAreKept() {
+    IImage image = TestImages.image(200, 150);
+    int[] before = image.getRaster();
+    ImageInfo info = image.getInfo();
+    image.setRegion(130, 70, 3, 2, new int[]{1, 2, 3, 4, 5, 6});
+    int[] after = image.getRaster();
+
+    TileDiff diff = TileDiff.of(before, info, image);
+    assertEquals(1, diff.getTileCount());
+    assertSame(image, diff.revert(image));
+    assertArrayEquals(before, image.getRaster());
+    assertSame(image, diff.reapply(image));
+    assertArrayEquals(after, image.getRaster());
+  }
+
+  @Test
+  public void testEdgeTilesAreSmaller() {
+    IImage image = TestImages.image(70, 65);
+    int[] before = image.getRaster();
+    ImageInfo info = image.getInfo();
+    image.setRegion(69, 64, 1, 1, new int[]{7});
+    TileDiff diff = TileDiff.of(before, info, image);
+    assertEquals(1, diff.getTileCount());
+    diff.revert(image);
+    assertArrayEquals(before, image.getRaster());
+  }
+
+  @Test
+  public void testUnchangedImageKeepsNothing() {
+    IImage image = TestImages.image(100, 100);
+    assertEquals(0, TileDiff.of(image.getRaster(), image.getInfo(), image).getTileCount());
+  }
+
+  @Test
+  public void testResizeSwapsImages() {
+    IImage image = TestImages.image(100, 80);
+    int[] before = image.getRaster();
+    ImageInfo info = image.getInfo();
+    image.applyFilter(new DownScale(50, 40));
+
+    TileDiff diff = TileDiff.of(before, info, image);
+    IImage reverted = diff.revert(image);
+    assertNotSame(image, reverted);
+    assertEquals(info, reverted.getInfo());
+    assertArrayEquals(before, reverted.getRaster());
+    assertSame(image, diff.reapply(reverted));
+  }
+
+  @Test
+  public void testKeepsOneSideOfEachTile() {
+    IImage image = TestImages.image(200, 150);
+    int[] before = image.getRaster();
+    ImageInfo info = image.getInfo();
+    image.setRegion(10, 10, 2, 1, new int[]{1, 2});
+    image.setRegion(199, 149, 1, 1, new int[]{3});
+    int[] after = image.getRaster();
+
+    TileDiff diff = TileDiff.of(before, info, image);
+    //a whole tile and the corner tile, which is 8 by 22 pixels
+    assertEquals(4L * (64 * 64 + 8 * 22), diff.getBytes());
+    for (int i = 0; i < 3; i++) {
+      diff.revert(image);
+      assertArrayEquals(before, image.getRaster());
+      diff.reapply(image);
+      assertArrayEquals(after, image.getRaster());
+      assertEquals(4L * (64 * 64 + 8 * 22), diff.getBytes());
+    }
+  }
+
+  @Test
+  public void testResizeKeepsOneImage() {
+    IImage image = TestImages.image(100, 80);
+    int[] before = image.getRaster();
+    ImageInfo info = image.getInfo();
+    image.applyFilter(new DownScale(50, 40));
+
+    TileDiff diff = TileDiff.of(before, info, image);
+    assertEquals(4L * 100 * 80, diff.getBytes());
+    diff.revert(image);
+    assertEquals(4L * 50 * 40, diff.getBytes());
+  }
+}
@@ -0,0 +1,84 @@
+package layermodel;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorBlendEngine class is the {@link IBlendEngine} that uses the JDK Vector API, working on
+ * as many pixels at once as the widest int vector of the CPU holds. Channels are split out of the
+ * packed pixels with lane-wise shifts and masks. As there is no vector integer division, averages
+ * are taken by multiplying with a fixed point reciprocal of the number of layers and shifting.
+ * That gives exactly the rounded down quotient of the scalar engine whenever the check in
+ * {@link #average} passes, which it does for every count up to 185 layers and for some larger
+ * ones, such as powers of two. Other counts fall back to scalar division.
+ *
+ * <p>This class needs the incubating {@code jdk.incubator.vector} module to compile and run, so it
+ * lives in its own source root and is only ever loaded by name through {@link BlendEngines}.
+ */
+final class VectorBlendEngine implements IBlendEngine {
+
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+  //sums are divided by multiplying by a rounded up reciprocal scaled by 2^SHIFT
+  private static final int SHIFT = 23;
+
+  @Override
+  public void accumulate(int[] pixels, int length, int[] sumR, int[] sumG, int[] sumB,
+                         int offset, boolean add) {
+    VectorOperators.Binary op = add ? VectorOperators.ADD : VectorOperators.SUB;
+    int x = 0;
+    for (int bound = INTS.loopBound(length); x < bound; x += INTS.length()) {
+      IntVector rgb = IntVector.fromArray(INTS, pixels, x);
+      int i = offset + x;
+      IntVector.fromArray(INTS, sumR, i)
+              .lanewise(op, rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF))
+              .intoArray(sumR, i);
+      IntVector.fromArray(INTS, sumG, i)
+              .lanewise(op, rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF))
+              .intoArray(sumG, i);
+      IntVector.fromArray(INTS, sumB, i)
+              .lanewise(op, rgb.and(0xFF))
+              .intoArray(sumB, i);
+    }
+    int sign = add ? 1 : -1;
+    for (; x < length; x++) {
+      int rgb = pixels[x];
+      sumR[offset + x] += sign * ((rgb >> 16) & 0xFF);
+      sumG[offset + x] += sign * ((rgb >> 8) & 0xFF);
+      sumB[offset + x] += sign * (rgb & 0xFF);
+    }
+  }
+
+  @Override
+  public void average(int[] sumR, int[] sumG, int[] sumB, int count, int[] blended) {
+    int i = 0;
+    long multiplier = ((1L << SHIFT) + count - 1) / count;
+    long error = multiplier * count - (1L << SHIFT);
+    //every sum is at most 255 * count: the product must fit in an int, and the rounding error of
+    //the reciprocal times the largest sum must stay under 2^SHIFT for the quotient to be exact,
+    //which holds for every count up to 185
+    if (255L * count * multiplier <= Integer.MAX_VALUE && 255L * count * error < (1L << SHIFT)) {
+      int m = (int) multiplier;
+      for (int bound = INTS.loopBound(blended.length); i < bound; i += INTS.length()) {
+        IntVector r = IntVector.fromArray(INTS, sumR, i).mul(m).lanewise(VectorOperators.LSHR,
+                SHIFT);
+        IntVector g = IntVector.fromArray(INTS, sumG, i).mul(m).lanewise(VectorOperators.LSHR,
+                SHIFT);
+        IntVector b = IntVector.fromArray(INTS, sumB, i).mul(m).lanewise(VectorOperators.LSHR,
+                SHIFT);
+        r.lanewise(VectorOperators.LSHL, 16)
+                .or(g.lanewise(VectorOperators.LSHL, 8))
+                .or(b)
+                .intoArray(blended, i);
+      }
+    }
+    for (; i < blended.length; i++) {
+      blended[i] = (sumR[i] / count) << 16 | (sumG[i] / count) << 8 | sumB[i] / count;
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "vector";
+  }
+}